@@ -1,8 +1,7 @@
 package com.admin_log.audit;
 
-import com.admin_log.entity.AdminLog;
-import com.admin_log.service.AdminLogService;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pagerealm.security.service.UserDetailsImpl;
 import jakarta.servlet.http.HttpServletRequest;
@@ -16,7 +15,8 @@ import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.util.ContentCachingRequestWrapper;
 
-import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -24,20 +24,32 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class AdminActionLoggingInterceptor implements HandlerInterceptor {
 
-    private final AdminLogService adminLogService;
+    // 非同步批次寫入，不在 request thread 上寫資料庫
+    private final AdminLogWriter adminLogWriter;
+    // 啟動時由 @Audited 建好的路由表
+    private final AuditRouteTable auditRouteTable;
     // 允許從 JSON 解析欄位（title、name、code、nextStatus 等）
     private final ObjectMapper objectMapper;
 
+    private static final String DESCRIPTOR_ATTR = "__adminLogRoute";
     private static final Set<String> WRITE_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    // 摘要會用到的 JSON body 欄位
+    private static final Set<String> SUMMARY_FIELDS = Set.of("title", "name", "code", "genericCode", "nextStatus", "content");
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 未標註 @Audited 的端點直接略過(查表 O(1))
+        if (!(handler instanceof HandlerMethod hm)) return true;
+        AuditRouteTable.Descriptor route = auditRouteTable.find(hm);
+        if (route == null || !WRITE_METHODS.contains(request.getMethod())) return true;
+        request.setAttribute(DESCRIPTOR_ATTR, route);
         request.setAttribute("__adminLogStart", System.currentTimeMillis());
         return true;
     }
 
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!(request.getAttribute(DESCRIPTOR_ATTR) instanceof AuditRouteTable.Descriptor route)) return;
         try {
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
             if (auth == null || !auth.isAuthenticated()) return;
@@ -46,56 +58,9 @@ public class AdminActionLoggingInterceptor implements HandlerInterceptor {
             if (!(principal instanceof UserDetailsImpl user)) return;
 
             String uri = request.getRequestURI();
-            if (uri == null) return;
-
-            // 僅處理 /api/admin/**
-            if (!uri.startsWith("/api/admin/")) return;
-
-            // 排除自身的管理日誌 API
-            if (uri.startsWith("/api/admin/admin-logs")) return;
-
             String method = request.getMethod();
-
-            // 僅記錄寫入類操作
-            if (!WRITE_METHODS.contains(method)) return;
-
-            // 僅記錄特定資源：書籍、優惠券、會員相關、客服工單
-            boolean isTarget = false;
-            String targetType = null;
-
-            if (uri.startsWith("/api/admin/books")) {
-                isTarget = true;
-                targetType = "Book";
-            } else if (uri.startsWith("/api/admin/coupons")) {
-                isTarget = true;
-                targetType = "Coupon";
-            } else if (uri.startsWith("/api/admin/support")) {
-                // 工單（回覆、狀態變更等）
-                isTarget = true;
-                targetType = "SupportTicket";
-            } else if (uri.startsWith("/api/admin/update-enabled-status") || uri.startsWith("/api/admin/add-user")) {
-                isTarget = true;
-                targetType = "User";
-            }
-
-            if (!isTarget) return; // 其他資源不記錄
-
-            String actionZh = switch (method) {
-                case "POST" -> "建立";
-                case "PUT", "PATCH" -> "更新";
-                case "DELETE" -> "刪除";
-                default -> method;
-            };
-
-            Long targetId = extractTargetId(request, uri);
-
-            // 若 handler 可用，保持原行為推導類名（作為備援）
-            if (targetType == null && handler instanceof HandlerMethod hm) {
-                targetType = hm.getBeanType().getSimpleName();
-            }
-
-            // 將 targetType 儲存為中文
-            String targetTypeZh = toZhTargetType(targetType);
+            String actionZh = route.actionLabel() != null ? route.actionLabel() : AuditRouteTable.actionLabel(method);
+            Long targetId = extractTargetId(request, route);
 
             long durationMs = 0L;
             Object start = request.getAttribute("__adminLogStart");
@@ -114,7 +79,7 @@ public class AdminActionLoggingInterceptor implements HandlerInterceptor {
             // 若為失敗案例則不記錄
             if (!success) return;
 
-            String zhSummary = buildZhSummary(method, targetType, targetId, request);
+            String zhSummary = buildZhSummary(actionZh, route.targetLabel(), targetId, request);
             String ip = getClientIp(request);
             String ua = safeHeader(request, "User-Agent");
             String rawUri = uri + (query != null ? ("?" + query) : "");
@@ -128,61 +93,37 @@ public class AdminActionLoggingInterceptor implements HandlerInterceptor {
                     "。原始: method=" + method + ", uri=" + rawUri +
                     (ex != null ? (", error=" + ex.getClass().getSimpleName() + ":" + truncate(ex.getMessage(), 200)) : "");
 
-            AdminLog log = AdminLog.builder()
-                    .adminId(user.getId())
-                    .action(actionZh) // 儲存中文動作：建立/更新/刪除
-                    .targetId(targetId)
-                    .targetType(targetTypeZh) // 儲存中文對象：書籍/優惠券/會員/工單
-                    .details(details)
-                    .build();
-
-            adminLogService.create(log);
+            adminLogWriter.submit(new AdminAuditEvent(
+                    user.getId(),
+                    actionZh, // 儲存中文動作：建立/更新/刪除
+                    targetId,
+                    route.targetLabel(), // 儲存中文對象：書籍/優惠券/會員/工單
+                    details,
+                    LocalDateTime.now()));
         } catch (Exception ignored) {
             // 任何例外不影響原請求
         }
     }
 
-    private Long extractTargetId(HttpServletRequest request, String uri) {
-        Long targetId = null;
-
-        // 1) PathVariables: id, targetId, userId, bookId, couponId
-        Object attr = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
-        if (attr instanceof Map<?, ?> vars) {
-            for (String key : new String[]{"id", "targetId", "userId", "bookId", "couponId"}) {
-                Object v = vars.get(key);
-                if (v != null) {
-                    try { targetId = Long.valueOf(v.toString()); } catch (NumberFormatException ignored) {}
-                    if (targetId != null) return targetId;
-                }
-            }
+    // ID 來源(PathVariable 或參數名稱)已在路由表預先決定
+    private Long extractTargetId(HttpServletRequest request, AuditRouteTable.Descriptor route) {
+        if (route.idName() == null) return null;
+        String v = null;
+        if (route.idFromPath()) {
+            Object attr = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+            if (attr instanceof Map<?, ?> vars && vars.get(route.idName()) != null) v = vars.get(route.idName()).toString();
+        } else {
+            v = request.getParameter(route.idName());
         }
-
-        // 2) Query string 或表單參數（例如 update-enabled-status?userId=1）
-        for (String key : new String[]{"id", "userId", "bookId", "couponId"}) {
-            String v = request.getParameter(key);
-            if (v != null) {
-                try { targetId = Long.valueOf(v); } catch (NumberFormatException ignored) {}
-                if (targetId != null) return targetId;
-            }
+        if (v == null) return null;
+        try {
+            return Long.valueOf(v);
+        } catch (NumberFormatException ignored) {
+            return null;
         }
-
-        return null;
     }
 
-    private String buildZhSummary(String method, String targetType, Long targetId, HttpServletRequest request) {
-        String entityZh = switch (targetType == null ? "" : targetType) {
-            case "Book" -> "書籍";
-            case "Coupon" -> "優惠券";
-            case "User" -> "會員";
-            case "SupportTicket" -> "工單";
-            default -> (targetType != null ? targetType : "資源");
-        };
-        String verbZh = switch (method) {
-            case "POST" -> "建立";
-            case "PUT", "PATCH" -> "更新";
-            case "DELETE" -> "刪除";
-            default -> method;
-        };
+    private String buildZhSummary(String verbZh, String entityZh, Long targetId, HttpServletRequest request) {
 
         // 嘗試擷取可讀關鍵欄位（優先 Query/Form，其次 JSON Body）
         String title = nvl(request.getParameter("title"));
@@ -193,14 +134,14 @@ public class AdminActionLoggingInterceptor implements HandlerInterceptor {
         String content = nvl(request.getParameter("content"));
 
         if (isEmpty(title) || isEmpty(name) || isEmpty(code) || isEmpty(nextStatus) || isEmpty(content)) {
-            Map<String, Object> bodyMap = readJsonBodyMap(request);
-            if (isEmpty(title)) title = strVal(bodyMap.get("title"));
-            if (isEmpty(name)) name = strVal(bodyMap.get("name"));
-            if (isEmpty(code)) code = strVal(bodyMap.get("code"));
+            Map<String, String> bodyFields = readJsonBodyFields(request);
+            if (isEmpty(title)) title = nvl(bodyFields.get("title"));
+            if (isEmpty(name)) name = nvl(bodyFields.get("name"));
+            if (isEmpty(code)) code = nvl(bodyFields.get("code"));
             // 若 body 有 genericCode，當作 code 補值
-            if (isEmpty(code)) code = strVal(bodyMap.get("genericCode"));
-            if (isEmpty(nextStatus)) nextStatus = strVal(bodyMap.get("nextStatus"));
-            if (isEmpty(content)) content = strVal(bodyMap.get("content"));
+            if (isEmpty(code)) code = nvl(bodyFields.get("genericCode"));
+            if (isEmpty(nextStatus)) nextStatus = nvl(bodyFields.get("nextStatus"));
+            if (isEmpty(content)) content = nvl(bodyFields.get("content"));
         }
 
         StringBuilder sb = new StringBuilder();
@@ -215,17 +156,26 @@ public class AdminActionLoggingInterceptor implements HandlerInterceptor {
         return sb.toString();
     }
 
-    private Map<String, Object> readJsonBodyMap(HttpServletRequest request) {
-        try {
-            if (request instanceof ContentCachingRequestWrapper wrapper) {
-                byte[] buf = wrapper.getContentAsByteArray();
-                if (buf.length == 0) return Map.of();
-                String body = new String(buf, StandardCharsets.UTF_8).trim();
-                if (body.isEmpty() || body.startsWith("[") || !body.startsWith("{")) return Map.of();
-                return objectMapper.readValue(body, new TypeReference<Map<String, Object>>(){});
+    // 以串流方式只讀取頂層的摘要欄位，巢狀物件/陣列直接略過，不建立整個 Map
+    private Map<String, String> readJsonBodyFields(HttpServletRequest request) {
+        if (!(request instanceof ContentCachingRequestWrapper wrapper)) return Map.of();
+        byte[] buf = wrapper.getContentAsByteArray();
+        if (buf.length == 0) return Map.of();
+        Map<String, String> fields = new HashMap<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(buf)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) return Map.of();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                } else if (SUMMARY_FIELDS.contains(field) && value != JsonToken.VALUE_NULL) {
+                    fields.put(field, parser.getText());
+                    if (fields.size() == SUMMARY_FIELDS.size()) break;
+                }
             }
         } catch (Exception ignored) {}
-        return Map.of();
+        return fields;
     }
 
     private String getClientIp(HttpServletRequest request) {
@@ -264,20 +214,8 @@ public class AdminActionLoggingInterceptor implements HandlerInterceptor {
 
     private String nvl(String s) { return s == null ? "" : s; }
 
-    private String strVal(Object o) { return o == null ? "" : String.valueOf(o); }
-
     private String truncate(String s, int max) {
         if (s == null) return "";
         return s.length() > max ? s.substring(0, max) : s;
     }
-
-    private String toZhTargetType(String targetType) {
-        return switch (targetType == null ? "" : targetType) {
-            case "Book" -> "書籍";
-            case "Coupon" -> "優惠券";
-            case "User" -> "會員";
-            case "SupportTicket" -> "工單";
-            default -> (targetType != null ? targetType : "資源");
-        };
-    }
 }
@@ -0,0 +1,12 @@
+package com.admin_log.audit;
+
+import java.time.LocalDateTime;
+
+// 攔截器在 request thread 上建好的不可變稽核事件，交給 AdminLogWriter 非同步寫入 admin_logs
+public record AdminAuditEvent(Long adminId,
+                              String action,
+                              Long targetId,
+                              String targetType,
+                              String details,
+                              LocalDateTime createdAt) {
+}
@@ -0,0 +1,320 @@
+package com.admin_log.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 管理日誌的非同步批次寫入器：
+ * - 攔截器只負責 submit(event)，放入有界佇列後立即返回，不在 request thread 上寫資料庫
+ * - 背景執行緒累積到 batch-size 或等待 flush-ms 後，以 JDBC batch 一次寫入 admin_logs
+ * - 佇列已滿或寫入失敗時依 overflow 設定處理：DROP 直接丟棄並計數；DISK 追加到 spill 檔，啟動時補寫
+ * - 補寫以交易分批寫入，每批提交後記錄檔案位移(.offset)；中途失敗時保留檔案，下次啟動從位移續寫，不重複也不遺失
+ *   無法解析的行移到 .rejected 檔，不中斷補寫
+ * - 關閉時先把佇列中的事件寫完
+ */
+@Component
+public class AdminLogWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminLogWriter.class);
+    private static final String INSERT_SQL =
+            "INSERT INTO admin_logs (admin_id, action, target_id, target_type, details, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    public enum OverflowPolicy { DROP, DISK }
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate tx;
+
+    @Value("${admin-log.writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${admin-log.writer.batch-size:200}")
+    private int batchSize;
+
+    @Value("${admin-log.writer.flush-ms:500}")
+    private long flushMs;
+
+    @Value("${admin-log.writer.overflow:DISK}")
+    private OverflowPolicy overflow;
+
+    @Value("${admin-log.writer.spill-file:logs/admin-log-spill.ndjson}")
+    private String spillFile;
+
+    private BlockingQueue<AdminAuditEvent> queue;
+    private Thread writer;
+    private volatile boolean stopping;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile LocalDateTime lastFlushAt;
+
+    public AdminLogWriter(JdbcTemplate jdbc, ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Getter
+    @Builder
+    public static class Stats {
+        private final int queued;
+        private final int capacity;
+        private final long submitted;
+        private final long written;
+        private final long dropped;
+        private final long spilled;
+        private final long failedBatches;
+        private final OverflowPolicy overflow;
+        private final LocalDateTime lastFlushAt;
+    }
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writer = new Thread(this::writeLoop, "admin-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        stopping = true;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        // 逾時仍未寫完的事件：DISK 模式寫入 spill 檔，下次啟動補寫
+        List<AdminAuditEvent> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) overflow(rest);
+    }
+
+    /**
+     * @description : 提交稽核事件(不阻塞)；佇列已滿時依 overflow 設定丟棄或寫入 spill 檔
+     */
+    public void submit(AdminAuditEvent event) {
+        submitted.incrementAndGet();
+        if (!queue.offer(event)) {
+            overflow(List.of(event));
+        }
+    }
+
+    public Stats stats() {
+        return Stats.builder()
+                .queued(queue.size())
+                .capacity(queueCapacity)
+                .submitted(submitted.get())
+                .written(written.get())
+                .dropped(dropped.get())
+                .spilled(spilled.get())
+                .failedBatches(failedBatches.get())
+                .overflow(overflow)
+                .lastFlushAt(lastFlushAt)
+                .build();
+    }
+
+    // 啟動時補寫上次因佇列滿/寫入失敗/關閉逾時而落地的事件
+    @EventListener(ApplicationReadyEvent.class)
+    public void replaySpillFile() {
+        Path spill = Paths.get(spillFile);
+        Path replaying = spill.resolveSibling(spill.getFileName() + ".replaying");
+        Path offsetFile = spill.resolveSibling(spill.getFileName() + ".replaying.offset");
+        Path rejected = spill.resolveSibling(spill.getFileName() + ".rejected");
+        try {
+            synchronized (this) {
+                if (Files.exists(spill)) {
+                    if (Files.exists(replaying)) {
+                        // 上次補寫未完成：新的 spill 接在後面，已寫入的位移不變
+                        try (OutputStream out = Files.newOutputStream(replaying, StandardOpenOption.APPEND)) {
+                            Files.copy(spill, out);
+                        }
+                        Files.delete(spill);
+                    } else {
+                        Files.move(spill, replaying);
+                    }
+                }
+            }
+            if (!Files.exists(replaying)) return;
+
+            long offset = readOffset(offsetFile);
+            int count = 0;
+            int skipped = 0;
+            List<AdminAuditEvent> batch = new ArrayList<>(batchSize);
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(replaying))) {
+                in.skipNBytes(offset);
+                long position = offset;
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                while (true) {
+                    int read = readLine(in, line);
+                    if (read < 0) break;
+                    position += read;
+                    String text = line.toString(StandardCharsets.UTF_8).trim();
+                    if (!text.isEmpty()) {
+                        try {
+                            batch.add(objectMapper.readValue(text, AdminAuditEvent.class));
+                        } catch (IOException e) {
+                            quarantine(rejected, text);
+                            skipped++;
+                        }
+                    }
+                    if (batch.size() >= batchSize) {
+                        insertInTransaction(batch);
+                        // 提交後才推進位移；兩者之間當機時最多重寫一批
+                        writeOffset(offsetFile, position);
+                        count += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                insertInTransaction(batch);
+                count += batch.size();
+            }
+            Files.delete(replaying);
+            Files.deleteIfExists(offsetFile);
+            written.addAndGet(count);
+            logger.info("Replayed {} admin log events from {} ({} unparseable lines moved to {})", count, spill, skipped, rejected);
+        } catch (Exception e) {
+            logger.error("Failed to replay admin log spill file {}, will resume on next startup: {}", replaying, e.getMessage());
+        }
+    }
+
+    // 讀一行(含換行字元)，回傳讀取的位元組數；已到檔尾時回傳 -1
+    private static int readLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+        int n = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            n++;
+            if (b == '\n') return n;
+            line.write(b);
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    private static long readOffset(Path offsetFile) throws IOException {
+        if (!Files.exists(offsetFile)) return 0;
+        String text = Files.readString(offsetFile, StandardCharsets.UTF_8).trim();
+        return text.isEmpty() ? 0 : Long.parseLong(text);
+    }
+
+    private static void writeOffset(Path offsetFile, long offset) throws IOException {
+        Path tmp = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+        Files.writeString(tmp, Long.toString(offset), StandardCharsets.UTF_8);
+        Files.move(tmp, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void quarantine(Path rejected, String line) throws IOException {
+        Files.writeString(rejected, line + System.lineSeparator(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void insertInTransaction(List<AdminAuditEvent> batch) {
+        tx.executeWithoutResult(status -> insert(batch));
+    }
+
+    private void writeLoop() {
+        List<AdminAuditEvent> batch = new ArrayList<>(batchSize);
+        while (!stopping || !queue.isEmpty()) {
+            try {
+                AdminAuditEvent first = queue.poll(flushMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopping = true;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<AdminAuditEvent> batch) {
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            try {
+                insert(batch);
+                written.addAndGet(batch.size());
+                lastFlushAt = LocalDateTime.now();
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Admin log batch flush failed (attempt {}): {}", attempt, e.getMessage());
+            }
+        }
+        failedBatches.incrementAndGet();
+        overflow(batch);
+    }
+
+    private void insert(List<AdminAuditEvent> batch) {
+        jdbc.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, e) -> {
+            ps.setLong(1, e.adminId());
+            ps.setString(2, e.action());
+            if (e.targetId() != null) ps.setLong(3, e.targetId()); else ps.setNull(3, Types.BIGINT);
+            ps.setString(4, e.targetType());
+            ps.setString(5, e.details());
+            ps.setTimestamp(6, Timestamp.valueOf(e.createdAt()));
+        });
+    }
+
+    private void overflow(List<AdminAuditEvent> events) {
+        if (overflow == OverflowPolicy.DISK && spill(events)) {
+            spilled.addAndGet(events.size());
+            return;
+        }
+        dropped.addAndGet(events.size());
+        logger.warn("Dropped {} admin log events (total dropped={})", events.size(), dropped.get());
+    }
+
+    private synchronized boolean spill(List<AdminAuditEvent> events) {
+        Path spill = Paths.get(spillFile);
+        try {
+            if (spill.getParent() != null) Files.createDirectories(spill.getParent());
+            try (BufferedWriter out = Files.newBufferedWriter(spill, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (AdminAuditEvent e : events) {
+                    out.write(objectMapper.writeValueAsString(e));
+                    out.newLine();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to spill {} admin log events to {}: {}", events.size(), spill, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.admin_log.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 管理日誌路由表：啟動時掃描所有 @Audited 的 handler method，預先算好對象類型、中文動作與對象 ID 來源。
+ * 攔截器以 HandlerMethod 的 Method 查表(O(1))，查不到即不記錄。
+ */
+@Component
+public class AuditRouteTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditRouteTable.class);
+    private static final List<String> DEFAULT_ID_PARAMS = List.of("id", "targetId", "userId", "bookId", "couponId");
+    private static final Set<RequestMethod> WRITE_METHODS =
+            Set.of(RequestMethod.POST, RequestMethod.PUT, RequestMethod.PATCH, RequestMethod.DELETE);
+
+    private final DefaultParameterNameDiscoverer parameterNames = new DefaultParameterNameDiscoverer();
+
+    private volatile Map<Method, Descriptor> routes = Map.of();
+
+    /**
+     * @param targetType : 對象類型(英文)
+     * @param targetLabel : 對象類型(中文)
+     * @param actionLabel : 中文動作；對應多種 HTTP method 時為 null，由請求當下決定
+     * @param idName : 對象 ID 的參數名稱，null 表示沒有
+     * @param idFromPath : true 取 PathVariable，false 取 request parameter
+     */
+    public record Descriptor(String targetType, String targetLabel, String actionLabel, String idName, boolean idFromPath) {
+    }
+
+    // 不以建構子注入 handler mapping：攔截器 -> 本類別 -> handler mapping -> 攔截器 會形成循環依賴
+    @EventListener(ContextRefreshedEvent.class)
+    public void build(ContextRefreshedEvent event) {
+        RequestMappingHandlerMapping handlerMapping = event.getApplicationContext()
+                .getBean("requestMappingHandlerMapping", RequestMappingHandlerMapping.class);
+        Map<Method, Descriptor> table = new HashMap<>();
+        for (Map.Entry<RequestMappingInfo, HandlerMethod> e : handlerMapping.getHandlerMethods().entrySet()) {
+            HandlerMethod hm = e.getValue();
+            Audited audited = AnnotatedElementUtils.findMergedAnnotation(hm.getMethod(), Audited.class);
+            boolean onMethod = audited != null;
+            if (audited == null) audited = AnnotatedElementUtils.findMergedAnnotation(hm.getBeanType(), Audited.class);
+            if (audited == null) continue;
+
+            Set<RequestMethod> methods = e.getKey().getMethodsCondition().getMethods();
+            // 類別層級標註只套用在寫入類端點
+            if (!onMethod && (methods.isEmpty() || !WRITE_METHODS.containsAll(methods))) continue;
+
+            String action = methods.size() == 1 ? actionLabel(methods.iterator().next().name()) : null;
+            Descriptor d = resolveId(hm, audited, action);
+            table.put(hm.getMethod(), d);
+        }
+        routes = Map.copyOf(table);
+        logger.info("Audit route table built: {} audited endpoints", routes.size());
+    }
+
+    public Descriptor find(HandlerMethod handlerMethod) {
+        return routes.get(handlerMethod.getMethod());
+    }
+
+    public static String actionLabel(String httpMethod) {
+        return switch (httpMethod) {
+            case "POST" -> "建立";
+            case "PUT", "PATCH" -> "更新";
+            case "DELETE" -> "刪除";
+            default -> httpMethod;
+        };
+    }
+
+    private Descriptor resolveId(HandlerMethod hm, Audited audited, String action) {
+        List<String> candidates = audited.idParam().isEmpty() ? DEFAULT_ID_PARAMS : List.of(audited.idParam());
+        Map<String, Boolean> available = new HashMap<>();
+        for (MethodParameter p : hm.getMethodParameters()) {
+            p.initParameterNameDiscovery(parameterNames);
+            PathVariable pv = p.getParameterAnnotation(PathVariable.class);
+            RequestParam rp = p.getParameterAnnotation(RequestParam.class);
+            if (pv != null) {
+                available.putIfAbsent(pv.name().isEmpty() ? p.getParameterName() : pv.name(), true);
+            } else if (rp != null) {
+                available.putIfAbsent(rp.name().isEmpty() ? p.getParameterName() : rp.name(), false);
+            }
+        }
+        for (String name : candidates) {
+            Boolean fromPath = available.get(name);
+            if (fromPath != null) return new Descriptor(audited.target(), audited.label(), action, name, fromPath);
+        }
+        return new Descriptor(audited.target(), audited.label(), action, null, false);
+    }
+}
@@ -0,0 +1,27 @@
+package com.admin_log.audit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 標記需寫入管理日誌的 Controller 方法(或整個 Controller)。
+ * 啟動時由 AuditRouteTable 掃描 handler mappings 預先建好描述，攔截器不再比對 URI。
+ * 標在類別上時，只有寫入類(POST/PUT/PATCH/DELETE)的端點會被記錄。
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Audited {
+
+    // 對象類型，例如 "Book"
+    String target();
+
+    // 寫入 admin_logs.target_type 的中文名稱，例如 "書籍"
+    String label();
+
+    // 對象 ID 的參數名稱(PathVariable 或 RequestParam)；空白時依 id/targetId/userId/bookId/couponId 順序自動尋找
+    String idParam() default "";
+}
@@ -1,14 +1,21 @@
 package com.admin_log.controller;
 
+import com.admin_log.audit.AdminLogWriter;
 import com.admin_log.entity.AdminLog;
 import com.admin_log.service.AdminLogService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.NoSuchElementException;
 
 @RestController
@@ -16,9 +23,11 @@ import java.util.NoSuchElementException;
 public class AdminLogAdminController {
 
     private final AdminLogService service;
+    private final AdminLogWriter writer;
 
-    public AdminLogAdminController(AdminLogService service) {
+    public AdminLogAdminController(AdminLogService service, AdminLogWriter writer) {
         this.service = service;
+        this.writer = writer;
     }
 
     @GetMapping
@@ -26,6 +35,30 @@ public class AdminLogAdminController {
         return service.list(pageable);
     }
 
+    // GET /api/admin/admin-logs/export?format=ndjson|csv&adminId=&targetType=&from=&to=
+    // 預設匯出最近 30 天
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                                        @RequestParam(value = "adminId", required = false) Long adminId,
+                                                        @RequestParam(value = "targetType", required = false) String targetType,
+                                                        @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                        @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(30);
+        boolean csv = "csv".equalsIgnoreCase(format);
+        StreamingResponseBody body = out -> service.export(adminId, targetType, start, end, format, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"admin-logs." + (csv ? "csv" : "ndjson") + "\"")
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    // 非同步寫入器的佇列狀態(積壓、丟棄、落地筆數)
+    @GetMapping("/writer-stats")
+    public AdminLogWriter.Stats writerStats() {
+        return writer.stats();
+    }
+
     @GetMapping("/{id}")
     public AdminLog get(@PathVariable Long id) {
         return service.get(id);
@@ -6,7 +6,10 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "admin_logs")
+@Table(name = "admin_logs", indexes = {
+        @Index(name = "idx_admin_logs_created", columnList = "created_at,id"),
+        @Index(name = "idx_admin_logs_admin_created", columnList = "admin_id,created_at,id")
+})
 @Data
 @Builder
 @NoArgsConstructor
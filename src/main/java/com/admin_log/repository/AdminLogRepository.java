@@ -4,8 +4,26 @@ import com.admin_log.entity.AdminLog;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface AdminLogRepository extends JpaRepository<AdminLog, Long> {
     Page<AdminLog> findByAdminId(Long adminId, Pageable pageable);
-}
 
+    // 匯出用 keyset 查詢：(createdAt, id) 游標之後、to 之前的下一批，不做 COUNT
+    @Query("select l from AdminLog l " +
+            "where (:adminId is null or l.adminId = :adminId) " +
+            "and (:targetType is null or l.targetType = :targetType) " +
+            "and l.createdAt < :to " +
+            "and (l.createdAt > :afterAt or (l.createdAt = :afterAt and l.id > :afterId)) " +
+            "order by l.createdAt asc, l.id asc")
+    List<AdminLog> findExportBatch(@Param("adminId") Long adminId,
+                                   @Param("targetType") String targetType,
+                                   @Param("afterAt") LocalDateTime afterAt,
+                                   @Param("afterId") Long afterId,
+                                   @Param("to") LocalDateTime to,
+                                   Pageable pageable);
+}
@@ -2,20 +2,38 @@ package com.admin_log.service;
 
 import com.admin_log.entity.AdminLog;
 import com.admin_log.repository.AdminLogRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagerealm.utils.CsvUtils;
+import jakarta.persistence.EntityManager;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 @Service
 public class AdminLogService {
 
+    private static final int EXPORT_BATCH_SIZE = 500;
+
     private final AdminLogRepository repository;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
 
-    public AdminLogService(AdminLogRepository repository) {
+    public AdminLogService(AdminLogRepository repository, ObjectMapper objectMapper, EntityManager entityManager) {
         this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
     }
 
     public Page<AdminLog> list(Pageable pageable) {
@@ -36,6 +54,50 @@ public class AdminLogService {
         return repository.save(log);
     }
 
+    /**
+     * 依 (createdAt, id) keyset 逐批讀取並直接寫出，記憶體只保留一批資料，也不做 COUNT
+     * @param format : "csv" 或 "ndjson"(預設)
+     * @param from : 起(含)
+     * @param to : 迄(不含)
+     */
+    public void export(Long adminId, String targetType, LocalDateTime from, LocalDateTime to,
+                       String format, OutputStream out) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        JsonGenerator json = objectMapper.getFactory().createGenerator(writer);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (csv) {
+            writer.write('\uFEFF');
+            writer.write("id,adminId,action,targetId,targetType,createdAt,details\n");
+        }
+        // from 當作第一個游標：(createdAt > from) 或 (createdAt = from 且 id > 0)，即 createdAt >= from
+        LocalDateTime afterAt = from;
+        Long afterId = 0L;
+        while (true) {
+            List<AdminLog> batch = repository.findExportBatch(adminId, targetType, afterAt, afterId, to,
+                    PageRequest.of(0, EXPORT_BATCH_SIZE));
+            for (AdminLog log : batch) {
+                if (csv) {
+                    writer.write(log.getId() + "," + log.getAdminId() + "," + CsvUtils.field(log.getAction()) + ","
+                            + (log.getTargetId() == null ? "" : log.getTargetId()) + "," + CsvUtils.field(log.getTargetType()) + ","
+                            + log.getCreatedAt() + "," + CsvUtils.field(log.getDetails()) + "\n");
+                } else {
+                    objectMapper.writeValue(json, log);
+                    json.flush();
+                    writer.write('\n');
+                }
+            }
+            writer.flush();
+            if (batch.size() < EXPORT_BATCH_SIZE) break;
+            AdminLog last = batch.get(batch.size() - 1);
+            afterAt = last.getCreatedAt();
+            afterId = last.getId();
+            // open-in-view 讓 EntityManager 綁在整個請求上；每批寫出後清空，已匯出的資料(含 @Lob details)不會一直留在記憶體
+            entityManager.clear();
+        }
+        json.close();
+    }
+
     @Transactional
     public void delete(Long id) {
         if (!repository.existsById(id)) {
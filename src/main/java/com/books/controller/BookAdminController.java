@@ -1,7 +1,12 @@
 package com.books.controller;
 
+import com.admin_log.audit.Audited;
+import com.books.dto.BookImportReport;
+import com.books.dto.BookResponse;
 import com.books.entity.Book;
+import com.books.service.BookImportService;
 import com.books.service.BookService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
@@ -13,37 +18,49 @@ import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartException;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/api/admin/books")
+@Audited(target = "Book", label = "書籍")
 public class BookAdminController {
 
     private final BookService bookService;
+    private final BookImportService bookImportService;
 
-    public BookAdminController(BookService bookService) {
+    public BookAdminController(BookService bookService, BookImportService bookImportService) {
         this.bookService = bookService;
+        this.bookImportService = bookImportService;
     }
 
     @GetMapping
-    public Page<Book> list(@PageableDefault(size = 20) Pageable pageable) {
-        return bookService.list(pageable);
+    public Page<BookResponse> list(@PageableDefault(size = 20) Pageable pageable) {
+        return bookService.list(pageable).map(bookService::toResponse);
     }
 
     @GetMapping("/{id}")
-    public Book get(@PathVariable Long id) {
-        return bookService.get(id);
+    public BookResponse get(@PathVariable Long id) {
+        return bookService.toResponse(bookService.get(id));
     }
 
     @PostMapping
-    public ResponseEntity<Book> create(@RequestBody Book book) {
+    public ResponseEntity<BookResponse> create(@RequestBody Book book) {
         Book created = bookService.create(book);
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        return ResponseEntity.status(HttpStatus.CREATED).body(bookService.toResponse(created));
+    }
+
+    // POST /api/admin/books/import?format=csv|ndjson&skipRows=  (request body 為檔案內容，串流讀取)
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson", MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public BookImportReport importBooks(@RequestParam(value = "format", defaultValue = "csv") String format,
+                                        @RequestParam(value = "skipRows", defaultValue = "0") long skipRows,
+                                        HttpServletRequest request) throws IOException {
+        return bookImportService.importBooks(request.getInputStream(), format, skipRows);
     }
 
     @PutMapping("/{id}")
-    public Book update(@PathVariable Long id, @RequestBody Book payload) {
-        return bookService.update(id, payload);
+    public BookResponse update(@PathVariable Long id, @RequestBody Book payload) {
+        return bookService.toResponse(bookService.update(id, payload));
     }
 
     @DeleteMapping("/{id}")
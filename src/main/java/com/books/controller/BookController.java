@@ -2,18 +2,53 @@ package com.books.controller;
 
 import com.books.entity.Book;
 import com.books.service.BookService;
+import com.books.dto.BookResponse;
+import com.books.dto.BookSearchResponse;
 import com.books.dto.UploadResponse;
+import com.books.service.BookDetailCache;
+import com.books.service.BookSearchIndex;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.NoSuchElementException;
+
 @RestController
 @RequestMapping("/api/books")
 public class BookController {
 
     private final BookService bookService;
-    public BookController(BookService bookService) {
+    private final BookSearchIndex searchIndex;
+
+    public BookController(BookService bookService, BookSearchIndex searchIndex) {
         this.bookService = bookService;
+        this.searchIndex = searchIndex;
+    }
+
+    // GET /api/books/search?q=&format=&language=&status=&page=&size=
+    @GetMapping("/search")
+    public BookSearchResponse search(@RequestParam(value = "q", required = false) String q,
+                                     @RequestParam(value = "format", required = false) String format,
+                                     @RequestParam(value = "language", required = false) String language,
+                                     @RequestParam(value = "status", required = false) String status,
+                                     @RequestParam(value = "page", defaultValue = "0") int page,
+                                     @RequestParam(value = "size", defaultValue = "20") int size) {
+        return searchIndex.search(q, format, language, status, page, size);
+    }
+
+    // 前台書籍詳情：帶強 ETag；If-None-Match 相符時由快取直接回 304
+    @GetMapping("/{id}")
+    public ResponseEntity<BookResponse> get(@PathVariable Long id,
+                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        BookDetailCache.Entry entry = bookService.getDetail(id);
+        CacheControl cacheControl = CacheControl.noCache().cachePublic();
+        if (ifNoneMatch != null && etagMatches(ifNoneMatch, entry.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entry.etag()).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(entry.etag()).cacheControl(cacheControl).body(bookService.toResponse(entry.book()));
     }
 
     // 僅上傳並回傳 URL
@@ -25,10 +60,29 @@ public class BookController {
 
     // 上傳並寫回指定書籍的封面 URL
     @PostMapping("/{id}/cover")
-    public ResponseEntity<Book> uploadAndAttachCover(@PathVariable Long id,
-                                                     @RequestParam("file") MultipartFile file) {
+    public ResponseEntity<BookResponse> uploadAndAttachCover(@PathVariable Long id,
+                                                             @RequestParam("file") MultipartFile file) {
         String url = bookService.uploadCover(file);
         Book updated = bookService.updateCover(id, url);
-        return ResponseEntity.ok(updated);
+        return ResponseEntity.ok(bookService.toResponse(updated));
+    }
+
+    // If-None-Match 採弱比較(RFC 9110)：忽略 W/ 前綴，代理或壓縮過程轉成的弱驗證器也能命中
+    private boolean etagMatches(String ifNoneMatch, String etag) {
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*") || stripWeak(c).equals(opaque)) return true;
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<String> handleNotFound(NoSuchElementException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
     }
 }
@@ -0,0 +1,33 @@
+package com.books.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// 批次匯入結果；中斷後以 skipRows=lastCommittedRow 重新上傳同一份檔案即可續傳
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookImportReport {
+    private long totalRows;
+    private long imported;
+    private long failed;
+    private long skipped;
+    private long lastCommittedRow;
+    private long elapsedMs;
+    private long rowsPerSecond;
+    private boolean errorsTruncated;
+    private List<RowError> errors;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RowError {
+        private long row;
+        private String message;
+    }
+}
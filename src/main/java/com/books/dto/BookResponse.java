@@ -0,0 +1,30 @@
+package com.books.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// 書籍 API 回應：Book 欄位 + 封面衍生檔 URL(thumb/list/detail，由 BookService 依封面 URL 推得)
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookResponse {
+    private Long id;
+    private String title;
+    private String author;
+    private String publisherName;
+    private Integer listPrice;
+    private String format;
+    private String status;
+    private String coverImageUrl;
+    private Map<String, String> coverVariants;
+    private String language;
+    private LocalDateTime publishedAt;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,41 @@
+package com.books.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+// /api/books/search 回應：命中結果(依相關度排序) + format/language/status 分面計數
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSearchResponse {
+    private List<Hit> items;
+    private int total;
+    private int page;
+    private int size;
+    private Map<String, Map<String, Integer>> facets;
+    private long tookMicros;
+
+    @Data
+    @Builder(toBuilder = true)
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Hit {
+        private Long id;
+        private String title;
+        private String author;
+        private String publisherName;
+        private Integer listPrice;
+        private String format;
+        private String language;
+        private String status;
+        private String coverImageUrl;
+        private Map<String, String> coverVariants;
+        private double score;
+    }
+}
@@ -1,14 +1,24 @@
 package com.books.dto;
 
+import com.pagerealm.s3.ImageDerivativeService;
+
+import java.util.Map;
+
 public class UploadResponse {
     private final String url;
+    private final Map<String, String> variants;
 
     public UploadResponse(String url) {
         this.url = url;
+        this.variants = ImageDerivativeService.variantUrls(url);
     }
 
     public String getUrl() {
         return url;
     }
+
+    public Map<String, String> getVariants() {
+        return variants;
+    }
 }
 
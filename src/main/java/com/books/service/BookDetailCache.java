@@ -0,0 +1,126 @@
+package com.books.service;
+
+import com.books.entity.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 前台書籍詳情快取：
+ * - key 為書籍 id，value 為 Book 快照與對應的 ETag
+ * - ETag 由 id 與 updatedAt 組成(強 ETag)，updatedAt 由 @PreUpdate 維護，內容異動必定改變
+ * - 以 LRU 限制筆數，並以 ttl 限制存活時間(多節點時其他節點的異動最晚 ttl 後生效)
+ * - BookService 的 update/updateCover/delete 於交易提交後呼叫 evictAfterCommit
+ * - 每個 key 有世代號，evict 時遞增；put 帶入讀取前取得的世代，不符表示讀取期間已被 evict，不放回快取
+ */
+@Component
+public class BookDetailCache {
+
+    @Value("${books.detail-cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Value("${books.detail-cache.max-size:10000}")
+    private int maxSize;
+
+    private final Map<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    // id -> 世代號(evict 次數)；與 entries 共用同一把鎖
+    private final Map<Long, Long> generations = new HashMap<>();
+
+    public record Entry(Book book, String etag, long expiresAtMs) {
+    }
+
+    public static String etagOf(Book book) {
+        long version = book.getUpdatedAt() == null ? 0L
+                : book.getUpdatedAt().toEpochSecond(ZoneOffset.UTC) * 1_000_000L + book.getUpdatedAt().getNano() / 1000;
+        return "\"" + book.getId() + "-" + Long.toHexString(version) + "\"";
+    }
+
+    /**
+     * @description : 取得尚未過期的快取
+     * @return : 命中回傳 Entry(內含 Book 快照，呼叫端不可修改)，未命中回傳 null
+     */
+    public Entry get(Long id) {
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry == null) return null;
+            if (entry.expiresAtMs() <= System.currentTimeMillis()) {
+                entries.remove(id);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * @description : 目前世代號，讀資料庫前取得並於 put 時帶入
+     */
+    public long generation(Long id) {
+        synchronized (entries) {
+            return generations.getOrDefault(id, 0L);
+        }
+    }
+
+    /**
+     * @param generation : 讀取資料庫前由 generation(id) 取得
+     * @return : 對應的 Entry；世代已變更時仍回傳但不放入快取
+     */
+    public Entry put(Book book, long generation) {
+        Entry entry = new Entry(copyOf(book), etagOf(book), System.currentTimeMillis() + ttlMs);
+        synchronized (entries) {
+            if (generations.getOrDefault(book.getId(), 0L) == generation) {
+                entries.put(book.getId(), entry);
+            }
+        }
+        return entry;
+    }
+
+    // 交易提交後才移除，避免提交前被其他請求以舊資料重新放回
+    public void evictAfterCommit(Long id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(id);
+                }
+            });
+        } else {
+            evict(id);
+        }
+    }
+
+    public void evict(Long id) {
+        synchronized (entries) {
+            entries.remove(id);
+            generations.merge(id, 1L, Long::sum);
+        }
+    }
+
+    private static Book copyOf(Book b) {
+        return Book.builder()
+                .id(b.getId())
+                .title(b.getTitle())
+                .author(b.getAuthor())
+                .publisherName(b.getPublisherName())
+                .listPrice(b.getListPrice())
+                .format(b.getFormat())
+                .status(b.getStatus())
+                .coverImageUrl(b.getCoverImageUrl())
+                .language(b.getLanguage())
+                .publishedAt(b.getPublishedAt())
+                .createdAt(b.getCreatedAt())
+                .updatedAt(b.getUpdatedAt())
+                .build();
+    }
+}
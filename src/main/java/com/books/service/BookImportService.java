@@ -0,0 +1,285 @@
+package com.books.service;
+
+import com.books.dto.BookImportReport;
+import com.books.entity.Book;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 書籍批次匯入(CSV 或 NDJSON，逐行串流讀取)：
+ * - 每 batch-size 行為一批：平行解析與驗證，合格的列以 JDBC batch 寫入並獨立提交
+ *   (Book 使用 IDENTITY 主鍵，經 JPA save 無法批次寫入，因此改走 JdbcTemplate)
+ * - 不合格的列記錄行號與原因，不影響同批其他列
+ * - 寫入時取回自動產生的 id，每批提交後只把該批加入搜尋索引，不重建整個目錄
+ * - 回報 lastCommittedRow：中斷後以 skipRows 略過已提交的行即可續傳
+ * - CSV 第一行須為標題列，欄位名稱同 Book 屬性；不支援跨行的引號欄位
+ */
+@Service
+public class BookImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookImportService.class);
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final String INSERT_SQL = "INSERT INTO books (title, author, publisher_name, list_price, format, status, " +
+            "cover_image_url, language, published_at, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ObjectMapper objectMapper;
+    private final BookSearchIndex searchIndex;
+
+    @Value("${books.import.batch-size:1000}")
+    private int batchSize;
+
+    public BookImportService(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper, BookSearchIndex searchIndex) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.searchIndex = searchIndex;
+    }
+
+    private record ParsedRow(long row, Book book, String error) {
+    }
+
+    /**
+     * @description : 匯入書籍
+     * @param in : 檔案內容(UTF-8)
+     * @param format : "csv" 或 "ndjson"
+     * @param skipRows : 略過的資料列數(續傳用，不含 CSV 標題列)
+     * @return : 匯入結果
+     */
+    public BookImportReport importBooks(InputStream in, String format, long skipRows) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        long started = System.currentTimeMillis();
+        long row = 0;
+        long imported = 0;
+        long failed = 0;
+        long lastCommitted = skipRows;
+        List<BookImportReport.RowError> errors = new ArrayList<>();
+        boolean truncated = false;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            Map<String, Integer> header = null;
+            if (csv) {
+                String headerLine = reader.readLine();
+                if (headerLine == null) throw new IllegalArgumentException("CSV 缺少標題列");
+                header = parseHeader(headerLine);
+            }
+
+            List<String> lines = new ArrayList<>(batchSize);
+            long firstRowOfBatch = skipRows + 1;
+            String line;
+            while (true) {
+                line = reader.readLine();
+                if (line != null) {
+                    if (line.isBlank()) continue;
+                    row++;
+                    if (row <= skipRows) continue;
+                    lines.add(line);
+                    if (lines.size() < batchSize) continue;
+                }
+                if (lines.isEmpty()) break;
+
+                List<ParsedRow> parsed = parseBatch(lines, firstRowOfBatch, header);
+                List<Book> valid = new ArrayList<>(parsed.size());
+                for (ParsedRow p : parsed) {
+                    if (p.error() == null) {
+                        valid.add(p.book());
+                        continue;
+                    }
+                    failed++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) errors.add(new BookImportReport.RowError(p.row(), p.error()));
+                    else truncated = true;
+                }
+                if (!valid.isEmpty()) {
+                    tx.executeWithoutResult(status -> {
+                        insert(valid);
+                        searchIndex.putAllAfterCommit(valid);
+                    });
+                    imported += valid.size();
+                }
+                lastCommitted = firstRowOfBatch + lines.size() - 1;
+                firstRowOfBatch = lastCommitted + 1;
+                lines.clear();
+                if (line == null) break;
+            }
+        }
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - started);
+        logger.info("Book import finished: rows={}, imported={}, failed={} in {} ms", row, imported, failed, elapsed);
+        return BookImportReport.builder()
+                .totalRows(row)
+                .imported(imported)
+                .failed(failed)
+                .skipped(Math.min(skipRows, row))
+                .lastCommittedRow(lastCommitted)
+                .elapsedMs(elapsed)
+                .rowsPerSecond(imported * 1000 / elapsed)
+                .errorsTruncated(truncated)
+                .errors(errors)
+                .build();
+    }
+
+    // 解析與驗證為純 CPU 工作，以 parallel stream 處理；結果保持原順序
+    private List<ParsedRow> parseBatch(List<String> lines, long firstRow, Map<String, Integer> header) {
+        return IntStream.range(0, lines.size()).parallel()
+                .mapToObj(i -> parseRow(lines.get(i), firstRow + i, header))
+                .toList();
+    }
+
+    private ParsedRow parseRow(String line, long row, Map<String, Integer> header) {
+        try {
+            Book book = header != null ? fromCsv(parseCsvLine(line), header) : objectMapper.readValue(line, Book.class);
+            String error = validate(book);
+            return error == null ? new ParsedRow(row, book, null) : new ParsedRow(row, null, error);
+        } catch (Exception e) {
+            return new ParsedRow(row, null, "格式錯誤: " + e.getMessage());
+        }
+    }
+
+    private String validate(Book b) {
+        if (b.getTitle() == null || b.getTitle().isBlank()) return "title 必填";
+        if (b.getTitle().length() > 500) return "title 超過 500 字";
+        if (b.getAuthor() != null && b.getAuthor().length() > 100) return "author 超過 100 字";
+        if (b.getListPrice() == null || b.getListPrice() < 0) return "listPrice 必填且不可為負";
+        if (tooLong(b.getPublisherName(), 255) || tooLong(b.getFormat(), 255) || tooLong(b.getStatus(), 255)
+                || tooLong(b.getLanguage(), 255)) return "欄位超過 255 字";
+        if (tooLong(b.getCoverImageUrl(), 500)) return "coverImageUrl 超過 500 字";
+        return null;
+    }
+
+    private boolean tooLong(String s, int max) {
+        return s != null && s.length() > max;
+    }
+
+    // JDBC batch 寫入並把自動產生的 id 填回 books，供提交後加入搜尋索引
+    private void insert(List<Book> books) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Book b : books) {
+                    // 預設值同 Book.prePersist
+                    if (b.getAuthor() == null || b.getAuthor().isBlank()) b.setAuthor("作者");
+                    if (b.getStatus() == null || b.getStatus().isBlank()) b.setStatus("販售中");
+                    b.setCreatedAt(now);
+                    b.setUpdatedAt(now);
+                    ps.setString(1, b.getTitle());
+                    ps.setString(2, b.getAuthor());
+                    ps.setString(3, b.getPublisherName());
+                    ps.setInt(4, b.getListPrice());
+                    ps.setString(5, b.getFormat());
+                    ps.setString(6, b.getStatus());
+                    ps.setString(7, b.getCoverImageUrl());
+                    ps.setString(8, b.getLanguage());
+                    if (b.getPublishedAt() != null) ps.setTimestamp(9, Timestamp.valueOf(b.getPublishedAt()));
+                    else ps.setNull(9, Types.TIMESTAMP);
+                    ps.setTimestamp(10, Timestamp.valueOf(now));
+                    ps.setTimestamp(11, Timestamp.valueOf(now));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (Book b : books) {
+                        if (!keys.next()) throw new IllegalStateException("批次寫入未回傳全部的 id");
+                        b.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private Map<String, Integer> parseHeader(String line) {
+        List<String> cols = parseCsvLine(line.startsWith("\uFEFF") ? line.substring(1) : line);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < cols.size(); i++) header.put(cols.get(i).trim(), i);
+        if (!header.containsKey("title") || !header.containsKey("listPrice")) {
+            throw new IllegalArgumentException("CSV 標題列需包含 title 與 listPrice");
+        }
+        return header;
+    }
+
+    private Book fromCsv(List<String> cols, Map<String, Integer> header) {
+        String price = col(cols, header, "listPrice");
+        String publishedAt = col(cols, header, "publishedAt");
+        return Book.builder()
+                .title(col(cols, header, "title"))
+                .author(col(cols, header, "author"))
+                .publisherName(col(cols, header, "publisherName"))
+                .listPrice(price == null ? null : Integer.valueOf(price.trim()))
+                .format(col(cols, header, "format"))
+                .status(col(cols, header, "status"))
+                .coverImageUrl(col(cols, header, "coverImageUrl"))
+                .language(col(cols, header, "language"))
+                .publishedAt(publishedAt == null ? null : parseDateTime(publishedAt.trim()))
+                .build();
+    }
+
+    private String col(List<String> cols, Map<String, Integer> header, String name) {
+        Integer idx = header.get(name);
+        if (idx == null || idx >= cols.size()) return null;
+        String v = cols.get(idx);
+        return v.isEmpty() ? null : v;
+    }
+
+    // 接受 2024-01-31 或 2024-01-31T10:00:00
+    private LocalDateTime parseDateTime(String s) {
+        return s.length() <= 10 ? LocalDate.parse(s).atStartOfDay() : LocalDateTime.parse(s);
+    }
+
+    // RFC 4180 單行解析：支援引號包住的逗號與 "" 跳脫
+    static List<String> parseCsvLine(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        out.add(cur.toString());
+        return out;
+    }
+}
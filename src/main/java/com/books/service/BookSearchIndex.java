@@ -0,0 +1,372 @@
+package com.books.service;
+
+import com.books.dto.BookSearchResponse;
+import com.books.entity.Book;
+import com.books.repository.BookRepository;
+import com.pagerealm.s3.ImageDerivativeService;
+import com.pagerealm.utils.SearchTokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 書籍目錄的記憶體搜尋索引：
+ * - 倒排索引(token -> bookId -> 權重)，書名權重 3、作者 2、出版社 1
+ * - 中日韓文字以 bigram 切詞(另建單字 token 供單字查詢)，其他文字以連續英數字為一詞，一律轉小寫並做 NFKC 正規化(SearchTokenizer)
+ * - 多個查詢詞取交集，分數 = Σ 欄位權重 × idf，書名包含完整查詢字串再加分
+ * - format/language/status 分面：每個分面的計數套用「其他」分面的篩選條件
+ * - 啟動時平行切詞全量重建，之後於 BookService 寫入交易提交後增量更新；重建期間的增量更新會在切換時重放
+ * - 無查詢詞時改走依 id 新到舊排列的書籍集合與 (format, language, status) 計數表，不複製也不排序全部書籍
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookSearchIndex.class);
+    private static final int TITLE_WEIGHT = 3;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int PUBLISHER_WEIGHT = 1;
+    private static final double PHRASE_BONUS = 5.0;
+    private static final int LOAD_PAGE_SIZE = 2000;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final BookRepository bookRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 以下欄位只在 write lock 下修改
+    // 依 id 新到舊排列，即無查詢詞時的結果順序
+    private NavigableMap<Long, Doc> docs = new TreeMap<>(Comparator.reverseOrder());
+    private Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    // 每種 (format, language, status) 組合的書籍數，供無查詢詞時計算 total 與 facets
+    private Map<FacetKey, Integer> counts = new HashMap<>();
+    // 非 null 表示全量重建進行中，記錄期間的增量更新
+    private List<Change> pending;
+
+    public BookSearchIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    private record Doc(BookSearchResponse.Hit hit, String titleNorm, Map<String, Integer> terms) {
+        FacetKey facetKey() {
+            return new FacetKey(hit.getFormat(), hit.getLanguage(), hit.getStatus());
+        }
+    }
+
+    private record FacetKey(String format, String language, String status) {
+    }
+
+    // 一次增量更新：doc 為 null 表示刪除
+    private record Change(Long bookId, Doc doc) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            long started = System.currentTimeMillis();
+            List<Book> books = new ArrayList<>();
+            Page<Book> page;
+            int p = 0;
+            do {
+                page = bookRepository.findAll(PageRequest.of(p++, LOAD_PAGE_SIZE, Sort.by("id")));
+                books.addAll(page.getContent());
+            } while (page.hasNext());
+
+            // 切詞是主要成本，平行處理；合併到倒排索引則單執行緒完成
+            List<Doc> built = books.parallelStream().map(BookSearchIndex::toDoc).toList();
+            NavigableMap<Long, Doc> newDocs = new TreeMap<>(Comparator.reverseOrder());
+            Map<String, Map<Long, Integer>> newPostings = new HashMap<>();
+            Map<FacetKey, Integer> newCounts = new HashMap<>();
+            for (Doc d : built) {
+                newDocs.put(d.hit().getId(), d);
+                d.terms().forEach((t, w) -> newPostings.computeIfAbsent(t, k -> new HashMap<>()).put(d.hit().getId(), w));
+                newCounts.merge(d.facetKey(), 1, Integer::sum);
+            }
+
+            lock.writeLock().lock();
+            try {
+                docs = newDocs;
+                postings = newPostings;
+                counts = newCounts;
+                // 讀取期間提交的異動依提交順序重放；put/remove 皆可重複套用
+                for (Change c : pending) applyLocked(c);
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Book search index rebuilt: {} books, {} terms in {} ms",
+                    newDocs.size(), newPostings.size(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.error("Book search index rebuild failed", e);
+            throw e;
+        }
+    }
+
+    // 交易提交後才更新，避免 rollback 的資料被搜尋到
+    public void putAfterCommit(Book book) {
+        Doc doc = toDoc(book);
+        afterCommit(() -> apply(new Change(doc.hit().getId(), doc)));
+    }
+
+    // 批次匯入用：平行切詞，提交後一次取得 write lock 套用整批
+    public void putAllAfterCommit(List<Book> books) {
+        List<Doc> built = books.parallelStream().map(BookSearchIndex::toDoc).toList();
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                for (Doc doc : built) {
+                    Change c = new Change(doc.hit().getId(), doc);
+                    applyLocked(c);
+                    if (pending != null) pending.add(c);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void removeAfterCommit(Long bookId) {
+        afterCommit(() -> apply(new Change(bookId, null)));
+    }
+
+    /**
+     * @description : 關鍵字 + 分面搜尋
+     * @param q : 關鍵字(書名/作者/出版社)，空白表示不限(依 id 新到舊)
+     * @param format : 篩選 format(可為 null)
+     * @param language : 篩選 language(可為 null)
+     * @param status : 篩選 status(可為 null)
+     * @param page : 頁碼(從 0 開始)
+     * @param size : 每頁筆數(1~100)
+     */
+    public BookSearchResponse search(String q, String format, String language, String status, int page, int size) {
+        long started = System.nanoTime();
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNo = Math.max(0, page);
+        String phrase = SearchTokenizer.normalize(q).trim();
+        List<String> tokens = new ArrayList<>(SearchTokenizer.tokenize(phrase, false));
+
+        if (tokens.isEmpty()) return browse(format, language, status, pageNo, pageSize, started);
+
+        List<BookSearchResponse.Hit> matches = new ArrayList<>();
+        Map<String, Map<String, Integer>> facets = emptyFacets();
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = score(tokens);
+            for (Long id : scores.keySet()) {
+                Doc d = docs.get(id);
+                if (d == null) continue;
+                BookSearchResponse.Hit h = d.hit();
+                boolean fOk = matches(format, h.getFormat());
+                boolean lOk = matches(language, h.getLanguage());
+                boolean sOk = matches(status, h.getStatus());
+                if (lOk && sOk) facets.get("format").merge(facetKey(h.getFormat()), 1, Integer::sum);
+                if (fOk && sOk) facets.get("language").merge(facetKey(h.getLanguage()), 1, Integer::sum);
+                if (fOk && lOk) facets.get("status").merge(facetKey(h.getStatus()), 1, Integer::sum);
+                if (!(fOk && lOk && sOk)) continue;
+
+                double score = scores.get(id);
+                if (d.titleNorm().contains(phrase)) score += PHRASE_BONUS;
+                matches.add(h.toBuilder().score(score).build());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(Comparator.comparingDouble(BookSearchResponse.Hit::getScore).reversed()
+                .thenComparing(BookSearchResponse.Hit::getId, Comparator.reverseOrder()));
+        int from = Math.min(pageNo * pageSize, matches.size());
+        int to = Math.min(from + pageSize, matches.size());
+        return BookSearchResponse.builder()
+                .items(new ArrayList<>(matches.subList(from, to)))
+                .total(matches.size())
+                .page(pageNo)
+                .size(pageSize)
+                .facets(facets)
+                .tookMicros((System.nanoTime() - started) / 1000)
+                .build();
+    }
+
+    // 無查詢詞：沿依 id 排列的集合走到目標頁即停止；total 與 facets 由計數表取得
+    private BookSearchResponse browse(String format, String language, String status,
+                                      int pageNo, int pageSize, long started) {
+        List<BookSearchResponse.Hit> items = new ArrayList<>(pageSize);
+        Map<String, Map<String, Integer>> facets = emptyFacets();
+        int total = 0;
+        long from = (long) pageNo * pageSize;
+
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<FacetKey, Integer> e : counts.entrySet()) {
+                FacetKey k = e.getKey();
+                int n = e.getValue();
+                boolean fOk = matches(format, k.format());
+                boolean lOk = matches(language, k.language());
+                boolean sOk = matches(status, k.status());
+                if (lOk && sOk) facets.get("format").merge(facetKey(k.format()), n, Integer::sum);
+                if (fOk && sOk) facets.get("language").merge(facetKey(k.language()), n, Integer::sum);
+                if (fOk && lOk) facets.get("status").merge(facetKey(k.status()), n, Integer::sum);
+                if (fOk && lOk && sOk) total += n;
+            }
+            if (from < total) {
+                long skipped = 0;
+                for (Doc d : docs.values()) {
+                    BookSearchResponse.Hit h = d.hit();
+                    if (!(matches(format, h.getFormat()) && matches(language, h.getLanguage())
+                            && matches(status, h.getStatus()))) continue;
+                    if (skipped++ < from) continue;
+                    items.add(h.toBuilder().score(0).build());
+                    if (items.size() == pageSize) break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return BookSearchResponse.builder()
+                .items(items)
+                .total(total)
+                .page(pageNo)
+                .size(pageSize)
+                .facets(facets)
+                .tookMicros((System.nanoTime() - started) / 1000)
+                .build();
+    }
+
+    private static Map<String, Map<String, Integer>> emptyFacets() {
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+        facets.put("format", new HashMap<>());
+        facets.put("language", new HashMap<>());
+        facets.put("status", new HashMap<>());
+        return facets;
+    }
+
+    // 所有查詢詞都要命中(交集)
+    private Map<Long, Double> score(List<String> tokens) {
+        int n = Math.max(1, docs.size());
+        tokens.sort(Comparator.comparingInt(t -> postings.getOrDefault(t, Map.of()).size()));
+        Map<Long, Double> scores = null;
+        for (String t : tokens) {
+            Map<Long, Integer> posting = postings.get(t);
+            if (posting == null) return Map.of();
+            double idf = Math.log(1.0 + (double) n / posting.size());
+            if (scores == null) {
+                scores = new HashMap<>(posting.size() * 2);
+                for (Map.Entry<Long, Integer> e : posting.entrySet()) scores.put(e.getKey(), e.getValue() * idf);
+            } else {
+                Map<Long, Double> next = new HashMap<>(scores.size() * 2);
+                for (Map.Entry<Long, Double> e : scores.entrySet()) {
+                    Integer w = posting.get(e.getKey());
+                    if (w != null) next.put(e.getKey(), e.getValue() + w * idf);
+                }
+                scores = next;
+            }
+            if (scores.isEmpty()) return scores;
+        }
+        return scores;
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            applyLocked(change);
+            if (pending != null) pending.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyLocked(Change c) {
+        removeLocked(c.bookId());
+        Doc doc = c.doc();
+        if (doc == null) return;
+        docs.put(c.bookId(), doc);
+        doc.terms().forEach((t, w) -> postings.computeIfAbsent(t, k -> new HashMap<>()).put(c.bookId(), w));
+        counts.merge(doc.facetKey(), 1, Integer::sum);
+    }
+
+    private void removeLocked(Long bookId) {
+        Doc old = docs.remove(bookId);
+        if (old == null) return;
+        counts.computeIfPresent(old.facetKey(), (k, n) -> n == 1 ? null : n - 1);
+        for (String t : old.terms().keySet()) {
+            Map<Long, Integer> posting = postings.get(t);
+            if (posting == null) continue;
+            posting.remove(bookId);
+            if (posting.isEmpty()) postings.remove(t);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Doc toDoc(Book b) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, b.getTitle(), TITLE_WEIGHT);
+        addTerms(terms, b.getAuthor(), AUTHOR_WEIGHT);
+        addTerms(terms, b.getPublisherName(), PUBLISHER_WEIGHT);
+        BookSearchResponse.Hit hit = BookSearchResponse.Hit.builder()
+                .id(b.getId())
+                .title(b.getTitle())
+                .author(b.getAuthor())
+                .publisherName(b.getPublisherName())
+                .listPrice(b.getListPrice())
+                .format(b.getFormat())
+                .language(b.getLanguage())
+                .status(b.getStatus())
+                .coverImageUrl(b.getCoverImageUrl())
+                .coverVariants(ImageDerivativeService.variantUrls(b.getCoverImageUrl()))
+                .build();
+        return new Doc(hit, SearchTokenizer.normalize(b.getTitle()), terms);
+    }
+
+    private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+        for (String t : SearchTokenizer.tokenize(SearchTokenizer.normalize(text), true)) {
+            terms.merge(t, weight, Integer::sum);
+        }
+    }
+
+    private static boolean matches(String filter, String value) {
+        return filter == null || filter.isBlank() || filter.equals(value);
+    }
+
+    private static String facetKey(String value) {
+        return value == null || value.isBlank() ? "(未設定)" : value;
+    }
+}
@@ -1,7 +1,9 @@
 package com.books.service;
 
+import com.books.dto.BookResponse;
 import com.books.entity.Book;
 import com.books.repository.BookRepository;
+import com.pagerealm.s3.ImageDerivativeService;
 import com.pagerealm.s3.S3Buckets;
 import com.pagerealm.s3.S3Service;
 import org.springframework.data.domain.Page;
@@ -12,33 +14,69 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.util.NoSuchElementException;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 @Service
 public class BookService {
     private final BookRepository bookRepository;
     private final S3Service s3Service;
     private final S3Buckets s3Buckets;
+    private final BookSearchIndex searchIndex;
+    private final BookDetailCache detailCache;
+    private final ImageDerivativeService imageDerivativeService;
 
-    public BookService(BookRepository bookRepository, S3Service s3Service, S3Buckets s3Buckets) {
+    public BookService(BookRepository bookRepository, S3Service s3Service, S3Buckets s3Buckets,
+                       BookSearchIndex searchIndex, BookDetailCache detailCache,
+                       ImageDerivativeService imageDerivativeService) {
         this.bookRepository = bookRepository;
         this.s3Service = s3Service;
         this.s3Buckets = s3Buckets;
+        this.searchIndex = searchIndex;
+        this.detailCache = detailCache;
+        this.imageDerivativeService = imageDerivativeService;
     }
 
     public Page<Book> list(Pageable pageable) {
         return bookRepository.findAll(pageable);
     }
 
+    // 實體轉回應：封面衍生檔 URL 在此推得，實體本身不依賴 S3
+    public BookResponse toResponse(Book b) {
+        return BookResponse.builder()
+                .id(b.getId())
+                .title(b.getTitle())
+                .author(b.getAuthor())
+                .publisherName(b.getPublisherName())
+                .listPrice(b.getListPrice())
+                .format(b.getFormat())
+                .status(b.getStatus())
+                .coverImageUrl(b.getCoverImageUrl())
+                .coverVariants(ImageDerivativeService.variantUrls(b.getCoverImageUrl()))
+                .language(b.getLanguage())
+                .publishedAt(b.getPublishedAt())
+                .createdAt(b.getCreatedAt())
+                .updatedAt(b.getUpdatedAt())
+                .build();
+    }
+
     public Book get(Long id) {
         return bookRepository.findById(id).orElseThrow(() -> new NoSuchElementException("Book not found: " + id));
     }
 
+    // 前台詳情：先查快取，未命中才讀資料庫並放入快取
+    public BookDetailCache.Entry getDetail(Long id) {
+        BookDetailCache.Entry cached = detailCache.get(id);
+        if (cached != null) return cached;
+        // 讀資料庫前先取世代，讀取期間若被 evict，這份可能過時的資料不會放回快取
+        long generation = detailCache.generation(id);
+        return detailCache.put(get(id), generation);
+    }
+
     @Transactional
     public Book create(Book book) {
         book.setId(null);
-        return bookRepository.save(book);
+        Book saved = bookRepository.save(book);
+        searchIndex.putAfterCommit(saved);
+        return saved;
     }
 
     @Transactional
@@ -54,7 +92,10 @@ public class BookService {
         existing.setLanguage(payload.getLanguage());
         existing.setPublishedAt(payload.getPublishedAt());
         // updatedAt will be handled by @PreUpdate
-        return bookRepository.save(existing);
+        Book saved = bookRepository.save(existing);
+        searchIndex.putAfterCommit(saved);
+        detailCache.evictAfterCommit(id);
+        return saved;
     }
 
     @Transactional
@@ -63,6 +104,8 @@ public class BookService {
             throw new NoSuchElementException("Book not found: " + id);
         }
         bookRepository.deleteById(id);
+        searchIndex.removeAfterCommit(id);
+        detailCache.evictAfterCommit(id);
     }
 
     /**
@@ -111,13 +154,11 @@ public class BookService {
             };
         }
 
-        String ts = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS"));
-        String filename = "book_cover_" + ts + "." + ext;
-        String key = "books/covers/" + filename;
-
         try {
-            byte[] bytes = file.getBytes();
-            s3Service.putObjectWithContentType(bucket, key, bytes, contentType);
+            // 內容定址：相同圖片得到相同 key，已存在就不再上傳
+            String key = ImageDerivativeService.originalKey("books/covers/" + ImageDerivativeService.sha256Hex(file), ext);
+            // 原檔 + thumb/list/detail 衍生檔，衍生檔 URL 可由 ImageDerivativeService.variantUrls 推得
+            imageDerivativeService.storeIfAbsent(bucket, key, file, contentType, ImageDerivativeService.Kind.COVER);
             return s3Service.buildPublicUrl(bucket, key);
         } catch (IOException e) {
             throw new RuntimeException("上傳失敗，請稍後再試", e);
@@ -129,6 +170,9 @@ public class BookService {
     public Book updateCover(Long id, String coverUrl) {
         Book book = get(id);
         book.setCoverImageUrl(coverUrl);
-        return bookRepository.save(book);
+        Book saved = bookRepository.save(book);
+        searchIndex.putAfterCommit(saved);
+        detailCache.evictAfterCommit(id);
+        return saved;
     }
 }
@@ -1,16 +1,20 @@
 package com.coupons_points.controller;
 
+import com.admin_log.audit.Audited;
 import com.coupons_points.dto.coupon.CouponDtos;
 import com.coupons_points.entity.Coupon;
+import com.coupons_points.entity.CouponCode;
 import com.coupons_points.service.CouponService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
 @RequestMapping("/api/admin/coupons")
+@Audited(target = "Coupon", label = "優惠券")
 @RequiredArgsConstructor
 public class CouponAdminController {
 
@@ -41,4 +45,24 @@ public class CouponAdminController {
     public CouponDtos.CouponResponse changeStatus(@PathVariable Long id, @RequestParam("status") Coupon.CouponStatus status) {
         return couponService.changeStatus(id, status);
     }
+
+    // POST /api/admin/coupons/{id}/codes  產生 UNIQUE 一次性代碼(背景執行，回傳工作 id)
+    @PostMapping("/{id}/codes")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public CouponDtos.GenerateCodesResponse generateCodes(@PathVariable Long id, @RequestBody @Valid CouponDtos.GenerateCodesRequest req) {
+        return couponService.generateCodes(id, req);
+    }
+
+    // GET /api/admin/coupons/{id}/codes/jobs/{jobId}  查詢產生進度
+    @GetMapping("/{id}/codes/jobs/{jobId}")
+    public CouponDtos.GenerateCodesResponse codeJob(@PathVariable Long id, @PathVariable String jobId) {
+        return couponService.codeJob(id, jobId);
+    }
+
+    @GetMapping("/{id}/codes")
+    public Page<CouponDtos.CodeResponse> listCodes(@PathVariable Long id,
+                                                   @RequestParam(value = "status", required = false) CouponCode.CodeStatus status,
+                                                   Pageable pageable) {
+        return couponService.listCodes(id, status, pageable);
+    }
 }
@@ -2,11 +2,15 @@ package com.coupons_points.controller;
 
 import com.coupons_points.dto.points.PointsDtos;
 import com.coupons_points.entity.PointRule;
+import com.coupons_points.service.PointsExpiryService;
 import com.coupons_points.service.PointsService;
+import com.pagerealm.utils.KeysetCursor;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -32,6 +36,22 @@ public class PointsController {
         return pointsService.getLots(userId, pageable);
     }
 
+    // Keyset 分頁：GET /api/points/{userId}/ledger/cursor?before=&size=
+    @GetMapping("/{userId}/ledger/cursor")
+    public PointsDtos.CursorPage<PointsDtos.LedgerItem> ledgerCursor(@PathVariable Long userId,
+                                                                     @RequestParam(value = "before", required = false) String before,
+                                                                     @RequestParam(value = "size", defaultValue = "20") int size) {
+        return pointsService.getLedgerBefore(userId, before, size);
+    }
+
+    // GET /api/points/{userId}/lots/cursor?after=&size=
+    @GetMapping("/{userId}/lots/cursor")
+    public PointsDtos.CursorPage<PointsDtos.LotItem> lotsCursor(@PathVariable Long userId,
+                                                               @RequestParam(value = "after", required = false) String after,
+                                                               @RequestParam(value = "size", defaultValue = "20") int size) {
+        return pointsService.getLotsAfter(userId, after, size);
+    }
+
     // Actions
     @PostMapping("/adjust")
     public PointsDtos.GenericResponse adjust(@RequestBody @Valid PointsDtos.AdjustRequest req) {
@@ -53,6 +73,12 @@ public class PointsController {
         return pointsService.refund(req);
     }
 
+    // Expiry job
+    @GetMapping("/expiry/progress")
+    public PointsExpiryService.Progress expiryProgress() {
+        return pointsService.expiryProgress();
+    }
+
     // Rules
     @GetMapping("/rules/current")
     public PointRule currentRule() {
@@ -63,5 +89,9 @@ public class PointsController {
     public PointRule upsertRule(@RequestBody PointRule rule) {
         return pointsService.upsertRule(rule);
     }
-}
 
+    @ExceptionHandler(KeysetCursor.InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursor(KeysetCursor.InvalidCursorException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+}
@@ -1,6 +1,7 @@
 package com.coupons_points.dto.coupon;
 
 import com.coupons_points.entity.Coupon;
+import com.coupons_points.entity.CouponCode;
 import jakarta.validation.constraints.*;
 import lombok.*;
 
@@ -13,7 +14,7 @@ public class CouponDtos {
         @NotBlank
         private String name;
         @NotNull
-        private Coupon.CouponCodeType codeType; // 目前僅支援 GENERIC
+        private Coupon.CouponCodeType codeType; // GENERIC 共用代碼；UNIQUE 需另行產生一次性代碼
         @Size(max = 100)
         private String genericCode;
         @NotNull
@@ -34,6 +35,7 @@ public class CouponDtos {
         private Integer totalUsageLimit;
         @Min(1)
         private Integer perUserLimit;
+        private Boolean flashSale;
         private Long createdBy;
     }
 
@@ -59,6 +61,7 @@ public class CouponDtos {
         private Integer totalUsageLimit;
         @Min(1)
         private Integer perUserLimit;
+        private Boolean flashSale;
     }
 
     @Data
@@ -79,6 +82,7 @@ public class CouponDtos {
         private Coupon.CouponStatus status;
         private Integer totalUsageLimit;
         private Integer perUserLimit;
+        private Boolean flashSale;
         private Long createdBy;
         private LocalDateTime createdAt;
         private LocalDateTime updatedAt;
@@ -122,5 +126,43 @@ public class CouponDtos {
         private String status;
         private String note;
     }
-}
 
+    @Data
+    public static class GenerateCodesRequest {
+        @NotNull
+        @Min(1)
+        @Max(1_000_000)
+        private Integer count;
+        @Size(max = 16)
+        @Pattern(regexp = "^[A-Za-z0-9-]*$")
+        private String prefix;
+    }
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class GenerateCodesResponse {
+        private String jobId;
+        private String status;
+        private Long couponId;
+        private Integer requested;
+        private Integer generated;
+        private Long elapsedMs;
+        private String error;
+    }
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class CodeResponse {
+        private Long id;
+        private Long couponId;
+        private String code;
+        private CouponCode.CodeStatus status;
+        private Long claimedBy;
+        private LocalDateTime claimedAt;
+        private LocalDateTime createdAt;
+    }
+}
@@ -6,6 +6,7 @@ import jakarta.validation.constraints.*;
 import lombok.*;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 public class PointsDtos {
 
@@ -95,6 +96,18 @@ public class PointsDtos {
         private LocalDateTime createdAt;
     }
 
+    // keyset 分頁回應：nextCursor 帶回下一頁的 before/after 參數，hasNext=false 時為 null
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class CursorPage<T> {
+        private List<T> items;
+        private Integer size;
+        private boolean hasNext;
+        private String nextCursor;
+    }
+
     @Data
     @Builder
     @AllArgsConstructor
@@ -61,6 +61,10 @@ public class Coupon {
     @Column(name = "per_user_limit")
     private Integer perUserLimit;
 
+    // 搶券模式：名額預先載入記憶體配發，核銷紀錄改為非同步批次寫入(需設定 totalUsageLimit)
+    @Column(name = "flash_sale")
+    private Boolean flashSale;
+
     @Column(name = "created_by")
     private Long createdBy;
 
@@ -0,0 +1,54 @@
+package com.coupons_points.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// UNIQUE 類型優惠券的一次性代碼(每張券可批次產生大量代碼，每個代碼只能核銷一次)
+@Entity
+@Table(name = "coupon_codes",
+        indexes = {
+                @Index(name = "idx_coupon_codes_coupon_status", columnList = "coupon_id,status,id")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uq_coupon_codes_code", columnNames = {"code"})
+        })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CouponCode {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "coupon_id", nullable = false)
+    private Long couponId;
+
+    // 一律存大寫，查詢前先正規化
+    @Column(nullable = false, length = 32)
+    private String code;
+
+    @Builder.Default
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private CodeStatus status = CodeStatus.AVAILABLE;
+
+    @Column(name = "claimed_by")
+    private Long claimedBy;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    public void prePersist() {
+        if (status == null) status = CodeStatus.AVAILABLE;
+        if (createdAt == null) createdAt = LocalDateTime.now();
+    }
+
+    public enum CodeStatus { AVAILABLE, CLAIMED }
+}
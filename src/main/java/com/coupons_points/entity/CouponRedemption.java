@@ -27,7 +27,7 @@ public class CouponRedemption {
     private Long couponId;
 
     @Column(name = "code_id")
-    private Long codeId; // 保留欄位
+    private Long codeId; // UNIQUE 類型使用的 coupon_codes.id
 
     @Column(name = "user_id", nullable = false)
     private Long userId;
@@ -0,0 +1,20 @@
+package com.coupons_points.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// 優惠券總使用次數(APPLIED 核銷數)，以條件式 UPDATE 原子遞增，取代每次 COUNT(*)
+@Entity
+@Table(name = "coupon_usage")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CouponUsage {
+    @Id
+    @Column(name = "coupon_id")
+    private Long couponId;
+
+    @Column(name = "used_count", nullable = false)
+    private Integer usedCount;
+}
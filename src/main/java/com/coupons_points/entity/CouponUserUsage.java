@@ -0,0 +1,35 @@
+package com.coupons_points.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+// 每位使用者對單一優惠券的使用次數(APPLIED 核銷數)
+@Entity
+@Table(name = "coupon_user_usage")
+@IdClass(CouponUserUsage.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CouponUserUsage {
+    @Id
+    @Column(name = "coupon_id")
+    private Long couponId;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "used_count", nullable = false)
+    private Integer usedCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long couponId;
+        private Long userId;
+    }
+}
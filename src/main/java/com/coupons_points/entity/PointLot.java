@@ -8,7 +8,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "point_lots", indexes = {
         @Index(name = "ix_lots_user_exp", columnList = "user_id,expires_at,id"),
-        @Index(name = "ix_lots_user", columnList = "user_id")
+        @Index(name = "ix_lots_user", columnList = "user_id"),
+        @Index(name = "ix_lots_exp_remaining", columnList = "expires_at,remaining_points,id")
 })
 @Data
 @Builder
@@ -35,6 +36,10 @@ public class PointLot {
     @Column(name = "used_points", nullable = false)
     private Integer usedPoints;
 
+    // 冗餘欄位 = earned_points - used_points，供到期排程以索引略過已用完的批次
+    @Column(name = "remaining_points")
+    private Integer remainingPoints;
+
     @Column(name = "expires_at")
     private LocalDateTime expiresAt; // NULL=不會到期
 
@@ -45,6 +50,12 @@ public class PointLot {
     public void prePersist() {
         if (usedPoints == null) usedPoints = 0;
         if (createdAt == null) createdAt = LocalDateTime.now();
+        remainingPoints = remaining();
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        remainingPoints = remaining();
     }
 
     public int remaining() { return (earnedPoints == null ? 0 : earnedPoints) - (usedPoints == null ? 0 : usedPoints); }
@@ -0,0 +1,37 @@
+package com.coupons_points.repository;
+
+import com.coupons_points.entity.CouponCode;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface CouponCodeRepository extends JpaRepository<CouponCode, Long> {
+
+    // 走 uq_coupon_codes_code 唯一索引
+    Optional<CouponCode> findByCode(String code);
+
+    Page<CouponCode> findAllByCouponIdAndStatus(Long couponId, CouponCode.CodeStatus status, Pageable pageable);
+
+    long countByCouponIdAndStatus(Long couponId, CouponCode.CodeStatus status);
+
+    // 只有 AVAILABLE 才能被領用；回傳 0 表示已被其他請求搶先使用
+    @Modifying
+    @Query(value = "UPDATE coupon_codes SET status = 'CLAIMED', claimed_by = :userId, claimed_at = NOW() " +
+            "WHERE id = :id AND status = 'AVAILABLE'", nativeQuery = true)
+    int claim(@Param("id") Long id, @Param("userId") Long userId);
+
+    // 核銷撤銷時釋放代碼
+    @Modifying
+    @Query(value = "UPDATE coupon_codes SET status = 'AVAILABLE', claimed_by = NULL, claimed_at = NULL " +
+            "WHERE id = :id AND status = 'CLAIMED'", nativeQuery = true)
+    int release(@Param("id") Long id);
+
+    @Modifying
+    @Query(value = "DELETE FROM coupon_codes WHERE coupon_id = :couponId", nativeQuery = true)
+    int deleteAllByCouponId(@Param("couponId") Long couponId);
+}
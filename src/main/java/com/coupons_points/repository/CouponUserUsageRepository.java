@@ -0,0 +1,32 @@
+package com.coupons_points.repository;
+
+import com.coupons_points.entity.CouponUserUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface CouponUserUsageRepository extends JpaRepository<CouponUserUsage, CouponUserUsage.Key> {
+
+    // 未達個人上限(limit 為 NULL 表示不限)才 +1；回傳 0 表示已達上限或計數列不存在
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE coupon_user_usage SET used_count = used_count + 1 " +
+            "WHERE coupon_id = :couponId AND user_id = :userId AND (:limit IS NULL OR used_count < :limit)", nativeQuery = true)
+    int tryIncrement(@Param("couponId") Long couponId, @Param("userId") Long userId, @Param("limit") Integer limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE coupon_user_usage SET used_count = GREATEST(used_count - 1, 0) " +
+            "WHERE coupon_id = :couponId AND user_id = :userId", nativeQuery = true)
+    int decrement(@Param("couponId") Long couponId, @Param("userId") Long userId);
+
+    // 計數列不存在時，以現有核銷紀錄建立初始值(每位使用者每張券只會發生一次)
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO coupon_user_usage (coupon_id, user_id, used_count) " +
+            "SELECT :couponId, :userId, COUNT(*) FROM coupon_redemptions " +
+            "WHERE coupon_id = :couponId AND user_id = :userId AND status = 'APPLIED'", nativeQuery = true)
+    int seed(@Param("couponId") Long couponId, @Param("userId") Long userId);
+}
@@ -1,9 +1,13 @@
 package com.coupons_points.repository;
 
 import com.coupons_points.entity.PointLot;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -13,5 +17,25 @@ public interface PointLotRepository extends JpaRepository<PointLot, Long> {
     Page<PointLot> findAllByUserIdOrderByExpiresAtAscIdAsc(Long userId, Pageable pageable);
     List<PointLot> findByUserIdAndExpiresAtLessThanEqual(Long userId, LocalDateTime cutoff);
     List<PointLot> findByExpiresAtLessThanEqual(LocalDateTime cutoff);
-}
 
+    // keyset 分頁(ix_lots_user_exp)：取 (expiresAt, id) 游標之後的資料，不做 COUNT
+    // 分兩段：先列有到期日的批次，再列永不到期(expiresAt 為 NULL)的批次，NULL 不參與大小比較
+    @Query("select l from PointLot l where l.userId = :userId and l.expiresAt is not null order by l.expiresAt asc, l.id asc")
+    List<PointLot> findFirstPage(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("select l from PointLot l where l.userId = :userId " +
+            "and (l.expiresAt > :expiresAt or (l.expiresAt = :expiresAt and l.id > :id)) " +
+            "order by l.expiresAt asc, l.id asc")
+    List<PointLot> findPageAfter(@Param("userId") Long userId, @Param("expiresAt") LocalDateTime expiresAt,
+                                 @Param("id") Long id, Pageable pageable);
+
+    @Query("select l from PointLot l where l.userId = :userId and l.expiresAt is null and l.id > :id order by l.id asc")
+    List<PointLot> findNoExpiryPageAfter(@Param("userId") Long userId, @Param("id") Long id, Pageable pageable);
+
+    // 扣點用：只取尚有餘額的批次，分頁取到足額為止
+    // flushMode=COMMIT：分頁期間不 flush 已修改的批次，讓 offset 分頁以資料庫狀態為準保持穩定
+    @Query("select l from PointLot l where l.userId = :userId and (l.remainingPoints > 0 or l.remainingPoints is null) " +
+            "order by l.expiresAt asc, l.id asc")
+    @QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT"))
+    List<PointLot> findConsumableByUserId(@Param("userId") Long userId, Pageable pageable);
+}
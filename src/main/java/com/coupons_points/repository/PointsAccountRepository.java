@@ -1,8 +1,24 @@
 package com.coupons_points.repository;
 
 import com.coupons_points.entity.PointsAccount;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
 
 public interface PointsAccountRepository extends JpaRepository<PointsAccount, Long> {
-}
 
+    // SELECT ... FOR UPDATE：同一使用者的加扣點依序執行，避免併發重複扣點
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from PointsAccount a where a.userId = :userId")
+    Optional<PointsAccount> findByIdForUpdate(@Param("userId") Long userId);
+
+    // 帳戶不存在時建立；併發建立時不會因主鍵重複而失敗
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO points_accounts (user_id, balance, updated_at) VALUES (:userId, 0, NOW())", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId);
+}
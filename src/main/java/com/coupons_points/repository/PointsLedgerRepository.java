@@ -4,8 +4,23 @@ import com.coupons_points.entity.PointsLedger;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface PointsLedgerRepository extends JpaRepository<PointsLedger, Long> {
     Page<PointsLedger> findAllByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
+
+    // keyset 分頁(ix_ledger_user_created)：取 (createdAt, id) 游標之前的資料，不做 COUNT
+    @Query("select l from PointsLedger l where l.userId = :userId order by l.createdAt desc, l.id desc")
+    List<PointsLedger> findFirstPage(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("select l from PointsLedger l where l.userId = :userId " +
+            "and (l.createdAt < :createdAt or (l.createdAt = :createdAt and l.id < :id)) " +
+            "order by l.createdAt desc, l.id desc")
+    List<PointsLedger> findPageBefore(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id, Pageable pageable);
 }
 
@@ -0,0 +1,125 @@
+package com.coupons_points.service;
+
+import com.coupons_points.entity.Coupon;
+import com.coupons_points.repository.CouponRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 優惠券代碼的記憶體目錄(generic_code 不分大小寫 -> Coupon 快照)：
+ * - 啟動時全量載入，之後於 create/update/changeStatus/delete 交易提交後增量更新
+ * - 另以排程定期全量重載，修正多節點部署時其他節點的異動
+ * - 寫入(reload/put/remove)互斥，讀取(findByCode)不加鎖
+ * - 存放的是複本，呼叫端修改不會影響目錄內容
+ */
+@Component
+public class CouponCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(CouponCatalog.class);
+
+    private final CouponRepository couponRepository;
+
+    private volatile Map<String, Coupon> byCode = new ConcurrentHashMap<>();
+    private volatile Map<Long, String> codeById = new ConcurrentHashMap<>();
+
+    public CouponCatalog(CouponRepository couponRepository) {
+        this.couponRepository = couponRepository;
+    }
+
+    public static String normalize(String code) {
+        return code == null ? null : code.toLowerCase(Locale.ROOT);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${coupons.catalog.reload-ms:300000}", initialDelayString = "${coupons.catalog.reload-ms:300000}")
+    public synchronized void reload() {
+        List<Coupon> all = couponRepository.findAll();
+        Map<String, Coupon> codes = new ConcurrentHashMap<>();
+        Map<Long, String> ids = new ConcurrentHashMap<>();
+        for (Coupon c : all) {
+            String key = normalize(c.getGenericCode());
+            if (key == null) continue;
+            codes.put(key, copyOf(c));
+            ids.put(c.getId(), key);
+        }
+        this.byCode = codes;
+        this.codeById = ids;
+        logger.debug("Coupon catalog reloaded: {} codes", codes.size());
+    }
+
+    public Optional<Coupon> findByCode(String code) {
+        String key = normalize(code);
+        if (key == null) return Optional.empty();
+        Coupon c = byCode.get(key);
+        return c == null ? Optional.empty() : Optional.of(copyOf(c));
+    }
+
+    // 交易提交後才更新，避免 rollback 的資料被讀到
+    public void putAfterCommit(Coupon coupon) {
+        Coupon snapshot = copyOf(coupon);
+        afterCommit(() -> put(snapshot));
+    }
+
+    public void removeAfterCommit(Long couponId) {
+        afterCommit(() -> remove(couponId));
+    }
+
+    private synchronized void put(Coupon c) {
+        String key = normalize(c.getGenericCode());
+        String oldKey = key == null ? codeById.remove(c.getId()) : codeById.put(c.getId(), key);
+        if (oldKey != null && !oldKey.equals(key)) byCode.remove(oldKey);
+        if (key != null) byCode.put(key, c);
+    }
+
+    private synchronized void remove(Long couponId) {
+        String key = codeById.remove(couponId);
+        if (key != null) byCode.remove(key);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Coupon copyOf(Coupon c) {
+        return Coupon.builder()
+                .id(c.getId())
+                .name(c.getName())
+                .codeType(c.getCodeType())
+                .genericCode(c.getGenericCode())
+                .discountType(c.getDiscountType())
+                .discountValue(c.getDiscountValue())
+                .maxDiscountAmount(c.getMaxDiscountAmount())
+                .minSpendAmount(c.getMinSpendAmount())
+                .startsAt(c.getStartsAt())
+                .endsAt(c.getEndsAt())
+                .status(c.getStatus())
+                .totalUsageLimit(c.getTotalUsageLimit())
+                .perUserLimit(c.getPerUserLimit())
+                .flashSale(c.getFlashSale())
+                .createdBy(c.getCreatedBy())
+                .createdAt(c.getCreatedAt())
+                .updatedAt(c.getUpdatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,227 @@
+package com.coupons_points.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * UNIQUE 優惠券代碼批次產生器：
+ * - 以 SecureRandom 產生代碼(去除 0/O/1/I 等易混淆字元)，每批在記憶體內先去重
+ * - 代碼最後一碼為檢查碼：核銷前先驗證格式，打錯或亂猜的代碼不會查資料庫
+ * - 與現有通用代碼(generic_code)相同的代碼不寫入，避免被通用券遮蔽
+ * - 每批以多列 INSERT IGNORE 寫入並獨立提交，不會一次把百萬筆代碼留在記憶體或同一交易中
+ * - 與既有代碼撞號時由唯一索引略過，依實際寫入筆數補產，直到達到要求數量
+ * - 後台請求以 submit 排入單一背景執行緒執行並立即回傳工作 id，進度以 job 查詢；完成的工作保留一段時間後清除
+ */
+@Service
+public class CouponCodeGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CouponCodeGenerator.class);
+    private static final char[] ALPHABET = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ".toCharArray();
+    // 連續多批幾乎全部撞號代表代碼空間已不足，避免無限迴圈
+    private static final int MAX_EMPTY_BATCHES = 3;
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${coupons.codes.length:12}")
+    private int codeLength;
+
+    @Value("${coupons.codes.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${coupons.codes.job-retention-ms:3600000}")
+    private long jobRetentionMs;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    // 單一執行緒依序執行，同時多個大量產生請求不會一起佔用連線
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "coupon-code-generator");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public CouponCodeGenerator(JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        worker.shutdownNow();
+        worker.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public enum JobStatus { QUEUED, RUNNING, DONE, FAILED }
+
+    // 背景產生工作的進度(僅存於本節點記憶體)
+    @Getter
+    public static class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final Long couponId;
+        private final int requested;
+        private final AtomicInteger generated = new AtomicInteger();
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile String error;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long startedAt;
+        private volatile long finishedAt;
+
+        Job(Long couponId, int requested) {
+            this.couponId = couponId;
+            this.requested = requested;
+        }
+
+        public int getGenerated() {
+            return generated.get();
+        }
+
+        public long getElapsedMs() {
+            if (startedAt == 0) return 0;
+            return (finishedAt == 0 ? System.currentTimeMillis() : finishedAt) - startedAt;
+        }
+    }
+
+    /**
+     * @description : 排入背景產生，立即回傳工作
+     */
+    public Job submit(Long couponId, String prefix, int count, Predicate<String> reserved) {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(j -> j.finishedAt != 0 && now - j.finishedAt > jobRetentionMs);
+        Job job = new Job(couponId, count);
+        jobs.put(job.getId(), job);
+        worker.execute(() -> run(job, prefix, reserved));
+        return job;
+    }
+
+    public Optional<Job> job(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void run(Job job, String prefix, Predicate<String> reserved) {
+        job.startedAt = System.currentTimeMillis();
+        job.status = JobStatus.RUNNING;
+        try {
+            generate(job.couponId, prefix, job.requested, reserved, job.generated);
+            job.status = JobStatus.DONE;
+        } catch (RuntimeException e) {
+            logger.error("Code generation job {} for coupon {} failed: {}", job.getId(), job.couponId, e.getMessage());
+            job.error = e.getMessage();
+            job.status = JobStatus.FAILED;
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    public static String normalize(String code) {
+        return code == null ? null : code.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * @description : 代碼格式檢查(長度與檢查碼)，不查資料庫
+     * @param normalized : 已正規化(大寫)的代碼
+     */
+    public static boolean isWellFormed(String normalized) {
+        if (normalized == null || normalized.length() < 2 || normalized.length() > 32) return false;
+        int last = normalized.length() - 1;
+        return normalized.charAt(last) == checkChar(normalized, last);
+    }
+
+    // 加權總和取模：單一字元錯誤或相鄰字元對調都會改變檢查碼
+    private static char checkChar(CharSequence code, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += (i + 1) * code.charAt(i);
+        }
+        return ALPHABET[sum % ALPHABET.length];
+    }
+
+    /**
+     * @description : 為指定優惠券產生 count 組不重複代碼
+     * @param couponId : 優惠券 id
+     * @param prefix : 代碼前綴(可為 null)
+     * @param count : 產生數量
+     * @param reserved : 不可使用的代碼(例如與通用代碼相同)
+     * @param progress : 每批提交後累加實際寫入筆數
+     * @return : 實際寫入筆數
+     */
+    private int generate(Long couponId, String prefix, int count, Predicate<String> reserved, AtomicInteger progress) {
+        String p = prefix == null ? "" : normalize(prefix);
+        long started = System.currentTimeMillis();
+        int inserted = 0;
+        int emptyBatches = 0;
+        while (inserted < count) {
+            List<String> codes = nextBatch(p, Math.min(batchSize, count - inserted));
+            codes.removeIf(reserved);
+            Integer n = tx.execute(status -> insertBatch(couponId, codes));
+            int written = n == null ? 0 : n;
+            inserted += written;
+            progress.addAndGet(written);
+            if (written == 0 && ++emptyBatches >= MAX_EMPTY_BATCHES) {
+                throw new IllegalStateException("代碼空間不足，請加長代碼或更換前綴");
+            }
+        }
+        logger.info("Generated {} codes for coupon {} in {} ms", inserted, couponId, System.currentTimeMillis() - started);
+        return inserted;
+    }
+
+    private List<String> nextBatch(String prefix, int size) {
+        Set<String> codes = new HashSet<>(size * 2);
+        StringBuilder buf = new StringBuilder(prefix.length() + codeLength + 1);
+        while (codes.size() < size) {
+            buf.setLength(0);
+            buf.append(prefix);
+            for (int i = 0; i < codeLength; i++) {
+                buf.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            buf.append(checkChar(buf, buf.length()));
+            codes.add(buf.toString());
+        }
+        return new ArrayList<>(codes);
+    }
+
+    // 以多列 VALUES 的單一 INSERT IGNORE 寫入，回傳的影響筆數即為實際寫入(未撞號)的代碼數
+    private int insertBatch(Long couponId, List<String> codes) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int written = 0;
+        for (int from = 0; from < codes.size(); from += ROWS_PER_STATEMENT) {
+            List<String> rows = codes.subList(from, Math.min(from + ROWS_PER_STATEMENT, codes.size()));
+            StringBuilder sql = new StringBuilder("INSERT IGNORE INTO coupon_codes (coupon_id, code, status, created_at) VALUES ");
+            Object[] args = new Object[rows.size() * 3];
+            for (int i = 0; i < rows.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, 'AVAILABLE', ?)" : ",(?, ?, 'AVAILABLE', ?)");
+                args[i * 3] = couponId;
+                args[i * 3 + 1] = rows.get(i);
+                args[i * 3 + 2] = now;
+            }
+            written += jdbc.update(sql.toString(), args);
+        }
+        return written;
+    }
+}
@@ -2,16 +2,24 @@ package com.coupons_points.service;
 
 import com.coupons_points.dto.coupon.CouponDtos;
 import com.coupons_points.entity.Coupon;
+import com.coupons_points.entity.CouponCode;
 import com.coupons_points.entity.CouponRedemption;
+import com.coupons_points.entity.CouponUsage;
+import com.coupons_points.entity.CouponUserUsage;
+import com.coupons_points.repository.CouponCodeRepository;
 import com.coupons_points.repository.CouponRedemptionRepository;
 import com.coupons_points.repository.CouponRepository;
+import com.coupons_points.repository.CouponUsageRepository;
+import com.coupons_points.repository.CouponUserUsageRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -22,6 +30,16 @@ public class CouponService {
 
     private final CouponRepository couponRepository;
     private final CouponRedemptionRepository redemptionRepository;
+    private final CouponCatalog couponCatalog;
+    private final CouponUsageRepository usageRepository;
+    private final CouponUserUsageRepository userUsageRepository;
+    private final FlashSaleRedemptionService flashSaleService;
+    private final CouponCodeRepository codeRepository;
+    private final CouponCodeGenerator codeGenerator;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${coupons.codes.length:12}")
+    private int codeLength;
 
     // Admin
     @Transactional
@@ -33,6 +51,13 @@ public class CouponService {
             couponRepository.findByGenericCodeIgnoreCase(req.getGenericCode()).ifPresent(c -> {
                 throw new IllegalArgumentException("generic_code 已存在");
             });
+            // 與一次性代碼相同時，通用券會遮蔽該代碼
+            String normalized = CouponCodeGenerator.normalize(req.getGenericCode());
+            if (CouponCodeGenerator.isWellFormed(normalized) && codeRepository.findByCode(normalized).isPresent()) {
+                throw new IllegalArgumentException("generic_code 與既有一次性代碼重複");
+            }
+        } else if (req.getGenericCode() != null && !req.getGenericCode().isBlank()) {
+            throw new IllegalArgumentException("UNIQUE 類型不可設定 generic_code，請改用產生代碼");
         }
         Coupon entity = Coupon.builder()
                 .name(req.getName())
@@ -47,9 +72,11 @@ public class CouponService {
                 .status(req.getStatus() == null ? Coupon.CouponStatus.DRAFT : req.getStatus())
                 .totalUsageLimit(req.getTotalUsageLimit())
                 .perUserLimit(req.getPerUserLimit())
+                .flashSale(Boolean.TRUE.equals(req.getFlashSale()))
                 .createdBy(req.getCreatedBy())
                 .build();
         entity = couponRepository.save(entity);
+        couponCatalog.putAfterCommit(entity);
         return toResponse(entity);
     }
 
@@ -66,12 +93,64 @@ public class CouponService {
         if (req.getStatus() != null) c.setStatus(req.getStatus());
         c.setTotalUsageLimit(req.getTotalUsageLimit());
         c.setPerUserLimit(req.getPerUserLimit());
-        return toResponse(couponRepository.save(c));
+        if (req.getFlashSale() != null) c.setFlashSale(req.getFlashSale());
+        c = couponRepository.save(c);
+        couponCatalog.putAfterCommit(c);
+        return toResponse(c);
     }
 
     @Transactional
     public void delete(Long id) {
+        codeRepository.deleteAllByCouponId(id);
         couponRepository.deleteById(id);
+        couponCatalog.removeAfterCommit(id);
+        flashSaleService.forget(id);
+    }
+
+    // 背景分批寫入並各自提交(不包在單一交易中)；請求只排入工作，進度以 codeJob 查詢
+    public CouponDtos.GenerateCodesResponse generateCodes(Long id, CouponDtos.GenerateCodesRequest req) {
+        Coupon c = couponRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("coupon 不存在"));
+        if (c.getCodeType() != Coupon.CouponCodeType.UNIQUE) {
+            throw new IllegalArgumentException("僅 UNIQUE 類型可產生代碼");
+        }
+        String prefix = req.getPrefix() == null ? "" : req.getPrefix();
+        if (prefix.length() + codeLength + 1 > 32) {
+            throw new IllegalArgumentException("prefix 過長");
+        }
+        CouponCodeGenerator.Job job = codeGenerator.submit(id, prefix, req.getCount(), code -> couponCatalog.findByCode(code).isPresent());
+        return toJobResponse(job);
+    }
+
+    public CouponDtos.GenerateCodesResponse codeJob(Long id, String jobId) {
+        return codeGenerator.job(jobId)
+                .filter(job -> job.getCouponId().equals(id))
+                .map(this::toJobResponse)
+                .orElseThrow(() -> new EntityNotFoundException("產生工作不存在或已過期"));
+    }
+
+    private CouponDtos.GenerateCodesResponse toJobResponse(CouponCodeGenerator.Job job) {
+        return CouponDtos.GenerateCodesResponse.builder()
+                .jobId(job.getId())
+                .status(job.getStatus().name())
+                .couponId(job.getCouponId())
+                .requested(job.getRequested())
+                .generated(job.getGenerated())
+                .elapsedMs(job.getElapsedMs())
+                .error(job.getError())
+                .build();
+    }
+
+    public Page<CouponDtos.CodeResponse> listCodes(Long id, CouponCode.CodeStatus status, Pageable pageable) {
+        return codeRepository.findAllByCouponIdAndStatus(id, status == null ? CouponCode.CodeStatus.AVAILABLE : status, pageable)
+                .map(cc -> CouponDtos.CodeResponse.builder()
+                        .id(cc.getId())
+                        .couponId(cc.getCouponId())
+                        .code(cc.getCode())
+                        .status(cc.getStatus())
+                        .claimedBy(cc.getClaimedBy())
+                        .claimedAt(cc.getClaimedAt())
+                        .createdAt(cc.getCreatedAt())
+                        .build());
     }
 
     public Page<CouponDtos.CouponResponse> listByStatus(Coupon.CouponStatus status, Pageable pageable) {
@@ -83,16 +162,35 @@ public class CouponService {
     public CouponDtos.CouponResponse changeStatus(Long id, Coupon.CouponStatus status) {
         Coupon c = couponRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("coupon 不存在"));
         c.setStatus(status);
-        return toResponse(couponRepository.save(c));
+        c = couponRepository.save(c);
+        couponCatalog.putAfterCommit(c);
+        return toResponse(c);
     }
 
     // Public
+    // 券本身的條件(存在、狀態、期間、最低消費)由 CouponCatalog 記憶體判斷，只有使用上限需查資料庫
+    // GENERIC 代碼查 CouponCatalog；找不到時再以唯一索引查 UNIQUE 一次性代碼
     public CouponDtos.ValidateResponse validate(String code, Long userId, int orderAmount) {
-        Optional<Coupon> opt = couponRepository.findByGenericCodeIgnoreCase(code);
-        if (opt.isEmpty()) {
+        Optional<Coupon> opt = couponCatalog.findByCode(code);
+        if (opt.isPresent()) {
+            return validate(opt.get(), code, userId, orderAmount);
+        }
+        Optional<CouponCode> uniqueCode = findUniqueCode(code);
+        if (uniqueCode.isEmpty()) {
             return CouponDtos.ValidateResponse.builder().valid(false).reason("找不到券").code(code).build();
         }
-        Coupon c = opt.get();
+        CouponCode cc = uniqueCode.get();
+        Optional<Coupon> coupon = couponRepository.findById(cc.getCouponId());
+        if (coupon.isEmpty()) {
+            return CouponDtos.ValidateResponse.builder().valid(false).reason("找不到券").code(code).build();
+        }
+        if (cc.getStatus() != CouponCode.CodeStatus.AVAILABLE) {
+            return invalid("代碼已被使用", coupon.get(), code);
+        }
+        return validate(coupon.get(), code, userId, orderAmount);
+    }
+
+    private CouponDtos.ValidateResponse validate(Coupon c, String code, Long userId, int orderAmount) {
         LocalDateTime now = LocalDateTime.now();
         if (c.getStatus() != Coupon.CouponStatus.ACTIVE) {
             return invalid("券未啟用", c, code);
@@ -103,14 +201,17 @@ public class CouponService {
         if (c.getMinSpendAmount() != null && orderAmount < c.getMinSpendAmount()) {
             return invalid("未達最低消費", c, code);
         }
+        boolean flashSale = FlashSaleRedemptionService.isFlashSale(c);
         if (c.getTotalUsageLimit() != null) {
-            long used = redemptionRepository.countByCouponIdAndStatus(c.getId(), CouponRedemption.RedemptionStatus.APPLIED);
-            if (used >= c.getTotalUsageLimit()) {
+            boolean soldOut = flashSale
+                    ? flashSaleService.availablePermits(c) <= 0
+                    : totalUsed(c.getId()) >= c.getTotalUsageLimit();
+            if (soldOut) {
                 return invalid("已達總使用上限", c, code);
             }
         }
         if (c.getPerUserLimit() != null) {
-            long usedByUser = redemptionRepository.countByCouponIdAndUserIdAndStatus(c.getId(), userId, CouponRedemption.RedemptionStatus.APPLIED);
+            long usedByUser = flashSale ? flashSaleService.userUsed(c, userId) : userUsed(c.getId(), userId);
             if (usedByUser >= c.getPerUserLimit()) {
                 return invalid("已達個人使用上限", c, code);
             }
@@ -127,14 +228,46 @@ public class CouponService {
                 .build();
     }
 
-    @Transactional
     public CouponDtos.RedemptionResponse redeem(String code, CouponDtos.RedeemRequest req) {
+        // 搶券不開交易：等待批次提交期間不佔用資料庫連線，否則請求執行緒會把寫入執行緒需要的連線用光
+        Coupon generic = couponCatalog.findByCode(code).orElse(null);
+        if (generic != null && FlashSaleRedemptionService.isFlashSale(generic)) {
+            CouponDtos.ValidateResponse vr = validate(code, req.getUserId(), req.getOrderAmount());
+            if (!vr.isValid()) {
+                throw new IllegalArgumentException("不可用: " + vr.getReason());
+            }
+            return flashSaleService.redeem(generic, req, vr.getDiscountAmount());
+        }
+        return transactionTemplate.execute(status -> redeemInTransaction(code, req));
+    }
+
+    private CouponDtos.RedemptionResponse redeemInTransaction(String code, CouponDtos.RedeemRequest req) {
         CouponDtos.ValidateResponse vr = validate(code, req.getUserId(), req.getOrderAmount());
         if (!vr.isValid()) {
             throw new IllegalArgumentException("不可用: " + vr.getReason());
         }
+        Optional<CouponCode> uniqueCode = Optional.empty();
+        Coupon c = couponCatalog.findByCode(code).orElse(null);
+        if (c == null) {
+            uniqueCode = findUniqueCode(code);
+            c = uniqueCode.flatMap(cc -> couponRepository.findById(cc.getCouponId()))
+                    .orElseThrow(() -> new IllegalArgumentException("不可用: 找不到券"));
+        }
+        // validate 只是預檢；此處以條件式 UPDATE 佔用名額，交易失敗時一併回滾，避免超賣
+        if (!tryAcquireTotal(c.getId(), c.getTotalUsageLimit())) {
+            throw new IllegalArgumentException("不可用: 已達總使用上限");
+        }
+        if (!tryAcquireUser(c.getId(), req.getUserId(), c.getPerUserLimit())) {
+            throw new IllegalArgumentException("不可用: 已達個人使用上限");
+        }
+        // 一次性代碼：條件式 UPDATE 領用，同一代碼只會有一個請求成功
+        Long codeId = uniqueCode.map(CouponCode::getId).orElse(null);
+        if (codeId != null && codeRepository.claim(codeId, req.getUserId()) == 0) {
+            throw new IllegalArgumentException("不可用: 代碼已被使用");
+        }
         CouponRedemption red = CouponRedemption.builder()
                 .couponId(vr.getCouponId())
+                .codeId(codeId)
                 .userId(req.getUserId())
                 .orderId(req.getOrderId())
                 .orderItemId(req.getOrderItemId())
@@ -163,6 +296,12 @@ public class CouponService {
     public CouponDtos.RedemptionResponse reverse(Long redemptionId, String note) {
         CouponRedemption red = redemptionRepository.findById(redemptionId)
                 .orElseThrow(() -> new EntityNotFoundException("redemption 不存在"));
+        if (red.getStatus() == CouponRedemption.RedemptionStatus.APPLIED) {
+            usageRepository.decrement(red.getCouponId());
+            userUsageRepository.decrement(red.getCouponId(), red.getUserId());
+            flashSaleService.onReversed(red.getCouponId(), red.getUserId());
+            if (red.getCodeId() != null) codeRepository.release(red.getCodeId());
+        }
         red.setStatus(CouponRedemption.RedemptionStatus.REVERSED);
         red.setNote(note);
         red = redemptionRepository.save(red);
@@ -190,6 +329,41 @@ public class CouponService {
                         .build());
     }
 
+    // Usage counters
+    // 驗證為唯讀路徑：計數列尚未建立時直接以核銷紀錄計數，不在此寫入；計數列只在核銷(tryAcquire*)時建立
+    private long totalUsed(Long couponId) {
+        return usageRepository.findById(couponId)
+                .map(u -> (long) u.getUsedCount())
+                .orElseGet(() -> redemptionRepository.countByCouponIdAndStatus(couponId, CouponRedemption.RedemptionStatus.APPLIED));
+    }
+
+    private long userUsed(Long couponId, Long userId) {
+        return userUsageRepository.findById(new CouponUserUsage.Key(couponId, userId))
+                .map(u -> (long) u.getUsedCount())
+                .orElseGet(() -> redemptionRepository.countByCouponIdAndUserIdAndStatus(couponId, userId, CouponRedemption.RedemptionStatus.APPLIED));
+    }
+
+    private boolean tryAcquireTotal(Long couponId, Integer limit) {
+        if (usageRepository.tryIncrement(couponId, limit) == 1) return true;
+        if (usageRepository.existsById(couponId)) return false;
+        usageRepository.seed(couponId);
+        return usageRepository.tryIncrement(couponId, limit) == 1;
+    }
+
+    private boolean tryAcquireUser(Long couponId, Long userId, Integer limit) {
+        if (userUsageRepository.tryIncrement(couponId, userId, limit) == 1) return true;
+        if (userUsageRepository.existsById(new CouponUserUsage.Key(couponId, userId))) return false;
+        userUsageRepository.seed(couponId, userId);
+        return userUsageRepository.tryIncrement(couponId, userId, limit) == 1;
+    }
+
+    private Optional<CouponCode> findUniqueCode(String code) {
+        String normalized = CouponCodeGenerator.normalize(code);
+        // 檢查碼不符的代碼不可能存在，直接判定無效，不查資料庫
+        if (!CouponCodeGenerator.isWellFormed(normalized)) return Optional.empty();
+        return codeRepository.findByCode(normalized);
+    }
+
     private CouponDtos.ValidateResponse invalid(String reason, Coupon c, String code) {
         return CouponDtos.ValidateResponse.builder().valid(false).reason(reason).couponId(c.getId()).code(code).build();
     }
@@ -227,6 +401,7 @@ public class CouponService {
                 .status(c.getStatus())
                 .totalUsageLimit(c.getTotalUsageLimit())
                 .perUserLimit(c.getPerUserLimit())
+                .flashSale(c.getFlashSale())
                 .createdBy(c.getCreatedBy())
                 .createdAt(c.getCreatedAt())
                 .updatedAt(c.getUpdatedAt())
@@ -0,0 +1,521 @@
+package com.coupons_points.service;
+
+import com.coupons_points.dto.coupon.CouponDtos;
+import com.coupons_points.entity.Coupon;
+import com.coupons_points.entity.CouponUserUsage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 搶券模式(Coupon.flashSale = true 且有 totalUsageLimit)：
+ * - 每張券的剩餘名額載入記憶體(AtomicInteger)，名額不足時直接拒絕，不碰資料庫
+ * - 通過的核銷放入有界佇列，由背景執行緒以 JDBC batch 寫入 coupon_redemptions 並累加使用計數；
+ *   呼叫端等到所屬批次提交後才回應(group commit)，已回應成功的核銷一定已落地，寫入失敗則回傳錯誤
+ * - 記憶體名額只是單一節點的預檢；寫入時鎖定 coupon_usage 計數列並以 total_usage_limit 為上限，多節點也不會超賣
+ *   有個人上限時同樣鎖定 coupon_user_usage 計數列並以 per_user_limit 為上限
+ * - 啟動時以實際核銷紀錄校正搶券券的使用計數(coupon_usage / coupon_user_usage)，修正當機造成的誤差
+ * - 關閉時先把佇列中的核銷寫完
+ */
+@Service
+public class FlashSaleRedemptionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlashSaleRedemptionService.class);
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    @Value("${coupons.flash-sale.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${coupons.flash-sale.batch-size:200}")
+    private int batchSize;
+
+    @Value("${coupons.flash-sale.poll-ms:50}")
+    private long pollMs;
+
+    // couponId -> 名額池
+    private final Map<Long, PermitPool> pools = new ConcurrentHashMap<>();
+    // (couponId, userId) -> 已使用次數(含尚未寫入的)
+    private final Map<CouponUserUsage.Key, AtomicInteger> userCounts = new ConcurrentHashMap<>();
+    // couponId -> 佇列中尚未寫入的核銷數
+    private final Map<Long, AtomicInteger> pendingByCoupon = new ConcurrentHashMap<>();
+    // 已於核銷路徑建立計數列的券與(券, 使用者)；驗證只讀，不建立計數列
+    private final Set<Long> seededCoupons = ConcurrentHashMap.newKeySet();
+    private final Set<CouponUserUsage.Key> seededUsers = ConcurrentHashMap.newKeySet();
+
+    private BlockingQueue<Pending> queue;
+    private Thread writer;
+    private volatile boolean stopping;
+
+    public FlashSaleRedemptionService(JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    private static class PermitPool {
+        private int limit;
+        private final AtomicInteger permits;
+
+        PermitPool(int limit, int permits) {
+            this.limit = limit;
+            this.permits = new AtomicInteger(permits);
+        }
+    }
+
+    // done：批次提交後完成；被略過或寫入失敗時以例外完成
+    private record Pending(Long couponId, int totalLimit, Integer perUserLimit, Long userId, Long orderId, Long orderItemId,
+                           int amountDiscounted, String note, LocalDateTime redeemedAt,
+                           CompletableFuture<Void> done) {
+    }
+
+    private enum Outcome { APPLIED, DUPLICATE, SOLD_OUT, USER_LIMIT }
+
+    public static boolean isFlashSale(Coupon c) {
+        return Boolean.TRUE.equals(c.getFlashSale()) && c.getTotalUsageLimit() != null;
+    }
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writer = new Thread(this::writeLoop, "flash-sale-redemption-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        stopping = true;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        if (!queue.isEmpty()) {
+            logger.error("Flash sale writer stopped with {} redemptions not persisted", queue.size());
+            List<Pending> rest = new ArrayList<>();
+            queue.drainTo(rest);
+            rest.forEach(p -> fail(p, new IllegalStateException("系統忙碌，請稍後再試")));
+        }
+    }
+
+    // 啟動校正：以 coupon_redemptions 實際筆數覆寫搶券券的計數
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        List<Long> ids = jdbc.queryForList("SELECT id FROM coupons WHERE flash_sale = 1", Long.class);
+        for (Long id : ids) {
+            seedUsage(id);
+            jdbc.update("UPDATE coupon_usage SET used_count = " +
+                    "(SELECT COUNT(*) FROM coupon_redemptions r WHERE r.coupon_id = ? AND r.status = 'APPLIED') " +
+                    "WHERE coupon_id = ?", id, id);
+            jdbc.update("UPDATE coupon_user_usage u SET used_count = " +
+                    "(SELECT COUNT(*) FROM coupon_redemptions r WHERE r.coupon_id = u.coupon_id AND r.user_id = u.user_id AND r.status = 'APPLIED') " +
+                    "WHERE u.coupon_id = ?", id);
+        }
+        if (!ids.isEmpty()) logger.info("Flash sale usage counters reconciled for {} coupons", ids.size());
+    }
+
+    /**
+     * @description : 剩餘名額(僅記憶體)
+     */
+    public int availablePermits(Coupon c) {
+        return poolFor(c).permits.get();
+    }
+
+    /**
+     * @description : 使用者已使用次數(僅記憶體，首次查詢時由資料庫載入)
+     */
+    public int userUsed(Coupon c, Long userId) {
+        return userCounter(c.getId(), userId).get();
+    }
+
+    /**
+     * @description : 搶券核銷：記憶體內扣名額後排入寫入佇列，等所屬批次提交後回應(status=APPLIED，批次寫入不回傳 redemptionId)
+     *               呼叫端不可在交易中呼叫，避免等待期間佔用資料庫連線
+     * @throws IllegalArgumentException : 已達總使用上限或個人上限
+     * @throws IllegalStateException : 寫入佇列已滿、該訂單已使用此券或批次寫入失敗
+     */
+    public CouponDtos.RedemptionResponse redeem(Coupon c, CouponDtos.RedeemRequest req, int discount) {
+        PermitPool pool = poolFor(c);
+        AtomicInteger userCount = userCounter(c.getId(), req.getUserId());
+        Integer perUserLimit = c.getPerUserLimit();
+
+        if (perUserLimit != null && !incrementBelow(userCount, perUserLimit)) {
+            throw new IllegalArgumentException("不可用: 已達個人使用上限");
+        }
+        if (perUserLimit == null) userCount.incrementAndGet();
+        if (!decrementIfPositive(pool.permits)) {
+            userCount.decrementAndGet();
+            throw new IllegalArgumentException("不可用: 已達總使用上限");
+        }
+        // 取得名額後才建立計數列，名額用完後的請求不寫資料庫
+        try {
+            ensureSeeded(c.getId(), req.getUserId());
+        } catch (RuntimeException e) {
+            pool.permits.incrementAndGet();
+            userCount.decrementAndGet();
+            throw e;
+        }
+
+        pendingByCoupon.computeIfAbsent(c.getId(), k -> new AtomicInteger()).incrementAndGet();
+        Pending p = new Pending(c.getId(), c.getTotalUsageLimit(), perUserLimit, req.getUserId(), req.getOrderId(), req.getOrderItemId(),
+                discount, req.getNote(), LocalDateTime.now(), new CompletableFuture<>());
+        if (!queue.offer(p)) {
+            release(p);
+            throw new IllegalStateException("系統忙碌，請稍後再試");
+        }
+        try {
+            p.done().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+        return CouponDtos.RedemptionResponse.builder()
+                .couponId(c.getId())
+                .userId(req.getUserId())
+                .orderId(req.getOrderId())
+                .amountDiscounted(discount)
+                .status("APPLIED")
+                .note(req.getNote())
+                .build();
+    }
+
+    // 核銷被撤銷(reverse)時歸還名額
+    public void onReversed(Long couponId, Long userId) {
+        PermitPool pool = pools.get(couponId);
+        if (pool != null) pool.permits.incrementAndGet();
+        AtomicInteger uc = userCounts.get(new CouponUserUsage.Key(couponId, userId));
+        if (uc != null) uc.updateAndGet(v -> Math.max(0, v - 1));
+    }
+
+    public void forget(Long couponId) {
+        pools.remove(couponId);
+        seededCoupons.remove(couponId);
+        userCounts.keySet().removeIf(k -> k.getCouponId().equals(couponId));
+    }
+
+    private PermitPool poolFor(Coupon c) {
+        PermitPool pool = pools.get(c.getId());
+        if (pool == null) {
+            synchronized (pools) {
+                pool = pools.get(c.getId());
+                if (pool == null) {
+                    int used = readUsed(c.getId(), null);
+                    int pending = pendingByCoupon.getOrDefault(c.getId(), new AtomicInteger()).get();
+                    pool = new PermitPool(c.getTotalUsageLimit(), Math.max(0, c.getTotalUsageLimit() - used - pending));
+                    pools.put(c.getId(), pool);
+                }
+            }
+        }
+        // 後台調整了總上限：以差額增減名額
+        if (pool.limit != c.getTotalUsageLimit()) {
+            synchronized (pool) {
+                int delta = c.getTotalUsageLimit() - pool.limit;
+                if (delta != 0) {
+                    pool.permits.addAndGet(delta);
+                    pool.limit = c.getTotalUsageLimit();
+                }
+            }
+        }
+        return pool;
+    }
+
+    private AtomicInteger userCounter(Long couponId, Long userId) {
+        CouponUserUsage.Key key = new CouponUserUsage.Key(couponId, userId);
+        AtomicInteger counter = userCounts.get(key);
+        if (counter != null) return counter;
+        int used = readUsed(couponId, userId);
+        AtomicInteger existing = userCounts.putIfAbsent(key, new AtomicInteger(used));
+        return existing != null ? existing : userCounts.get(key);
+    }
+
+    // 讀取使用計數(userId 為 null 時為整張券)；計數列不存在時以核銷紀錄計數(唯讀)
+    // 本類別一律走 JdbcTemplate：不經過 open-in-view 的 EntityManager，查完即歸還連線，等待批次提交時不佔用連線
+    private int readUsed(Long couponId, Long userId) {
+        List<Integer> row = userId == null
+                ? jdbc.queryForList("SELECT used_count FROM coupon_usage WHERE coupon_id = ?", Integer.class, couponId)
+                : jdbc.queryForList("SELECT used_count FROM coupon_user_usage WHERE coupon_id = ? AND user_id = ?",
+                        Integer.class, couponId, userId);
+        if (!row.isEmpty()) return row.get(0);
+        Integer n = userId == null
+                ? jdbc.queryForObject("SELECT COUNT(*) FROM coupon_redemptions WHERE coupon_id = ? AND status = 'APPLIED'",
+                        Integer.class, couponId)
+                : jdbc.queryForObject("SELECT COUNT(*) FROM coupon_redemptions WHERE coupon_id = ? AND user_id = ? AND status = 'APPLIED'",
+                        Integer.class, couponId, userId);
+        return n == null ? 0 : n;
+    }
+
+    private void seedUsage(Long couponId) {
+        jdbc.update("INSERT IGNORE INTO coupon_usage (coupon_id, used_count) " +
+                "SELECT ?, COUNT(*) FROM coupon_redemptions WHERE coupon_id = ? AND status = 'APPLIED'", couponId, couponId);
+    }
+
+    // 計數列只在核銷路徑建立(每張券、每位使用者各一次)，批次寫入時的 UPDATE 才有列可累加
+    private void ensureSeeded(Long couponId, Long userId) {
+        if (!seededCoupons.contains(couponId)) {
+            seedUsage(couponId);
+            seededCoupons.add(couponId);
+        }
+        CouponUserUsage.Key key = new CouponUserUsage.Key(couponId, userId);
+        if (!seededUsers.contains(key)) {
+            seedUserUsage(couponId, userId);
+            seededUsers.add(key);
+        }
+    }
+
+    private void seedUserUsage(Long couponId, Long userId) {
+        jdbc.update("INSERT IGNORE INTO coupon_user_usage (coupon_id, user_id, used_count) " +
+                "SELECT ?, ?, COUNT(*) FROM coupon_redemptions WHERE coupon_id = ? AND user_id = ? AND status = 'APPLIED'",
+                couponId, userId, couponId, userId);
+    }
+
+    private static boolean incrementBelow(AtomicInteger counter, int limit) {
+        while (true) {
+            int v = counter.get();
+            if (v >= limit) return false;
+            if (counter.compareAndSet(v, v + 1)) return true;
+        }
+    }
+
+    private static boolean decrementIfPositive(AtomicInteger counter) {
+        while (true) {
+            int v = counter.get();
+            if (v <= 0) return false;
+            if (counter.compareAndSet(v, v - 1)) return true;
+        }
+    }
+
+    private void release(Pending p) {
+        pendingByCoupon.get(p.couponId()).decrementAndGet();
+        onReversed(p.couponId(), p.userId());
+    }
+
+    private void fail(Pending p, RuntimeException e) {
+        release(p);
+        p.done().completeExceptionally(e);
+    }
+
+    // 資料庫計數已滿(其他節點用掉名額)：本節點名額歸零，不歸還
+    private void soldOut(Pending p) {
+        pendingByCoupon.get(p.couponId()).decrementAndGet();
+        PermitPool pool = pools.get(p.couponId());
+        if (pool != null) pool.permits.set(0);
+        AtomicInteger uc = userCounts.get(new CouponUserUsage.Key(p.couponId(), p.userId()));
+        if (uc != null) uc.updateAndGet(v -> Math.max(0, v - 1));
+        p.done().completeExceptionally(new IllegalArgumentException("不可用: 已達總使用上限"));
+    }
+
+    // 資料庫個人計數已滿(其他節點核銷過)：歸還總名額，本節點的個人計數至少視為已達上限
+    private void userLimitReached(Pending p) {
+        pendingByCoupon.get(p.couponId()).decrementAndGet();
+        PermitPool pool = pools.get(p.couponId());
+        if (pool != null) pool.permits.incrementAndGet();
+        AtomicInteger uc = userCounts.get(new CouponUserUsage.Key(p.couponId(), p.userId()));
+        if (uc != null) uc.updateAndGet(v -> Math.max(v - 1, p.perUserLimit()));
+        p.done().completeExceptionally(new IllegalArgumentException("不可用: 已達個人使用上限"));
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (!stopping || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(pollMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flushWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopping = true;
+            } catch (RuntimeException e) {
+                logger.error("Flash sale writer error: {}", e.getMessage());
+            } finally {
+                // 任何未完成的核銷都要回應呼叫端，不可讓請求執行緒無限等待
+                batch.stream().filter(p -> !p.done().isDone())
+                        .forEach(p -> fail(p, new IllegalStateException("系統忙碌，請稍後再試")));
+                batch.clear();
+            }
+        }
+    }
+
+    private void flushWithRetry(List<Pending> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Outcome[] outcomes = tx.execute(status -> flush(batch));
+                // 交易提交後才更新記憶體並回應：寫入成功的移出 pending，重複的歸還名額，超出總上限的拒絕
+                for (int i = 0; i < batch.size(); i++) {
+                    Pending p = batch.get(i);
+                    switch (outcomes[i]) {
+                        case APPLIED -> {
+                            pendingByCoupon.get(p.couponId()).decrementAndGet();
+                            p.done().complete(null);
+                        }
+                        case DUPLICATE -> fail(p, new IllegalStateException("該訂單已使用此券"));
+                        case SOLD_OUT -> soldOut(p);
+                        case USER_LIMIT -> userLimitReached(p);
+                    }
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_FLUSH_ATTEMPTS) {
+                    // 呼叫端尚未收到成功回應，改回傳錯誤
+                    logger.error("Flash sale batch of {} redemptions failed after {} attempts: {}", batch.size(), attempt, e.getMessage());
+                    batch.forEach(p -> fail(p, new IllegalStateException("系統忙碌，核銷未完成，請稍後再試")));
+                    return;
+                }
+                logger.warn("Flash sale batch flush failed (attempt {}): {}", attempt, e.getMessage());
+            }
+        }
+    }
+
+    private Outcome[] flush(List<Pending> batch) {
+        Outcome[] outcomes = new Outcome[batch.size()];
+        // 依券號排序鎖定計數列(固定順序避免死結)；鎖住期間其他節點無法寫入同一張券，剩餘名額以資料庫為準
+        Map<Long, Integer> usedByCoupon = new HashMap<>();
+        batch.stream().map(Pending::couponId).distinct().sorted(Comparator.naturalOrder()).forEach(couponId -> {
+            List<Integer> used = lockUsage(couponId);
+            if (used.isEmpty()) {
+                seedUsage(couponId);
+                used = lockUsage(couponId);
+            }
+            usedByCoupon.put(couponId, used.isEmpty() ? 0 : used.get(0));
+        });
+        // 有個人上限的(券, 使用者)計數列接著依 (券, 使用者) 排序鎖定；順序固定在券列之後
+        Map<CouponUserUsage.Key, Integer> usedByUser = new HashMap<>();
+        batch.stream().filter(p -> p.perUserLimit() != null)
+                .map(p -> new CouponUserUsage.Key(p.couponId(), p.userId()))
+                .distinct()
+                .sorted(Comparator.comparing(CouponUserUsage.Key::getCouponId).thenComparing(CouponUserUsage.Key::getUserId))
+                .forEach(key -> {
+                    List<Integer> used = lockUserUsage(key);
+                    if (used.isEmpty()) {
+                        seedUserUsage(key.getCouponId(), key.getUserId());
+                        used = lockUserUsage(key);
+                    }
+                    usedByUser.put(key, used.isEmpty() ? 0 : used.get(0));
+                });
+
+        List<Pending> accepted = new ArrayList<>(batch.size());
+        List<Integer> acceptedIndex = new ArrayList<>(batch.size());
+        Map<Long, Integer> taken = new HashMap<>();
+        // 同批中被判為重複訂單的筆數也先計入，寧可保守拒絕
+        Map<CouponUserUsage.Key, Integer> takenByUser = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending p = batch.get(i);
+            CouponUserUsage.Key key = new CouponUserUsage.Key(p.couponId(), p.userId());
+            if (p.perUserLimit() != null && usedByUser.get(key) + takenByUser.getOrDefault(key, 0) + 1 > p.perUserLimit()) {
+                outcomes[i] = Outcome.USER_LIMIT;
+                continue;
+            }
+            int n = taken.getOrDefault(p.couponId(), 0) + 1;
+            if (usedByCoupon.get(p.couponId()) + n > p.totalLimit()) {
+                outcomes[i] = Outcome.SOLD_OUT;
+                continue;
+            }
+            taken.put(p.couponId(), n);
+            takenByUser.merge(key, 1, Integer::sum);
+            accepted.add(p);
+            acceptedIndex.add(i);
+        }
+        if (accepted.isEmpty()) return outcomes;
+
+        // INSERT IGNORE：同一訂單重複使用同一張券(uq_redemption_order_coupon)時該筆略過並歸還名額
+        int[] counts = jdbc.batchUpdate(
+                "INSERT IGNORE INTO coupon_redemptions (coupon_id, code_id, user_id, order_id, order_item_id, redeemed_at, amount_discounted, status, note) " +
+                        "VALUES (?, NULL, ?, ?, ?, ?, ?, 'APPLIED', ?)",
+                accepted, accepted.size(), (ps, p) -> {
+                    ps.setLong(1, p.couponId());
+                    ps.setLong(2, p.userId());
+                    ps.setLong(3, p.orderId());
+                    if (p.orderItemId() != null) ps.setLong(4, p.orderItemId()); else ps.setNull(4, Types.BIGINT);
+                    ps.setTimestamp(5, Timestamp.valueOf(p.redeemedAt()));
+                    ps.setInt(6, p.amountDiscounted());
+                    ps.setString(7, p.note());
+                })[0];
+
+        Map<Long, Integer> byCoupon = new HashMap<>();
+        Map<Long, Integer> limits = new HashMap<>();
+        Map<CouponUserUsage.Key, Integer> byUser = new HashMap<>();
+        Map<CouponUserUsage.Key, Integer> userLimits = new HashMap<>();
+        for (int i = 0; i < accepted.size(); i++) {
+            int index = acceptedIndex.get(i);
+            if (counts[i] == 0) {
+                outcomes[index] = Outcome.DUPLICATE;
+                continue;
+            }
+            outcomes[index] = Outcome.APPLIED;
+            Pending p = accepted.get(i);
+            byCoupon.merge(p.couponId(), 1, Integer::sum);
+            limits.put(p.couponId(), p.totalLimit());
+            CouponUserUsage.Key key = new CouponUserUsage.Key(p.couponId(), p.userId());
+            byUser.merge(key, 1, Integer::sum);
+            if (p.perUserLimit() != null) userLimits.put(key, p.perUserLimit());
+        }
+
+        // 條件式累加：超出 total_usage_limit 時整批回滾(計數列已鎖定，正常情況不會發生)
+        for (Map.Entry<Long, Integer> e : byCoupon.entrySet()) {
+            int updated = jdbc.update("UPDATE coupon_usage SET used_count = used_count + ? " +
+                            "WHERE coupon_id = ? AND used_count + ? <= ?",
+                    e.getValue(), e.getKey(), e.getValue(), limits.get(e.getKey()));
+            if (updated != 1) {
+                throw new IllegalStateException("coupon " + e.getKey() + " usage exceeds total limit");
+            }
+        }
+        // 有個人上限的計數列：同樣以條件式累加守住上限
+        List<Map.Entry<CouponUserUsage.Key, Integer>> userRows = new ArrayList<>();
+        for (Map.Entry<CouponUserUsage.Key, Integer> e : byUser.entrySet()) {
+            Integer limit = userLimits.get(e.getKey());
+            if (limit == null) {
+                userRows.add(e);
+                continue;
+            }
+            int updated = jdbc.update("UPDATE coupon_user_usage SET used_count = used_count + ? " +
+                            "WHERE coupon_id = ? AND user_id = ? AND used_count + ? <= ?",
+                    e.getValue(), e.getKey().getCouponId(), e.getKey().getUserId(), e.getValue(), limit);
+            if (updated != 1) {
+                throw new IllegalStateException("coupon " + e.getKey().getCouponId() + " user " + e.getKey().getUserId()
+                        + " usage exceeds per-user limit");
+            }
+        }
+        if (userRows.isEmpty()) return outcomes;
+        jdbc.batchUpdate("INSERT INTO coupon_user_usage (coupon_id, user_id, used_count) VALUES (?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE used_count = used_count + VALUES(used_count)",
+                userRows, userRows.size(), (ps, e) -> {
+                    ps.setLong(1, e.getKey().getCouponId());
+                    ps.setLong(2, e.getKey().getUserId());
+                    ps.setInt(3, e.getValue());
+                });
+        return outcomes;
+    }
+
+    private List<Integer> lockUsage(Long couponId) {
+        return jdbc.queryForList("SELECT used_count FROM coupon_usage WHERE coupon_id = ? FOR UPDATE", Integer.class, couponId);
+    }
+
+    private List<Integer> lockUserUsage(CouponUserUsage.Key key) {
+        return jdbc.queryForList("SELECT used_count FROM coupon_user_usage WHERE coupon_id = ? AND user_id = ? FOR UPDATE",
+                Integer.class, key.getCouponId(), key.getUserId());
+    }
+}
@@ -0,0 +1,219 @@
+package com.coupons_points.service;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 點數批次到期引擎：
+ * - 只掃描 remaining_points > 0 的到期批次(ix_lots_exp_remaining)，以 (expires_at, id) 游標分段讀取
+ * - 每段(chunk)在獨立交易中完成：批次標記用完、依使用者彙總扣點、批次寫入 EXPIRE 明細
+ * - 已處理的批次 remaining_points 會歸零，因此中斷後重新執行即可從未處理的部分續跑
+ */
+@Service
+public class PointsExpiryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PointsExpiryService.class);
+
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate namedJdbc;
+    private final TransactionTemplate tx;
+
+    @Value("${points.expiry.chunk-size:1000}")
+    private int chunkSize;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicReference<Progress> lastProgress = new AtomicReference<>(Progress.builder().build());
+
+    public PointsExpiryService(JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.namedJdbc = new NamedParameterJdbcTemplate(jdbc);
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Getter
+    @Builder(toBuilder = true)
+    public static class Progress {
+        private final boolean running;
+        private final LocalDateTime cutoff;
+        private final LocalDateTime startedAt;
+        private final LocalDateTime finishedAt;
+        private final int chunks;
+        private final long lotsExpired;
+        private final long pointsExpired;
+        private final int usersAffected;
+        private final String error;
+    }
+
+    private record LotRow(long id, long userId, int usedPoints, int remaining, LocalDateTime expiresAt) {
+    }
+
+    private record ChunkResult(int lotsRead, int lotsExpired, long pointsExpired, int users, LotRow last) {
+    }
+
+    public Progress progress() {
+        return lastProgress.get();
+    }
+
+    /**
+     * @description : 將 cutoff 之前到期且尚有餘額的批次全部失效
+     * @param cutoff : 到期判斷時間點
+     * @return : 本次執行結果
+     */
+    public Progress expireUntil(LocalDateTime cutoff) {
+        if (!running.compareAndSet(false, true)) {
+            logger.warn("Points expiry is already running, skip.");
+            return lastProgress.get();
+        }
+        Progress progress = Progress.builder().running(true).cutoff(cutoff).startedAt(LocalDateTime.now()).build();
+        lastProgress.set(progress);
+        try {
+            backfillRemainingPoints();
+
+            LotRow cursor = null;
+            while (true) {
+                LotRow after = cursor;
+                ChunkResult r = tx.execute(status -> expireChunk(cutoff, after));
+                if (r == null || r.lotsRead() == 0) break;
+                cursor = r.last();
+                progress = progress.toBuilder()
+                        .chunks(progress.getChunks() + 1)
+                        .lotsExpired(progress.getLotsExpired() + r.lotsExpired())
+                        .pointsExpired(progress.getPointsExpired() + r.pointsExpired())
+                        .usersAffected(progress.getUsersAffected() + r.users())
+                        .build();
+                lastProgress.set(progress);
+                logger.info("Points expiry chunk #{}: lots={}, points={}, users={} (total lots={}, points={})",
+                        progress.getChunks(), r.lotsExpired(), r.pointsExpired(), r.users(),
+                        progress.getLotsExpired(), progress.getPointsExpired());
+                if (r.lotsRead() < chunkSize) break;
+            }
+            progress = progress.toBuilder().running(false).finishedAt(LocalDateTime.now()).build();
+        } catch (RuntimeException e) {
+            logger.error("Points expiry aborted after {} chunks: {}", progress.getChunks(), e.getMessage());
+            progress = progress.toBuilder().running(false).finishedAt(LocalDateTime.now()).error(e.getMessage()).build();
+            throw e;
+        } finally {
+            lastProgress.set(progress);
+            running.set(false);
+        }
+        return progress;
+    }
+
+    // 舊資料沒有 remaining_points，分段回填(只需執行一次，之後由 PointLot 的 @PrePersist/@PreUpdate 維護)
+    private void backfillRemainingPoints() {
+        int updated;
+        do {
+            updated = jdbc.update("UPDATE point_lots SET remaining_points = earned_points - used_points " +
+                    "WHERE remaining_points IS NULL LIMIT " + chunkSize);
+        } while (updated >= chunkSize);
+    }
+
+    private ChunkResult expireChunk(LocalDateTime cutoff, LotRow after) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("cutoff", Timestamp.valueOf(cutoff))
+                .addValue("limit", chunkSize);
+        String cursorClause = "";
+        if (after != null) {
+            cursorClause = "AND (expires_at > :afterExp OR (expires_at = :afterExp AND id > :afterId)) ";
+            params.addValue("afterExp", Timestamp.valueOf(after.expiresAt())).addValue("afterId", after.id());
+        }
+        List<LotRow> lots = namedJdbc.query(
+                "SELECT id, user_id, used_points, remaining_points, expires_at FROM point_lots " +
+                        "WHERE expires_at <= :cutoff AND remaining_points > 0 " + cursorClause +
+                        "ORDER BY expires_at, id LIMIT :limit",
+                params,
+                (rs, i) -> new LotRow(rs.getLong("id"), rs.getLong("user_id"), rs.getInt("used_points"),
+                        rs.getInt("remaining_points"), rs.getTimestamp("expires_at").toLocalDateTime()));
+        if (lots.isEmpty()) return new ChunkResult(0, 0, 0, 0, after);
+
+        // 0) 依 user_id 排序鎖定相關帳戶，與 PointsService 的扣點互斥(扣點也會先鎖帳戶)
+        namedJdbc.query("SELECT user_id FROM points_accounts WHERE user_id IN (:ids) ORDER BY user_id FOR UPDATE",
+                new MapSqlParameterSource("ids", lots.stream().map(LotRow::userId).distinct().toList()),
+                rs -> {
+                });
+
+        // 1) 標記批次用完；以 used_points 作條件，略過讀取後才被扣點的批次(留待下次執行)
+        int[] counts = jdbc.batchUpdate(
+                "UPDATE point_lots SET used_points = earned_points, remaining_points = 0 WHERE id = ? AND used_points = ?",
+                lots, lots.size(), (ps, lot) -> {
+                    ps.setLong(1, lot.id());
+                    ps.setInt(2, lot.usedPoints());
+                })[0];
+
+        // 2) 依使用者彙總(TreeMap：依 user_id 排序更新帳戶)
+        Map<Long, Integer> expiredByUser = new TreeMap<>();
+        Map<Long, List<Long>> lotIdsByUser = new HashMap<>();
+        int lotsExpired = 0;
+        long pointsExpired = 0;
+        for (int i = 0; i < lots.size(); i++) {
+            if (counts[i] == 0) continue;
+            LotRow lot = lots.get(i);
+            expiredByUser.merge(lot.userId(), lot.remaining(), Integer::sum);
+            lotIdsByUser.computeIfAbsent(lot.userId(), k -> new ArrayList<>()).add(lot.id());
+            lotsExpired++;
+            pointsExpired += lot.remaining();
+        }
+        LotRow last = lots.get(lots.size() - 1);
+        if (expiredByUser.isEmpty()) return new ChunkResult(lots.size(), 0, 0, 0, last);
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(expiredByUser.entrySet());
+
+        // 3) 帳戶批次扣點
+        jdbc.batchUpdate(
+                "UPDATE points_accounts SET balance = GREATEST(balance - ?, 0), updated_at = ? WHERE user_id = ?",
+                entries, entries.size(), (ps, e) -> {
+                    ps.setInt(1, e.getValue());
+                    ps.setTimestamp(2, now);
+                    ps.setLong(3, e.getKey());
+                });
+
+        Map<Long, Integer> balances = new HashMap<>();
+        namedJdbc.query("SELECT user_id, balance FROM points_accounts WHERE user_id IN (:ids)",
+                new MapSqlParameterSource("ids", expiredByUser.keySet()),
+                rs -> {
+                    balances.put(rs.getLong("user_id"), rs.getInt("balance"));
+                });
+
+        // 4) 每位使用者一筆 EXPIRE 明細
+        jdbc.batchUpdate(
+                "INSERT INTO points_ledger (user_id, change_amount, reason, related_order_id, note, balance_after, created_at) " +
+                        "VALUES (?, ?, 'EXPIRE', NULL, ?, ?, ?)",
+                entries, entries.size(), (ps, e) -> {
+                    ps.setLong(1, e.getKey());
+                    ps.setInt(2, -e.getValue());
+                    ps.setString(3, expireNote(lotIdsByUser.get(e.getKey())));
+                    ps.setInt(4, balances.getOrDefault(e.getKey(), 0));
+                    ps.setTimestamp(5, now);
+                });
+
+        return new ChunkResult(lots.size(), lotsExpired, pointsExpired, entries.size(), last);
+    }
+
+    private String expireNote(List<Long> lotIds) {
+        StringBuilder sb = new StringBuilder("expire lot");
+        for (int i = 0; i < lotIds.size(); i++) {
+            sb.append(i == 0 ? " #" : ",#").append(lotIds.get(i));
+        }
+        return sb.length() > 255 ? sb.substring(0, 252) + "..." : sb.toString();
+    }
+}
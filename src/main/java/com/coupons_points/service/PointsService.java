@@ -9,9 +9,11 @@ import com.coupons_points.repository.PointLotRepository;
 import com.coupons_points.repository.PointRuleRepository;
 import com.coupons_points.repository.PointsAccountRepository;
 import com.coupons_points.repository.PointsLedgerRepository;
+import com.pagerealm.utils.KeysetCursor;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -21,16 +23,21 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class PointsService {
 
+    private static final int CONSUME_PAGE_SIZE = 20;
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     private final PointsAccountRepository accountRepo;
     private final PointsLedgerRepository ledgerRepo;
     private final PointLotRepository lotRepo;
     private final PointRuleRepository ruleRepo;
+    private final PointsExpiryService expiryService;
 
     // Query
     @Transactional(readOnly = true)
@@ -41,7 +48,80 @@ public class PointsService {
 
     @Transactional(readOnly = true)
     public Page<PointsDtos.LedgerItem> getLedger(Long userId, Pageable pageable) {
-        return ledgerRepo.findAllByUserIdOrderByCreatedAtDesc(userId, pageable).map(l -> PointsDtos.LedgerItem.builder()
+        return ledgerRepo.findAllByUserIdOrderByCreatedAtDesc(userId, pageable).map(this::toLedgerItem);
+    }
+
+    @Transactional(readOnly = true)
+    public Page<PointsDtos.LotItem> getLots(Long userId, Pageable pageable) {
+        return lotRepo.findAllByUserIdOrderByExpiresAtAscIdAsc(userId, pageable).map(this::toLotItem);
+    }
+
+    /**
+     * @description : 明細 keyset 分頁(新到舊)，深頁不會變慢，也不做 COUNT
+     * @param before : 上一頁回傳的 nextCursor，第一頁傳 null
+     * @param size : 每頁筆數(1~100)
+     */
+    @Transactional(readOnly = true)
+    public PointsDtos.CursorPage<PointsDtos.LedgerItem> getLedgerBefore(Long userId, String before, int size) {
+        int limit = clampPageSize(size);
+        Pageable window = PageRequest.of(0, limit + 1);
+        List<PointsLedger> rows;
+        if (before == null || before.isBlank()) {
+            rows = ledgerRepo.findFirstPage(userId, window);
+        } else {
+            KeysetCursor c = KeysetCursor.parse(before);
+            rows = ledgerRepo.findPageBefore(userId, c.requireAt(), c.id(), window);
+        }
+        boolean hasNext = rows.size() > limit;
+        List<PointsLedger> page = hasNext ? rows.subList(0, limit) : rows;
+        PointsLedger last = page.isEmpty() ? null : page.get(page.size() - 1);
+        return PointsDtos.CursorPage.<PointsDtos.LedgerItem>builder()
+                .items(page.stream().map(this::toLedgerItem).toList())
+                .size(page.size())
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? KeysetCursor.format(last.getCreatedAt(), last.getId()) : null)
+                .build();
+    }
+
+    /**
+     * @description : 點數批次 keyset 分頁(依到期日由近到遠，永不到期的批次排在最後)
+     * @param after : 上一頁回傳的 nextCursor，第一頁傳 null
+     * @param size : 每頁筆數(1~100)
+     */
+    @Transactional(readOnly = true)
+    public PointsDtos.CursorPage<PointsDtos.LotItem> getLotsAfter(Long userId, String after, int size) {
+        int limit = clampPageSize(size);
+        Pageable window = PageRequest.of(0, limit + 1);
+        List<PointLot> rows;
+        KeysetCursor c = KeysetCursor.parse(after);
+        if (c != null && c.at() == null) {
+            // 已進入永不到期段
+            rows = lotRepo.findNoExpiryPageAfter(userId, c.id(), window);
+        } else {
+            rows = c == null ? lotRepo.findFirstPage(userId, window) : lotRepo.findPageAfter(userId, c.at(), c.id(), window);
+            if (rows.size() <= limit) {
+                // 有到期日的批次已列完，同一頁接著補永不到期的批次
+                rows = new ArrayList<>(rows);
+                rows.addAll(lotRepo.findNoExpiryPageAfter(userId, 0L, PageRequest.of(0, limit + 1 - rows.size())));
+            }
+        }
+        boolean hasNext = rows.size() > limit;
+        List<PointLot> page = hasNext ? rows.subList(0, limit) : rows;
+        PointLot last = page.isEmpty() ? null : page.get(page.size() - 1);
+        return PointsDtos.CursorPage.<PointsDtos.LotItem>builder()
+                .items(page.stream().map(this::toLotItem).toList())
+                .size(page.size())
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? KeysetCursor.format(last.getExpiresAt(), last.getId()) : null)
+                .build();
+    }
+
+    private int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+    }
+
+    private PointsDtos.LedgerItem toLedgerItem(PointsLedger l) {
+        return PointsDtos.LedgerItem.builder()
                 .id(l.getId())
                 .changeAmount(l.getChangeAmount())
                 .reason(l.getReason())
@@ -49,12 +129,11 @@ public class PointsService {
                 .note(l.getNote())
                 .balanceAfter(l.getBalanceAfter())
                 .createdAt(l.getCreatedAt())
-                .build());
+                .build();
     }
 
-    @Transactional(readOnly = true)
-    public Page<PointsDtos.LotItem> getLots(Long userId, Pageable pageable) {
-        return lotRepo.findAllByUserIdOrderByExpiresAtAscIdAsc(userId, pageable).map(l -> PointsDtos.LotItem.builder()
+    private PointsDtos.LotItem toLotItem(PointLot l) {
+        return PointsDtos.LotItem.builder()
                 .id(l.getId())
                 .earnedPoints(l.getEarnedPoints())
                 .usedPoints(l.getUsedPoints())
@@ -63,7 +142,7 @@ public class PointsService {
                 .relatedOrderId(l.getRelatedOrderId())
                 .expiresAt(l.getExpiresAt())
                 .createdAt(l.getCreatedAt())
-                .build());
+                .build();
     }
 
     // Admin Adjust
@@ -129,38 +208,24 @@ public class PointsService {
     }
 
     // Scheduler: expire lots every night 02:00
-    @Transactional
+    // 不包在單一交易中：由 PointsExpiryService 分段(chunk)各自提交
     @Scheduled(cron = "0 0 2 * * *")
     public void expireLotsCron() {
-        LocalDateTime now = LocalDateTime.now();
-        List<PointLot> expLots = lotRepo.findByExpiresAtLessThanEqual(now);
-        for (PointLot lot : expLots) {
-            int remaining = lot.remaining();
-            if (remaining <= 0) continue;
-            lot.setUsedPoints(lot.getEarnedPoints());
-            lotRepo.save(lot);
-            PointsAccount acc = getOrCreateAccount(lot.getUserId());
-            acc.setBalance(Math.max(0, acc.getBalance() - remaining));
-            accountRepo.save(acc);
-            ledgerRepo.save(PointsLedger.builder()
-                    .userId(lot.getUserId())
-                    .changeAmount(-remaining)
-                    .reason(PointsLedger.Reason.EXPIRE)
-                    .relatedOrderId(null)
-                    .note("expire lot #" + lot.getId())
-                    .balanceAfter(acc.getBalance())
-                    .createdAt(LocalDateTime.now())
-                    .build());
-        }
+        expiryService.expireUntil(LocalDateTime.now());
+    }
+
+    public PointsExpiryService.Progress expiryProgress() {
+        return expiryService.progress();
     }
 
     // Internal helpers
+    // 取得並鎖定(FOR UPDATE)使用者帳戶，直到交易結束；所有加扣點都經過此處，確保同一使用者的異動依序執行
     private PointsAccount getOrCreateAccount(Long userId) {
-        return accountRepo.findById(userId).orElseGet(() -> accountRepo.save(PointsAccount.builder()
-                .userId(userId)
-                .balance(0)
-                .updatedAt(LocalDateTime.now())
-                .build()));
+        return accountRepo.findByIdForUpdate(userId).orElseGet(() -> {
+            accountRepo.insertIfAbsent(userId);
+            return accountRepo.findByIdForUpdate(userId)
+                    .orElseThrow(() -> new IllegalStateException("建立點數帳戶失敗"));
+        });
     }
 
     private void addPoints(Long userId, int points, PointsLedger.Reason reason, Long orderId, String note, PointLot.Source source) {
@@ -198,17 +263,21 @@ public class PointsService {
         PointsAccount acc = getOrCreateAccount(userId);
         if (acc.getBalance() < points) throw new IllegalArgumentException("點數不足");
 
-        // FIFO consume lots
+        // FIFO consume lots：帳戶已鎖定，逐頁取出尚有餘額的批次，足額即停止
         int remainingToConsume = points;
-        List<PointLot> lots = lotRepo.findByUserIdOrderByExpiresAtAscIdAsc(userId);
-        for (PointLot lot : lots) {
-            if (remainingToConsume <= 0) break;
-            int lotRem = lot.remaining();
-            if (lotRem <= 0) continue;
-            int use = Math.min(lotRem, remainingToConsume);
-            lot.setUsedPoints(lot.getUsedPoints() + use);
-            lotRepo.save(lot);
-            remainingToConsume -= use;
+        for (int page = 0; remainingToConsume > 0; page++) {
+            List<PointLot> lots = lotRepo.findConsumableByUserId(userId, PageRequest.of(page, CONSUME_PAGE_SIZE));
+            for (PointLot lot : lots) {
+                if (remainingToConsume <= 0) break;
+                int lotRem = lot.remaining();
+                if (lotRem <= 0) continue;
+                int use = Math.min(lotRem, remainingToConsume);
+                lot.setUsedPoints(lot.getUsedPoints() + use);
+                lot.setRemainingPoints(lot.remaining());
+                lotRepo.save(lot);
+                remainingToConsume -= use;
+            }
+            if (lots.size() < CONSUME_PAGE_SIZE) break;
         }
         if (remainingToConsume != 0) throw new IllegalStateException("扣點失敗: 批次不足");
 
@@ -1,7 +1,10 @@
 package com.pagerealm.controller;
 
+import com.admin_log.audit.Audited;
 import com.pagerealm.dto.UserDTO;
+import com.pagerealm.dto.request.AdminUserSearchRequest;
 import com.pagerealm.dto.request.SignupRequest;
+import com.pagerealm.dto.response.AdminUserPageResponse;
 import com.pagerealm.dto.response.MessageResponse;
 import com.pagerealm.entity.AppRole;
 import com.pagerealm.entity.MembershipTier;
@@ -13,12 +16,18 @@ import com.pagerealm.service.UserService;
 import jakarta.validation.Valid;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Set;
@@ -41,10 +50,30 @@ public class AdminController {
     }
     //----------------------------------
 
-    //@PreAuthorize("hasRole('ROLE_ADMIN')")
-    @GetMapping("/getusers")
-    public ResponseEntity<List<User>> getAllUsers() {
-        return new ResponseEntity<List<User>>(userService.getAllUsers(), HttpStatus.OK);
+    // GET /api/admin/users?email=&tier=&enabled=&role=&signedMethod=&after=&size=
+    @GetMapping("/users")
+    public ResponseEntity<AdminUserPageResponse> searchUsers(AdminUserSearchRequest request) {
+        return ResponseEntity.ok(userService.searchUsers(request));
+    }
+
+    // 條件同 /users，逐批串流輸出 CSV(不受 size 限制)
+    @GetMapping("/users/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(AdminUserSearchRequest request) {
+        StreamingResponseBody body = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write('\uFEFF'); // BOM，讓 Excel 正確辨識 UTF-8
+            userService.exportUsersCsv(request, writer);
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.csv\"")
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    @GetMapping("/users/count")
+    public ResponseEntity<Long> countUsers() {
+        return ResponseEntity.ok(userRepository.count());
     }
 
     @GetMapping("/user/{id}")
@@ -59,14 +88,23 @@ public class AdminController {
     }
 
 
+    @Audited(target = "User", label = "會員")
     @PutMapping("/update-enabled-status")
     public ResponseEntity<String> updateAccountEnabledStatus(@RequestParam Long userId, @RequestParam boolean enabled) {
         userService.updateAccountEnabledStatus(userId, enabled);
         return ResponseEntity.ok("Account enabled status updated");
     }
 
+    @Audited(target = "User", label = "會員")
+    @PutMapping("/update-role")
+    public ResponseEntity<String> updateRole(@RequestParam Long userId, @RequestParam AppRole roleName) {
+        userService.updateRole(userId, roleName);
+        return ResponseEntity.ok("Account role updated");
+    }
+
     //--------------------------------------------------------------
 
+    @Audited(target = "User", label = "會員")
     @PostMapping("/add-user")
     public ResponseEntity<?> addUserOrAdmin(@Valid @RequestBody SignupRequest signupRequest) {
 
@@ -1,44 +1,104 @@
 package com.pagerealm.controller;
 
+import com.admin_log.audit.Audited;
 import com.pagerealm.dto.request.AdminReplyRequest;
 import com.pagerealm.dto.response.SupportMessageDTO;
+import com.pagerealm.dto.response.SupportMessagePageResponse;
 import com.pagerealm.dto.response.SupportTicketDTO;
 import com.pagerealm.dto.response.SupportTicketDetailDTO;
+import com.pagerealm.dto.response.SupportTicketPageResponse;
+import com.pagerealm.dto.response.SupportTicketSearchResponse;
+import com.pagerealm.entity.AppTicketCategory;
 import com.pagerealm.entity.AppTicketStatus;
 import com.pagerealm.entity.SupportMessage;
 import com.pagerealm.entity.SupportTicket;
 import com.pagerealm.service.SupportService;
 import com.pagerealm.utils.AuthUtil;
+import com.pagerealm.utils.KeysetCursor;
+import com.pagerealm.utils.SupportEventBus;
+import com.pagerealm.utils.SupportSearchIndex;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
 
-import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/admin/support")
+@Audited(target = "SupportTicket", label = "工單")
 public class AdminSupportController {
 
     private final SupportService supportService;
     private final AuthUtil authUtil;
+    private final SupportEventBus eventBus;
+    private final SupportSearchIndex searchIndex;
 
-    public AdminSupportController(SupportService supportService, AuthUtil authUtil) {
+    public AdminSupportController(SupportService supportService, AuthUtil authUtil, SupportEventBus eventBus,
+                                  SupportSearchIndex searchIndex) {
         this.supportService = supportService;
         this.authUtil = authUtil;
+        this.eventBus = eventBus;
+        this.searchIndex = searchIndex;
     }
 
+    // GET /api/admin/support/tickets?status=&category=&unassigned=&cursor=&size=
     @GetMapping("/tickets")
-    public ResponseEntity<List<SupportTicketDTO>> list(@RequestParam(value = "status", required = false) AppTicketStatus status) {
-        List<SupportTicketDTO> list = supportService.adminListTickets(status).stream()
-                .map(this::toDTO).collect(Collectors.toList());
-        return ResponseEntity.ok(list);
+    public ResponseEntity<SupportTicketPageResponse> list(@RequestParam(value = "status", required = false) AppTicketStatus status,
+                                                          @RequestParam(value = "category", required = false) AppTicketCategory category,
+                                                          @RequestParam(value = "unassigned", defaultValue = "false") boolean unassigned,
+                                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                                          @RequestParam(value = "size", required = false) Integer size) {
+        return ResponseEntity.ok(supportService.adminSearchTickets(status, category, unassigned, cursor, size));
+    }
+
+    // 全文搜尋(主旨 + 訊息內容)：GET /api/admin/support/tickets/search?q=&status=&category=&page=&size=
+    @GetMapping("/tickets/search")
+    public SupportTicketSearchResponse search(@RequestParam(value = "q", required = false) String q,
+                                              @RequestParam(value = "status", required = false) AppTicketStatus status,
+                                              @RequestParam(value = "category", required = false) AppTicketCategory category,
+                                              @RequestParam(value = "page", defaultValue = "0") int page,
+                                              @RequestParam(value = "size", defaultValue = "20") int size) {
+        return searchIndex.search(q, status, category, page, size);
+    }
+
+    // 背景全量重建搜尋索引；已有重建進行中時回傳 409
+    @PostMapping("/tickets/search/rebuild")
+    public ResponseEntity<Void> rebuildSearchIndex() {
+        return ResponseEntity.status(searchIndex.startRebuild() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).build();
+    }
+
+    // 收件匣即時更新(SSE)：所有工單的新訊息與狀態/指派變更
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter inboxStream() {
+        return eventBus.subscribeInbox();
+    }
+
+    // 單一工單即時更新(SSE)
+    @GetMapping(value = "/tickets/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter ticketStream(@PathVariable Long id) {
+        supportService.adminFindTicket(id).orElseThrow(() -> new RuntimeException("Ticket not found"));
+        return eventBus.subscribeTicket(id);
     }
 
+    // 工單標頭 + 最新 size 則訊息
     @GetMapping("/tickets/{id}")
-    public ResponseEntity<SupportTicketDetailDTO> detail(@PathVariable Long id) {
+    public ResponseEntity<SupportTicketDetailDTO> detail(@PathVariable Long id,
+                                                         @RequestParam(value = "size", required = false) Integer size) {
         SupportTicket t = supportService.adminFindTicket(id).orElseThrow(() -> new RuntimeException("Ticket not found"));
-        return ResponseEntity.ok(toDetailDTO(t));
+        return ResponseEntity.ok(toDetailDTO(t, supportService.listMessages(id, null, size)));
+    }
+
+    // 更早的訊息：GET /api/admin/support/tickets/{id}/messages?before=<olderCursor>&size=
+    @GetMapping("/tickets/{id}/messages")
+    public ResponseEntity<SupportMessagePageResponse> messages(@PathVariable Long id,
+                                                               @RequestParam(value = "before", required = false) String before,
+                                                               @RequestParam(value = "size", required = false) Integer size) {
+        return ResponseEntity.ok(supportService.listMessages(id, before, size));
     }
 
     @PostMapping("/tickets/{id}/reply")
@@ -54,6 +114,13 @@ public class AdminSupportController {
         return ResponseEntity.ok(toDTO(t));
     }
 
+    // 指派給目前登入的管理員
+    @PostMapping("/tickets/{id}/assign")
+    public ResponseEntity<SupportTicketDTO> assign(@PathVariable Long id) {
+        SupportTicket t = supportService.assignTicket(id, authUtil.LoggedInUserId());
+        return ResponseEntity.ok(toDTO(t));
+    }
+
     private SupportTicketDTO toDTO(SupportTicket t) {
         return new SupportTicketDTO(
                 t.getId(),
@@ -66,7 +133,8 @@ public class AdminSupportController {
         );
     }
 
-    private SupportTicketDetailDTO toDetailDTO(SupportTicket t) {
+    // 工單標頭 + 最新一頁訊息；不初始化 t.getMessages()
+    private SupportTicketDetailDTO toDetailDTO(SupportTicket t, SupportMessagePageResponse thread) {
         return new SupportTicketDetailDTO(
                 t.getId(),
                 t.getContactName(),
@@ -77,11 +145,26 @@ public class AdminSupportController {
                 t.getCreatedAt(),
                 t.getUpdatedAt(),
                 t.getLastMessageAt(),
-                t.getMessages().stream().map(this::toMsgDTO).collect(Collectors.toList())
+                thread.getItems(),
+                thread.isHasOlder(),
+                thread.getOlderCursor()
         );
     }
 
     private SupportMessageDTO toMsgDTO(SupportMessage m) {
         return new SupportMessageDTO(m.getId(), m.getSender(), m.getContent(), m.getCreatedAt());
     }
+
+    @ExceptionHandler(KeysetCursor.InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursor(KeysetCursor.InvalidCursorException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(SupportEventBus.SubscriberLimitException.class)
+    public ResponseEntity<String> handleSubscriberLimit(SupportEventBus.SubscriberLimitException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(ex.getMessage());
+    }
 }
@@ -3,17 +3,26 @@ package com.pagerealm.controller;
 import com.pagerealm.dto.request.CreateMessageRequest;
 import com.pagerealm.dto.request.CreateTicketRequest;
 import com.pagerealm.dto.response.SupportMessageDTO;
+import com.pagerealm.dto.response.SupportMessagePageResponse;
 import com.pagerealm.dto.response.SupportTicketDTO;
 import com.pagerealm.dto.response.SupportTicketDetailDTO;
+import com.pagerealm.dto.response.SupportTicketOverviewPageResponse;
 import com.pagerealm.entity.AppSenderType;
 import com.pagerealm.entity.SupportMessage;
 import com.pagerealm.entity.SupportTicket;
 import com.pagerealm.service.SupportService;
 import com.pagerealm.utils.AuthUtil;
+import com.pagerealm.utils.KeysetCursor;
+import com.pagerealm.utils.SupportEventBus;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -23,10 +32,12 @@ public class SupportController {
 
     private final SupportService supportService;
     private final AuthUtil authUtil;
+    private final SupportEventBus eventBus;
 
-    public SupportController(SupportService supportService, AuthUtil authUtil) {
+    public SupportController(SupportService supportService, AuthUtil authUtil, SupportEventBus eventBus) {
         this.supportService = supportService;
         this.authUtil = authUtil;
+        this.eventBus = eventBus;
     }
 
     @PostMapping("/tickets")
@@ -40,7 +51,7 @@ public class SupportController {
                 req.getCategory().name(),
                 req.getContent()
         );
-        return ResponseEntity.ok(toDetailDTO(t));
+        return ResponseEntity.ok(toDetailDTO(t, supportService.listMessages(t.getId(), null, null)));
     }
 
     @GetMapping("/tickets")
@@ -51,12 +62,32 @@ public class SupportController {
         return ResponseEntity.ok(list);
     }
 
+    // 工單標頭 + 最新 size 則訊息
     @GetMapping("/tickets/{id}")
-    public ResponseEntity<SupportTicketDetailDTO> myTicket(@PathVariable Long id) {
+    public ResponseEntity<SupportTicketDetailDTO> myTicket(@PathVariable Long id,
+                                                           @RequestParam(value = "size", required = false) Integer size) {
         Long userId = authUtil.LoggedInUserId();
         SupportTicket t = supportService.findUserTicket(userId, id)
                 .orElseThrow(() -> new RuntimeException("Ticket not found"));
-        return ResponseEntity.ok(toDetailDTO(t));
+        return ResponseEntity.ok(toDetailDTO(t, supportService.listMessages(t.getId(), null, size)));
+    }
+
+    // 更早的訊息：GET /api/support/tickets/{id}/messages?before=<olderCursor>&size=
+    @GetMapping("/tickets/{id}/messages")
+    public ResponseEntity<SupportMessagePageResponse> myTicketMessages(@PathVariable Long id,
+                                                                       @RequestParam(value = "before", required = false) String before,
+                                                                       @RequestParam(value = "size", required = false) Integer size) {
+        Long userId = authUtil.LoggedInUserId();
+        supportService.findUserTicket(userId, id).orElseThrow(() -> new RuntimeException("Ticket not found"));
+        return ResponseEntity.ok(supportService.listMessages(id, before, size));
+    }
+
+    // 即時更新(SSE)：新訊息(event: message)與狀態變更(event: status)；收到 resync 時重新讀取 /tickets/{id}
+    @GetMapping(value = "/tickets/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter myTicketStream(@PathVariable Long id) {
+        Long userId = authUtil.LoggedInUserId();
+        supportService.findUserTicket(userId, id).orElseThrow(() -> new RuntimeException("Ticket not found"));
+        return eventBus.subscribeTicket(id);
     }
 
     @PostMapping("/tickets/{id}/messages")
@@ -66,13 +97,13 @@ public class SupportController {
         return ResponseEntity.ok(toMsgDTO(m));
     }
 
-    // 一次取回所有工單（含訊息）
-    @GetMapping("/tickets/details")
-    public ResponseEntity<List<SupportTicketDetailDTO>> myTicketsWithMessages() {
+    // 工單總覽(分頁)：每筆含訊息數與最後一則訊息預覽，不載入訊息串
+    // GET /api/support/tickets/overview?cursor=&size=
+    @GetMapping("/tickets/overview")
+    public ResponseEntity<SupportTicketOverviewPageResponse> myTicketsOverview(@RequestParam(value = "cursor", required = false) String cursor,
+                                                                               @RequestParam(value = "size", required = false) Integer size) {
         Long userId = authUtil.LoggedInUserId();
-        List<SupportTicketDetailDTO> list = supportService.listTicketsWithMessagesByUser(userId)
-                .stream().map(this::toDetailDTO).collect(Collectors.toList());
-        return ResponseEntity.ok(list);
+        return ResponseEntity.ok(supportService.ticketOverview(userId, cursor, size));
     }
 
     private SupportTicketDTO toDTO(SupportTicket t) {
@@ -87,7 +118,8 @@ public class SupportController {
         );
     }
 
-    private SupportTicketDetailDTO toDetailDTO(SupportTicket t) {
+    // 工單標頭 + 最新一頁訊息；不初始化 t.getMessages()
+    private SupportTicketDetailDTO toDetailDTO(SupportTicket t, SupportMessagePageResponse thread) {
         return new SupportTicketDetailDTO(
                 t.getId(),
                 t.getContactName(),
@@ -98,11 +130,26 @@ public class SupportController {
                 t.getCreatedAt(),
                 t.getUpdatedAt(),
                 t.getLastMessageAt(),
-                t.getMessages().stream().map(this::toMsgDTO).collect(Collectors.toList())
+                thread.getItems(),
+                thread.isHasOlder(),
+                thread.getOlderCursor()
         );
     }
 
     private SupportMessageDTO toMsgDTO(SupportMessage m) {
         return new SupportMessageDTO(m.getId(), m.getSender(), m.getContent(), m.getCreatedAt());
     }
+
+    @ExceptionHandler(KeysetCursor.InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursor(KeysetCursor.InvalidCursorException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(SupportEventBus.SubscriberLimitException.class)
+    public ResponseEntity<String> handleSubscriberLimit(SupportEventBus.SubscriberLimitException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(ex.getMessage());
+    }
 }
@@ -3,6 +3,7 @@ package com.pagerealm.controller;
 import com.pagerealm.dto.response.UserInfoResponse;
 import com.pagerealm.entity.MembershipTier;
 import com.pagerealm.entity.User;
+import com.pagerealm.s3.ImageDerivativeService;
 import com.pagerealm.security.service.UserDetailsImpl;
 import com.pagerealm.service.UserService;
 import org.apache.tomcat.util.http.fileupload.FileUpload;
@@ -154,7 +155,7 @@ public class UserController {
             }
 
             String url = userService.uploadAvatar(userDetails.getId(), file);
-            return ResponseEntity.ok(Map.of("url", url));
+            return ResponseEntity.ok(Map.of("url", url, "variants", ImageDerivativeService.variantUrls(url)));
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", e.getMessage()));
@@ -0,0 +1,17 @@
+package com.pagerealm.dto.request;
+
+import com.pagerealm.entity.AppRole;
+import com.pagerealm.entity.MembershipTier;
+import lombok.Data;
+
+// 後台使用者搜尋條件(皆為選填)，以 query string 綁定
+@Data
+public class AdminUserSearchRequest {
+    private String email;          // email 前綴
+    private MembershipTier tier;
+    private Boolean enabled;
+    private AppRole role;
+    private String signedMethod;
+    private Long after;            // 上一頁的 nextCursor(userId)
+    private Integer size;          // 預設 50，上限 200
+}
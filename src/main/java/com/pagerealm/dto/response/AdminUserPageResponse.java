@@ -0,0 +1,15 @@
+package com.pagerealm.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// keyset 分頁回應：下一頁以 after=nextCursor 查詢，hasNext=false 時 nextCursor 為 null
+@Data
+@AllArgsConstructor
+public class AdminUserPageResponse {
+    private List<AdminUserSummaryDTO> items;
+    private boolean hasNext;
+    private Long nextCursor;
+}
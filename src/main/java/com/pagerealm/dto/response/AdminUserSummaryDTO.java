@@ -0,0 +1,23 @@
+package com.pagerealm.dto.response;
+
+import com.pagerealm.entity.AppRole;
+import com.pagerealm.entity.MembershipTier;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// 後台使用者列表用的輕量投影：不載入 User entity，也不會讀取/解密 totpSecret
+@Data
+@AllArgsConstructor
+public class AdminUserSummaryDTO {
+    private Long userId;
+    private String userName;
+    private String email;
+    private boolean enabled;
+    private MembershipTier membershipTier;
+    private AppRole roleName;
+    private String signedMethod;
+    private boolean totpEnabled;
+    private LocalDateTime createdDate;
+}
@@ -0,0 +1,19 @@
+package com.pagerealm.dto.response;
+
+import com.pagerealm.entity.AppTicketStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// 工單即時事件(SSE data)：type 為 message 時 message 有值；status 為事件發生後的工單狀態
+@Data
+@AllArgsConstructor
+public class SupportEventDTO {
+    private String type;
+    private Long ticketId;
+    private AppTicketStatus status;
+    private Long assigneeUserId;
+    private SupportMessageDTO message;
+    private LocalDateTime at;
+}
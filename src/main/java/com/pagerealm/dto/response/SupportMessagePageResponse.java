@@ -0,0 +1,15 @@
+package com.pagerealm.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// 訊息串分頁：items 依時間由舊到新；更早的訊息以 before=olderCursor 查詢，hasOlder=false 時 olderCursor 為 null
+@Data
+@AllArgsConstructor
+public class SupportMessagePageResponse {
+    private List<SupportMessageDTO> items;
+    private boolean hasOlder;
+    private String olderCursor;
+}
@@ -20,6 +20,9 @@ public class SupportTicketDetailDTO {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private LocalDateTime lastMessageAt;
+    // 最新的一頁訊息(由舊到新)；更早的訊息以 GET .../messages?before=olderCursor 取得
     private List<SupportMessageDTO> messages;
+    private boolean hasOlderMessages;
+    private String olderCursor;
 }
 
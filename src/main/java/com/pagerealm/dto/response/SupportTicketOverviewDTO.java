@@ -0,0 +1,25 @@
+package com.pagerealm.dto.response;
+
+import com.pagerealm.entity.AppSenderType;
+import com.pagerealm.entity.AppTicketCategory;
+import com.pagerealm.entity.AppTicketStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// 會員工單總覽：工單摘要 + 訊息數 + 最後一則訊息預覽(前 200 字)
+@Data
+@AllArgsConstructor
+public class SupportTicketOverviewDTO {
+    private Long id;
+    private String subject;
+    private AppTicketCategory category;
+    private AppTicketStatus status;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime lastMessageAt;
+    private long messageCount;
+    private AppSenderType lastMessageSender;
+    private String lastMessagePreview;
+}
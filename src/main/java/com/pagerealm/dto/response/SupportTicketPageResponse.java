@@ -0,0 +1,15 @@
+package com.pagerealm.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// keyset 分頁回應(依 updatedAt、id 新到舊)：下一頁以 cursor=nextCursor 查詢，hasNext=false 時 nextCursor 為 null
+@Data
+@AllArgsConstructor
+public class SupportTicketPageResponse {
+    private List<SupportTicketSummaryDTO> items;
+    private boolean hasNext;
+    private String nextCursor;
+}
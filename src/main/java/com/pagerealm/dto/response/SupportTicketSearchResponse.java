@@ -0,0 +1,42 @@
+package com.pagerealm.dto.response;
+
+import com.pagerealm.entity.AppTicketCategory;
+import com.pagerealm.entity.AppTicketStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+// /api/admin/support/tickets/search 回應：命中工單(依相關度排序) + status/category 分面計數
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SupportTicketSearchResponse {
+    private List<Hit> items;
+    private int total;
+    private int page;
+    private int size;
+    private Map<String, Map<String, Integer>> facets;
+    // 全量重建進行中：尚未載入的舊工單可能不在結果內
+    private boolean rebuilding;
+    private long tookMicros;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Hit {
+        private Long id;
+        private String subject;
+        private AppTicketCategory category;
+        private AppTicketStatus status;
+        private Long assigneeUserId;
+        private LocalDateTime updatedAt;
+        private double score;
+    }
+}
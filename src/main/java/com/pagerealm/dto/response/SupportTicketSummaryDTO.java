@@ -0,0 +1,24 @@
+package com.pagerealm.dto.response;
+
+import com.pagerealm.entity.AppTicketCategory;
+import com.pagerealm.entity.AppTicketStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// 後台工單收件匣列表：JPQL constructor projection，只讀摘要欄位，不載入 user 與 messages
+@Data
+@AllArgsConstructor
+public class SupportTicketSummaryDTO {
+    private Long id;
+    private String subject;
+    private AppTicketCategory category;
+    private AppTicketStatus status;
+    private String contactName;
+    private String contactEmail;
+    private Long assigneeUserId;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime lastMessageAt;
+}
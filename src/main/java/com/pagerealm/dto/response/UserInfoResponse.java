@@ -1,11 +1,13 @@
 package com.pagerealm.dto.response;
 
+import com.pagerealm.s3.ImageDerivativeService;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Response to client端：User Profile頁面中顯示的資訊
@@ -20,6 +22,7 @@ public class UserInfoResponse {
     private LocalDate birthdate; // added 8/14
     private String membershipTier; // added 8/14
     private String avatarUrl; // added 8/14
+    private Map<String, String> avatarVariants; // thumb/list/detail，由 avatarUrl 推得
     private boolean enabled;
     private boolean totpEnabled;
     private List<String> roles;
@@ -42,6 +45,7 @@ public class UserInfoResponse {
         this.birthdate = birthdate;
         this.membershipTier = membershipTier;
         this.avatarUrl = avatarUrl;
+        this.avatarVariants = ImageDerivativeService.variantUrls(avatarUrl);
         this.enabled = enabled;
         this.totpEnabled = totpEnabled;
         this.roles = roles;
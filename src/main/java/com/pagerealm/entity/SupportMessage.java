@@ -11,7 +11,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "support_message")
+@Table(name = "support_message", indexes = {
+        // 訊息串 keyset 分頁
+        @Index(name = "idx_support_message_ticket_created", columnList = "ticket_id,created_at,id")
+})
 public class SupportMessage {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
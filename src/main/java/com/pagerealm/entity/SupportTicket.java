@@ -13,7 +13,16 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "support_ticket")
+@Table(name = "support_ticket", indexes = {
+        // 後台收件匣 keyset 分頁：全部 / 依狀態
+        @Index(name = "idx_support_ticket_updated", columnList = "updated_at,id"),
+        @Index(name = "idx_support_ticket_status_updated", columnList = "status,updated_at,id"),
+        // 待領取佇列(assignee_user_id IS NULL) / 依分類
+        @Index(name = "idx_support_ticket_assignee_updated", columnList = "assignee_user_id,updated_at,id"),
+        @Index(name = "idx_support_ticket_category_updated", columnList = "category,updated_at,id"),
+        // 會員工單總覽 keyset 分頁
+        @Index(name = "idx_support_ticket_user_updated", columnList = "user_id,updated_at,id")
+})
 public class SupportTicket {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -45,6 +54,14 @@ public class SupportTicket {
     private LocalDateTime updatedAt;
     private LocalDateTime lastMessageAt;
 
+    // 負責的客服(管理員 userId)；null 表示尚未指派，出現在待領取佇列
+    private Long assigneeUserId;
+
+    // 冗餘欄位 = 訊息數，供會員工單總覽直接讀取；建立時寫入，之後只經 SupportTicketRepository.incrementMessageCount 原子遞增
+    // NULL 表示尚未回填的舊資料
+    @Column(name = "message_count", updatable = false)
+    private Integer messageCount;
+
     @OneToMany(mappedBy = "ticket", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("createdAt ASC")
     private List<SupportMessage> messages = new ArrayList<>();
@@ -0,0 +1,62 @@
+package com.pagerealm.repository;
+
+import com.pagerealm.entity.EmailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    // 走 idx_email_outbox_due
+    @Query("select e.id from EmailOutbox e where e.status = com.pagerealm.entity.EmailOutbox.Status.PENDING " +
+            "and e.nextAttemptAt <= :now order by e.nextAttemptAt asc, e.id asc")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // 條件式領取：多個節點同時領取時，只有條件仍成立的列會被標上自己的 token
+    @Modifying
+    @Transactional
+    @Query("update EmailOutbox e set e.claimToken = :token, e.nextAttemptAt = :leaseUntil " +
+            "where e.id in :ids and e.status = com.pagerealm.entity.EmailOutbox.Status.PENDING and e.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token,
+              @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    List<EmailOutbox> findAllByClaimTokenOrderByIdAsc(String claimToken);
+
+    // 寄出後清空內文：驗證碼、重設密碼連結等機密不留在資料表
+    @Modifying
+    @Transactional
+    @Query("update EmailOutbox e set e.status = com.pagerealm.entity.EmailOutbox.Status.SENT, e.sentAt = :now, " +
+            "e.attempts = e.attempts + 1, e.claimToken = null, e.lastError = null, e.body = '' where e.id in :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // 標記 FAILED(不再重試)時同樣清空內文
+    @Modifying
+    @Transactional
+    @Query("update EmailOutbox e set e.status = :status, e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt, " +
+            "e.claimToken = null, e.lastError = :error, " +
+            "e.body = case when :status = com.pagerealm.entity.EmailOutbox.Status.FAILED then '' else e.body end " +
+            "where e.id = :id")
+    int markFailedAttempt(@Param("id") Long id, @Param("status") EmailOutbox.Status status,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("error") String error);
+
+    long countByStatus(EmailOutbox.Status status);
+
+    // 保留期限到期的 SENT/FAILED 列；分批刪除，避免單一交易鎖住大量資料
+    @Query("select e.id from EmailOutbox e where e.status in (com.pagerealm.entity.EmailOutbox.Status.SENT, " +
+            "com.pagerealm.entity.EmailOutbox.Status.FAILED) and e.createdAt < :cutoff order by e.id asc")
+    List<Long> findPurgeableIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("delete from EmailOutbox e where e.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+}
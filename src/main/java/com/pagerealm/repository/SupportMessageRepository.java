@@ -1,10 +1,29 @@
 package com.pagerealm.repository;
 
+import com.pagerealm.dto.response.SupportMessageDTO;
 import com.pagerealm.entity.SupportMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface SupportMessageRepository extends JpaRepository<SupportMessage, Long> {
     List<SupportMessage> findByTicket_IdOrderByCreatedAtAsc(Long ticketId);
+
+    // 訊息串最新一頁(新到舊)，走 idx_support_message_ticket_created
+    @Query("select new com.pagerealm.dto.response.SupportMessageDTO(m.id, m.sender, m.content, m.createdAt) " +
+            "from SupportMessage m where m.ticket.id = :ticketId " +
+            "order by m.createdAt desc, m.id desc")
+    List<SupportMessageDTO> findLatestPage(@Param("ticketId") Long ticketId, Pageable pageable);
+
+    // 比游標更早的訊息(新到舊)
+    @Query("select new com.pagerealm.dto.response.SupportMessageDTO(m.id, m.sender, m.content, m.createdAt) " +
+            "from SupportMessage m where m.ticket.id = :ticketId " +
+            "and (m.createdAt < :createdAt or (m.createdAt = :createdAt and m.id < :id)) " +
+            "order by m.createdAt desc, m.id desc")
+    List<SupportMessageDTO> findPageBefore(@Param("ticketId") Long ticketId, @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("id") Long id, Pageable pageable);
 }
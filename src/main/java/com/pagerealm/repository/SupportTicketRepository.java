@@ -1,29 +1,87 @@
 package com.pagerealm.repository;
 
+import com.pagerealm.dto.response.SupportTicketSummaryDTO;
+import com.pagerealm.entity.AppTicketCategory;
 import com.pagerealm.entity.AppTicketStatus;
 import com.pagerealm.entity.SupportTicket;
-import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface SupportTicketRepository extends JpaRepository<SupportTicket, Long> {
     List<SupportTicket> findByUser_UserIdOrderByUpdatedAtDesc(Long userId);
 
-    @EntityGraph(attributePaths = "messages")
+    // 只讀工單標頭；訊息串另由 SupportMessageRepository 分頁讀取
     Optional<SupportTicket> findByIdAndUser_UserId(Long id, Long userId);
 
-    @Query("select distinct t from SupportTicket t left join fetch t.messages where t.user.userId = :userId order by t.updatedAt desc")
-    List<SupportTicket> findAllWithMessagesByUserId(@Param("userId") Long userId);
+    // 會員工單總覽列(native query 的 interface projection)
+    interface OverviewRow {
+        Long getId();
+        String getSubject();
+        String getCategory();
+        String getStatus();
+        LocalDateTime getCreatedAt();
+        LocalDateTime getUpdatedAt();
+        LocalDateTime getLastMessageAt();
+        Long getMessageCount();
+        String getLastSender();
+        String getLastPreview();
+    }
 
-    List<SupportTicket> findByStatusOrderByUpdatedAtDesc(AppTicketStatus status);
+    /**
+     * 會員工單總覽：一次查詢取回一頁工單，訊息數直接讀 message_count，最後一則訊息以相關子查詢取得
+     * 子查詢走 idx_support_message_ticket_created，成本只與頁大小有關，不載入 messages 集合
+     * message_count 尚未回填(NULL)的舊工單才退回 COUNT(*)
+     */
+    @Query(value = "SELECT t.id AS id, t.subject AS subject, t.category AS category, t.status AS status, " +
+            "t.created_at AS createdAt, t.updated_at AS updatedAt, t.last_message_at AS lastMessageAt, " +
+            "COALESCE(t.message_count, (SELECT COUNT(*) FROM support_message c WHERE c.ticket_id = t.id)) AS messageCount, " +
+            "lm.sender AS lastSender, LEFT(lm.content, 200) AS lastPreview " +
+            "FROM support_ticket t " +
+            "LEFT JOIN support_message lm ON lm.id = (SELECT m.id FROM support_message m WHERE m.ticket_id = t.id " +
+            "ORDER BY m.created_at DESC, m.id DESC LIMIT 1) " +
+            "WHERE t.user_id = :userId " +
+            "AND (:afterAt IS NULL OR t.updated_at < :afterAt OR (t.updated_at = :afterAt AND t.id < :afterId)) " +
+            "ORDER BY t.updated_at DESC, t.id DESC LIMIT :limit", nativeQuery = true)
+    List<OverviewRow> findOverviewPage(@Param("userId") Long userId,
+                                       @Param("afterAt") LocalDateTime afterAt,
+                                       @Param("afterId") Long afterId,
+                                       @Param("limit") int limit);
 
-    List<SupportTicket> findAllByOrderByUpdatedAtDesc();
+    // 新增訊息時與訊息寫入同一交易原子遞增；尚未回填(NULL)的工單維持 NULL，由回填計算
+    @Modifying
+    @Query(value = "UPDATE support_ticket SET message_count = message_count + 1 WHERE id = :id", nativeQuery = true)
+    int incrementMessageCount(@Param("id") Long id);
 
-    @Override
-    @EntityGraph(attributePaths = "messages")
-    Optional<SupportTicket> findById(Long id);
+    // 舊資料沒有 message_count，分段回填
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE support_ticket t SET message_count = " +
+            "(SELECT COUNT(*) FROM support_message m WHERE m.ticket_id = t.id) " +
+            "WHERE t.message_count IS NULL LIMIT :limit", nativeQuery = true)
+    int backfillMessageCounts(@Param("limit") int limit);
+
+    // 後台收件匣：keyset(updatedAt desc, id desc)，只讀摘要欄位
+    @Query("select new com.pagerealm.dto.response.SupportTicketSummaryDTO(" +
+            "t.id, t.subject, t.category, t.status, t.contactName, t.contactEmail, t.assigneeUserId, " +
+            "t.createdAt, t.updatedAt, t.lastMessageAt) " +
+            "from SupportTicket t " +
+            "where (:status is null or t.status = :status) " +
+            "and (:category is null or t.category = :category) " +
+            "and (:unassigned = false or t.assigneeUserId is null) " +
+            "and (:afterAt is null or t.updatedAt < :afterAt or (t.updatedAt = :afterAt and t.id < :afterId)) " +
+            "order by t.updatedAt desc, t.id desc")
+    List<SupportTicketSummaryDTO> searchSummaries(@Param("status") AppTicketStatus status,
+                                                  @Param("category") AppTicketCategory category,
+                                                  @Param("unassigned") boolean unassigned,
+                                                  @Param("afterAt") LocalDateTime afterAt,
+                                                  @Param("afterId") Long afterId,
+                                                  Pageable pageable);
 }
@@ -1,9 +1,16 @@
 package com.pagerealm.repository;
 
+import com.pagerealm.dto.response.AdminUserSummaryDTO;
+import com.pagerealm.entity.AppRole;
+import com.pagerealm.entity.MembershipTier;
 import com.pagerealm.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -20,4 +27,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByVerificationCode(String verificationCode);
 
     void deleteByEmail(String email);
+
+    // 後台使用者搜尋：DTO 投影 + userId keyset 分頁(不做 COUNT)，emailPrefix 需已帶 '%' 結尾
+    @Query("select new com.pagerealm.dto.response.AdminUserSummaryDTO(" +
+            "u.userId, u.userName, u.email, u.enabled, u.membershipTier, r.roleName, u.signedMethod, u.totpEnabled, u.createdDate) " +
+            "from User u left join u.role r " +
+            "where u.userId > :after " +
+            "and (:emailPrefix is null or u.email like :emailPrefix) " +
+            "and (:tier is null or u.membershipTier = :tier) " +
+            "and (:enabled is null or u.enabled = :enabled) " +
+            "and (:role is null or r.roleName = :role) " +
+            "and (:signedMethod is null or u.signedMethod = :signedMethod) " +
+            "order by u.userId asc")
+    List<AdminUserSummaryDTO> searchSummaries(@Param("after") Long after,
+                                              @Param("emailPrefix") String emailPrefix,
+                                              @Param("tier") MembershipTier tier,
+                                              @Param("enabled") Boolean enabled,
+                                              @Param("role") AppRole role,
+                                              @Param("signedMethod") String signedMethod,
+                                              Pageable pageable);
 }
@@ -0,0 +1,263 @@
+package com.pagerealm.s3;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 上傳時產生縮圖衍生檔(書籍封面、會員頭像)：
+ * - 原檔存為 <目錄>/original.<副檔名>，衍生檔固定存在同目錄的 thumb.jpg / list.jpg / detail.jpg
+ *   因此可直接由原檔 URL 推得衍生檔 URL(variantUrls)，不需額外欄位
+ * - 原圖只解碼一次，各尺寸的縮放與 JPEG 編碼在有界執行緒池平行進行
+ * - 無法解碼的格式(如 WebP)或像素數超過上限時，衍生檔直接存原檔內容，確保 URL 一律存在
+ * - 原檔最後才寫入：原檔存在即代表衍生檔皆已完成，可作為內容定址去重的依據(storeIfAbsent)
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+    private static final String ORIGINAL_NAME = "original.";
+    public static final List<String> VARIANT_NAMES = List.of("thumb", "list", "detail");
+
+    public enum Kind { COVER, AVATAR }
+
+    private final S3Service s3Service;
+    private final ThreadPoolExecutor encoder;
+    // 已確認存在於 S3 的內容定址 key(LRU)，命中時連 HEAD 都省略
+    private final Map<String, Boolean> knownKeys;
+
+    // 各衍生檔長邊上限(px)，順序對應 VARIANT_NAMES
+    @Value("${images.variants.cover:160,320,800}")
+    private int[] coverSizes;
+
+    @Value("${images.variants.avatar:64,128,256}")
+    private int[] avatarSizes;
+
+    @Value("${images.variants.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    // 防止解壓縮炸彈：超過此像素數不解碼
+    @Value("${images.variants.max-pixels:40000000}")
+    private long maxPixels;
+
+    @Value("${images.content-addressed.known-keys-max:10000}")
+    private int knownKeysMax;
+
+    public ImageDerivativeService(S3Service s3Service,
+                                  @Value("${images.variants.encoder-threads:0}") int threads,
+                                  @Value("${images.variants.encoder-queue:64}") int queueCapacity) {
+        this.s3Service = s3Service;
+        this.knownKeys = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > knownKeysMax;
+            }
+        };
+        int n = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors());
+        AtomicInteger seq = new AtomicInteger();
+        // 佇列滿時由呼叫端執行緒自行編碼，形成背壓而不是無限堆積
+        this.encoder = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "image-encoder-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        encoder.shutdown();
+    }
+
+    /**
+     * @description : 產生並上傳所有衍生檔，完成後才寫入原檔
+     * @param originalKey : 須以 "original.<副檔名>" 結尾(見 originalKey)
+     * @return : 衍生檔名稱 → 公開 URL
+     */
+    public Map<String, String> storeWithVariants(String bucket, String originalKey, MultipartFile file,
+                                                 String contentType, Kind kind) throws IOException {
+        BufferedImage image = decode(file);
+        int[] sizes = kind == Kind.COVER ? coverSizes : avatarSizes;
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(VARIANT_NAMES.size());
+        for (int i = 0; i < VARIANT_NAMES.size(); i++) {
+            String variantKey = variantKey(originalKey, VARIANT_NAMES.get(i));
+            int maxSize = sizes[Math.min(i, sizes.length - 1)];
+            tasks.add(CompletableFuture.runAsync(() -> {
+                if (image == null) {
+                    s3Service.putObject(bucket, variantKey, file, contentType);
+                } else {
+                    s3Service.putObjectWithContentType(bucket, variantKey, encodeJpeg(resize(image, maxSize)), "image/jpeg");
+                }
+            }, encoder));
+        }
+        try {
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("縮圖產生失敗，請稍後再試", e.getCause());
+        }
+        s3Service.putObject(bucket, originalKey, file, contentType);
+        return variantUrls(s3Service.buildPublicUrl(bucket, originalKey));
+    }
+
+    /**
+     * @description : 內容定址上傳：originalKey 含內容雜湊，已存在(本機索引或 S3 HEAD)就整個略過
+     * @return : 是否實際上傳
+     */
+    public boolean storeIfAbsent(String bucket, String originalKey, MultipartFile file,
+                                 String contentType, Kind kind) throws IOException {
+        String indexKey = bucket + "/" + originalKey;
+        synchronized (knownKeys) {
+            if (knownKeys.get(indexKey) != null) return false;
+        }
+        boolean stored = false;
+        if (!s3Service.exists(bucket, originalKey)) {
+            storeWithVariants(bucket, originalKey, file, contentType, kind);
+            stored = true;
+        }
+        synchronized (knownKeys) {
+            knownKeys.put(indexKey, Boolean.TRUE);
+        }
+        return stored;
+    }
+
+    // 串流計算 SHA-256(小寫十六進位)，不把檔案讀進記憶體
+    public static String sha256Hex(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = file.getInputStream()) {
+            int n;
+            while ((n = in.read(buffer)) != -1) digest.update(buffer, 0, n);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // <dir>/original.<ext>
+    public static String originalKey(String dir, String ext) {
+        return dir + "/" + ORIGINAL_NAME + ext;
+    }
+
+    /**
+     * @description : 由原檔 URL 推得衍生檔 URL
+     * @return : 非本流程產生的舊檔(檔名不是 original.*)回傳空 Map
+     */
+    public static Map<String, String> variantUrls(String originalUrl) {
+        if (originalUrl == null) return Map.of();
+        int slash = originalUrl.lastIndexOf('/');
+        if (slash < 0 || !originalUrl.startsWith(ORIGINAL_NAME, slash + 1)) return Map.of();
+        String dir = originalUrl.substring(0, slash + 1);
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (String name : VARIANT_NAMES) urls.put(name, dir + name + ".jpg");
+        return urls;
+    }
+
+    private static String variantKey(String originalKey, String name) {
+        return originalKey.substring(0, originalKey.lastIndexOf('/') + 1) + name + ".jpg";
+    }
+
+    // 先讀標頭檢查尺寸再解碼；無對應 reader 或過大時回傳 null
+    private BufferedImage decode(MultipartFile file) {
+        try (InputStream in = file.getInputStream();
+             ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    logger.warn("Image too large for derivatives: {} pixels", pixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Image decode failed, variants will copy the original: {}", e.toString());
+            return null;
+        }
+    }
+
+    // 長邊縮至 maxSize(不放大)；大幅縮小時逐次減半以保留細節，透明底以白色填滿
+    static BufferedImage resize(BufferedImage src, int maxSize) {
+        double scale = Math.min(1.0, (double) maxSize / Math.max(src.getWidth(), src.getHeight()));
+        int targetW = Math.max(1, (int) Math.round(src.getWidth() * scale));
+        int targetH = Math.max(1, (int) Math.round(src.getHeight() * scale));
+        BufferedImage current = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        do {
+            w = Math.max(targetW, w / 2);
+            h = Math.max(targetH, h / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, w, h);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != targetW || h != targetH);
+        return current;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,6 +1,7 @@
 package com.pagerealm.s3;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.util.StringUtils;
@@ -9,6 +10,7 @@ import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 
 @Configuration
@@ -25,15 +27,26 @@ public class S3Config {
 
     @Bean
     public S3Client s3Client() {
-        AwsCredentialsProvider provider;
-        if (StringUtils.hasText(accessKey) && StringUtils.hasText(secretKey)) {
-            provider = StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
-        } else {
-            provider = DefaultCredentialsProvider.create(); // 環境變數 / ~/.aws/credentials / IAM role
-        }
         return S3Client.builder()
                 .region(Region.of(awsRegion))
-                .credentialsProvider(provider)
+                .credentialsProvider(credentialsProvider())
+                .build();
+    }
+
+    // 非同步版本(Netty)，預設關閉
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "aws.s3.async.enabled", havingValue = "true")
+    public S3AsyncClient s3AsyncClient() {
+        return S3AsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(credentialsProvider())
                 .build();
     }
+
+    private AwsCredentialsProvider credentialsProvider() {
+        if (StringUtils.hasText(accessKey) && StringUtils.hasText(secretKey)) {
+            return StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        }
+        return DefaultCredentialsProvider.create(); // 環境變數 / ~/.aws/credentials / IAM role
+    }
 }
\ No newline at end of file
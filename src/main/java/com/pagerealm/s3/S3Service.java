@@ -1,27 +1,56 @@
 package com.pagerealm.s3;
 
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * S3 存取：
+ * - 串流上傳：已知長度的 InputStream 直接交給 SDK，不先讀成 byte[]
+ * - 上傳檔案受 spring.servlet.multipart.max-file-size(5MB)限制，低於 S3 分段上傳的最小 part，一律單次 PUT
+ * - aws.s3.async.enabled=true 時可使用 S3AsyncClient 版本，不佔用呼叫端執行緒等待上傳
+ */
 @Service
 public class S3Service {
 
     private final S3Client s3Client;
+    private final ObjectProvider<S3AsyncClient> s3AsyncClient;
+    // 非同步上傳時負責讀取 InputStream 的執行緒
+    private final ExecutorService asyncReadExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "s3-async-read");
+        t.setDaemon(true);
+        return t;
+    });
 
     @Value("${aws.region}")
     private String awsRegion;
 
-    public S3Service(S3Client s3Client) {
+    public S3Service(S3Client s3Client, ObjectProvider<S3AsyncClient> s3AsyncClient) {
         this.s3Client = s3Client;
+        this.s3AsyncClient = s3AsyncClient;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        asyncReadExecutor.shutdown();
     }
 
     // 上傳一般物件
@@ -44,6 +73,83 @@ public class S3Service {
         s3Client.putObject(objectRequest, RequestBody.fromBytes(file));
     }
 
+    /**
+     * @description : 串流上傳(長度已知)
+     * @param in : 資料來源，由呼叫端負責關閉
+     * @param contentLength : 資料長度(bytes)
+     */
+    public void putObject(String bucketName, String key, InputStream in, long contentLength, String contentType) {
+        PutObjectRequest objectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(contentLength)
+                .build();
+        s3Client.putObject(objectRequest, RequestBody.fromInputStream(in, contentLength));
+    }
+
+    /**
+     * @description : 上傳 MultipartFile(暫存檔)，重試時重新開啟串流，不把檔案讀進記憶體
+     */
+    public void putObject(String bucketName, String key, MultipartFile file, String contentType) {
+        long size = file.getSize();
+        PutObjectRequest objectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(size)
+                .build();
+        s3Client.putObject(objectRequest, RequestBody.fromContentProvider(() -> {
+            try {
+                return file.getInputStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, size, contentType));
+    }
+
+    /**
+     * @description : 非同步串流上傳(需 aws.s3.async.enabled=true)，完成後關閉 InputStream
+     * @return : 上傳完成時完成的 future
+     */
+    public CompletableFuture<Void> putObjectAsync(String bucketName, String key, InputStream in, long contentLength, String contentType) {
+        S3AsyncClient client = s3AsyncClient.getIfAvailable();
+        if (client == null) {
+            throw new IllegalStateException("S3AsyncClient 未啟用(aws.s3.async.enabled)");
+        }
+        PutObjectRequest objectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(contentLength)
+                .build();
+        return client.putObject(objectRequest, AsyncRequestBody.fromInputStream(in, contentLength, asyncReadExecutor))
+                .whenComplete((r, ex) -> closeQuietly(in))
+                .thenApply(r -> null);
+    }
+
+    public boolean isAsyncEnabled() {
+        return s3AsyncClient.getIfAvailable() != null;
+    }
+
+    // HEAD 檢查物件是否存在
+    public boolean exists(String bucketName, String key) {
+        try {
+            s3Client.headObject(b -> b.bucket(bucketName).key(key));
+            return true;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) return false;
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+
     // 取得物件
     public byte[] getObject(String bucketName,String key){
         GetObjectRequest getObjectRequest = GetObjectRequest.builder()
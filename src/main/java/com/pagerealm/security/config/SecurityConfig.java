@@ -6,6 +6,7 @@ import com.pagerealm.entity.Role;
 import com.pagerealm.repository.RoleRepository;
 import com.pagerealm.security.jwt.AuthEntryPointJwt;
 import com.pagerealm.security.jwt.AuthTokenFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
@@ -55,6 +56,8 @@ public class SecurityConfig {
         http.cors(Customizer.withDefaults());
 
         http.authorizeHttpRequests(request -> request
+                        // SSE / 串流回應結束時的 async dispatch：原請求已通過授權，JWT filter 不會再執行
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         //.requestMatchers("/api/csrf-token").permitAll()
                         .requestMatchers("/api/auth/public/**").permitAll()
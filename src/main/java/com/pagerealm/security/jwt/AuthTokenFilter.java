@@ -1,6 +1,7 @@
 package com.pagerealm.security.jwt;
 
 import com.pagerealm.security.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -24,15 +25,17 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     private JwtUtils jwtUtils;
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
+    @Autowired
+    private JwtPrincipalCache principalCache;
     //logger
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
 
     /**
      * @description :
-     * - 取得並驗證 client 端 request 中的 JWT token
+     * - 取得並驗證 client 端 request 中的 JWT token (只解析、驗證簽章一次)
      * - 從 token 解析出 username
-     * - 以 username 載入對應的 UserDetails
+     * - 以 username 載入對應的 UserDetails (先查 JwtPrincipalCache，未命中才查DB)
      * - 用 `UsernamePasswordAuthenticationToken` 建立認證物件
      * - 將認證資訊設置到 Spring Security 的安全上下文中，完成自定義 filter 的認證流程
      * @param request
@@ -50,17 +53,24 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         try {
             String jwt = parseJwt(request);
 
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
+            Claims claims = jwt != null ? jwtUtils.parseClaims(jwt) : null;
+
+            if (claims != null) {
 
                 // 若為 2FA 暫時性 Token，不建立認證（只放行給 2FA 驗證端點使用）
-                if (jwtUtils.is2FAToken(jwt)) {
+                if (jwtUtils.is2FAToken(claims)) {
                     logger.debug("2FA temp token detected, skipping SecurityContext authentication.");
                     filterChain.doFilter(request, response);
                     return;
                 }
 
-                String email = jwtUtils.getUserEmailFromJwtToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+                UserDetails userDetails = principalCache.get(jwt);
+                if (userDetails == null) {
+                    // 查 DB 前先取世代，查詢期間若帳號異動(evictUser)，這份可能過時的資料不會放回快取
+                    long generation = principalCache.generation(claims.getSubject());
+                    userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                    principalCache.put(jwt, claims.getExpiration(), userDetails, generation);
+                }
 
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
@@ -0,0 +1,141 @@
+package com.pagerealm.security.jwt;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * AuthTokenFilter 用的已驗證使用者快取：
+ * - key 為 JWT Token 的 SHA-256 雜湊(不在記憶體中保存原始 Token)
+ * - value 為 loadUserByUsername 建出的 UserDetails，省去每個 request 一次 DB 查詢
+ * - 每筆資料的到期時間 = min(放入時間 + ttl, Token 的 exp)，Token 過期後絕不會再被命中
+ * - 以 LRU 方式限制筆數上限
+ * - 帳號狀態、角色、密碼等影響 UserDetails 的異動，需呼叫 evictUser(email) 讓快取失效
+ * - 另以 email 索引該使用者的所有 key，evictUser 只處理該使用者的資料，不掃描整個快取
+ * - 每個 email 有世代號，evictUser 時遞增；put 帶入載入前取得的世代，不符表示載入期間已被 evict，不放回快取
+ */
+@Component
+public class JwtPrincipalCache {
+
+    @Value("${spring.app.jwtPrincipalCache.ttlMs:60000}")
+    private long ttlMs;
+
+    @Value("${spring.app.jwtPrincipalCache.maxSize:10000}")
+    private int maxSize;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= maxSize) return false;
+            unindex(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+    };
+
+    // 以下兩個 Map 與 entries 共用同一把鎖
+    // email -> 該使用者在 entries 中的 key
+    private final Map<String, Set<String>> keysByUser = new HashMap<>();
+    // email -> 世代號(evictUser 次數)
+    private final Map<String, Long> generations = new HashMap<>();
+
+    private record Entry(UserDetails userDetails, long expiresAtMs) {
+    }
+
+    /**
+     * @description : 取得該 Token 對應且尚未過期的 UserDetails
+     * @param token : JWT Token
+     * @return : 命中回傳 UserDetails，未命中或已過期回傳 null
+     */
+    public UserDetails get(String token) {
+        String key = hash(token);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) return null;
+            if (entry.expiresAtMs() <= System.currentTimeMillis()) {
+                entries.remove(key);
+                unindex(key, entry);
+                return null;
+            }
+            return entry.userDetails();
+        }
+    }
+
+    /**
+     * @description : 目前世代號，載入 UserDetails 前取得並於 put 時帶入
+     * @param email : 使用者 email (即 JWT subject)
+     */
+    public long generation(String email) {
+        synchronized (entries) {
+            return generations.getOrDefault(email, 0L);
+        }
+    }
+
+    /**
+     * @description : 將已驗證的 UserDetails 放入快取
+     * @param token : JWT Token
+     * @param tokenExpiration : Token 的 exp，快取到期時間不會晚於此時間
+     * @param userDetails : 已載入的使用者資訊
+     * @param generation : 載入前由 generation(email) 取得；已變更時不放入快取
+     */
+    public void put(String token, Date tokenExpiration, UserDetails userDetails, long generation) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMs;
+        if (tokenExpiration != null) {
+            expiresAt = Math.min(expiresAt, tokenExpiration.getTime());
+        }
+        if (expiresAt <= now) return;
+
+        String key = hash(token);
+        String email = userDetails.getUsername();
+        synchronized (entries) {
+            if (generations.getOrDefault(email, 0L) != generation) return;
+            Entry old = entries.put(key, new Entry(userDetails, expiresAt));
+            if (old != null) unindex(key, old);
+            // maxSize 極小時剛放入的資料可能立即被 LRU 移除
+            if (entries.containsKey(key)) keysByUser.computeIfAbsent(email, k -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * @description : 使該使用者所有 Token 的快取失效(帳號停用、角色或密碼變更時呼叫)
+     * @param email : 使用者 email (即 UserDetails.getUsername())
+     */
+    public void evictUser(String email) {
+        if (email == null) return;
+        synchronized (entries) {
+            Set<String> keys = keysByUser.remove(email);
+            if (keys != null) {
+                for (String key : keys) entries.remove(key);
+            }
+            generations.merge(email, 1L, Long::sum);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            keysByUser.clear();
+        }
+    }
+
+    // 呼叫端持有 entries 的鎖
+    private void unindex(String key, Entry entry) {
+        String email = entry.userDetails().getUsername();
+        Set<String> keys = keysByUser.get(email);
+        if (keys == null) return;
+        keys.remove(key);
+        if (keys.isEmpty()) keysByUser.remove(email);
+    }
+
+    private String hash(String token) {
+        return DigestUtils.sha256Hex(token);
+    }
+}
@@ -1,12 +1,16 @@
 package com.pagerealm.security.jwt;
 
 import com.pagerealm.security.service.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +33,16 @@ public class JwtUtils {
     @Value("${spring.app.jwtExpirationMs}")
     private int jwtExpirationMs;
 
+    //密鑰與parser皆為thread-safe且不可變，啟動時建立一次即可，避免每次驗證都重新Base64解碼與建構
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        this.jwtParser = Jwts.parser().verifyWith(signingKey).build();
+    }
+
     /**
      * @description : 從Request Header中取得"Authorization"(key)的value，
      * 並移除前綴(Bearer )
@@ -76,49 +90,53 @@ public class JwtUtils {
      * @return : Email
      */
     public String getUserEmailFromJwtToken(String token){
-        return Jwts.parser()
-                .verifyWith((SecretKey) key())
-                .build()
-                .parseSignedClaims(token)
+        return jwtParser.parseSignedClaims(token)
                 .getPayload()
                 .getSubject();
     }
 
     /**
      * @description : 產生 JWT 簽名與驗證所需要的HMAC-SHA密鑰
-     * 會將組態檔中的Base64密鑰(jwtSecret)解碼，
-     * 並轉換為java的Key物件 供JWT建立與驗證時使用
+     * 密鑰於啟動時(init)由組態檔中的Base64密鑰(jwtSecret)解碼建立一次，
+     * 供JWT建立與驗證時使用
      * @return : 用於 JWT 簽名與驗證的 SecretKey物件
      */
     private Key key(){
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        return signingKey;
     }
 
     /**
-     * @description : 解析並驗證JWT Token的claims
-     * @param authToken : 要被驗證的JWT Token
-     * @return : 驗證成功true，失敗false
-     * @Note : 此方法不會拋出例外，僅會在logger記錄並回傳false
+     * @description : 只做一次簽章驗證，解析並回傳JWT Token的claims，
+     * 供filter在同一個request中重複使用(sub、exp、2fa等)，取代validate/is2FA/getEmail各自重新解析
+     * @param jwtToken : 要被驗證的JWT Token
+     * @return : 驗證成功回傳claims，失敗回傳null
+     * @Note : 此方法不會拋出例外，僅會在logger記錄並回傳null
      */
-    public boolean validateJwtToken(String jwtToken){
+    public Claims parseClaims(String jwtToken){
         try{
-            System.out.println("Validate");
-
-            Jwts.parser()
-                    .verifyWith((SecretKey) key())
-                    .build()
-                    .parseSignedClaims(jwtToken);
-            return true;
+            return jwtParser.parseSignedClaims(jwtToken).getPayload();
         } catch (MalformedJwtException e){
             logger.error("Invalid JWT token: {}",e.getMessage());
         }catch (ExpiredJwtException e){
             logger.error("JWT token is expired: {}",e.getMessage());
         }catch (UnsupportedJwtException e){
             logger.error("JWT token is unsupported: {}", e.getMessage());
+        }catch (SignatureException e){
+            logger.error("Invalid JWT signature: {}", e.getMessage());
         }catch (IllegalArgumentException e){
             logger.error("JWT claims string is empty: {}",e.getMessage());
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * @description : 解析並驗證JWT Token的claims
+     * @param authToken : 要被驗證的JWT Token
+     * @return : 驗證成功true，失敗false
+     * @Note : 此方法不會拋出例外，僅會在logger記錄並回傳false
+     */
+    public boolean validateJwtToken(String jwtToken){
+        return parseClaims(jwtToken) != null;
     }
 
 
@@ -147,17 +165,21 @@ public class JwtUtils {
      */
     public boolean is2FAToken(String token) {
         try {
-            var claims = Jwts.parser()
-                    .verifyWith((SecretKey) key())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
-            Boolean is2fa = claims.get("2fa", Boolean.class);
-            String purpose = claims.get("purpose", String.class);
-            return Boolean.TRUE.equals(is2fa) && "login_2fa".equals(purpose);
+            return is2FAToken(jwtParser.parseSignedClaims(token).getPayload());
         } catch (Exception e) {
             return false;
         }
     }
 
+    /**
+     * for二階段認證：直接判斷已解析的claims，不再重新驗證簽章
+     * @param claims
+     * @return
+     */
+    public boolean is2FAToken(Claims claims) {
+        Boolean is2fa = claims.get("2fa", Boolean.class);
+        String purpose = claims.get("purpose", String.class);
+        return Boolean.TRUE.equals(is2fa) && "login_2fa".equals(purpose);
+    }
+
 }
@@ -1,5 +1,9 @@
 package com.pagerealm.service;
 
+import com.pagerealm.dto.response.SupportMessagePageResponse;
+import com.pagerealm.dto.response.SupportTicketOverviewPageResponse;
+import com.pagerealm.dto.response.SupportTicketPageResponse;
+import com.pagerealm.entity.AppTicketCategory;
 import com.pagerealm.entity.AppTicketStatus;
 import com.pagerealm.entity.SupportMessage;
 import com.pagerealm.entity.SupportTicket;
@@ -12,18 +16,23 @@ public interface SupportService {
 
     List<SupportTicket> listTicketsByUser(Long userId);
 
-    List<SupportTicket> listTicketsWithMessagesByUser(Long userId);
+    SupportTicketOverviewPageResponse ticketOverview(Long userId, String cursor, Integer size);
 
     Optional<SupportTicket> findUserTicket(Long userId, Long ticketId);
 
     SupportMessage addUserMessage(Long userId, Long ticketId, String content);
 
+    SupportMessagePageResponse listMessages(Long ticketId, String before, Integer size);
+
     // Admin side
-    List<SupportTicket> adminListTickets(AppTicketStatus status);
+    SupportTicketPageResponse adminSearchTickets(AppTicketStatus status, AppTicketCategory category, boolean unassigned,
+                                                 String cursor, Integer size);
 
     Optional<SupportTicket> adminFindTicket(Long ticketId);
 
     SupportMessage adminReply(Long adminUserId, Long ticketId, String content, AppTicketStatus nextStatus);
 
     SupportTicket updateStatus(Long ticketId, AppTicketStatus status);
+
+    SupportTicket assignTicket(Long ticketId, Long adminUserId);
 }
@@ -1,20 +1,27 @@
 package com.pagerealm.service;
 
 import com.pagerealm.dto.UserDTO;
+import com.pagerealm.dto.request.AdminUserSearchRequest;
 import com.pagerealm.dto.request.EmailVerifyRequest;
+import com.pagerealm.dto.response.AdminUserPageResponse;
+import com.pagerealm.entity.AppRole;
 import com.pagerealm.entity.Role;
 import com.pagerealm.entity.User;
 import com.warrenstrange.googleauth.GoogleAuthenticatorKey;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
 public interface UserService {
 
-    List<User> getAllUsers();
+    AdminUserPageResponse searchUsers(AdminUserSearchRequest request);
+
+    void exportUsersCsv(AdminUserSearchRequest request, Writer writer) throws IOException;
 
     UserDTO getUserById(Long id);
 
@@ -27,6 +34,8 @@ public interface UserService {
 
     void updateAccountEnabledStatus(Long userId, boolean enabled);
 
+    void updateRole(Long userId, AppRole appRole);
+
     void updatePassword(Long userId, String password, String checkPassword);
 
     List<Role> getAllRoles();
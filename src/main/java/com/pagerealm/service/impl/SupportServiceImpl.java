@@ -1,28 +1,64 @@
 package com.pagerealm.service.impl;
 
+import com.pagerealm.dto.response.SupportMessageDTO;
+import com.pagerealm.dto.response.SupportMessagePageResponse;
+import com.pagerealm.dto.response.SupportTicketOverviewDTO;
+import com.pagerealm.dto.response.SupportTicketOverviewPageResponse;
+import com.pagerealm.dto.response.SupportTicketPageResponse;
+import com.pagerealm.dto.response.SupportTicketSummaryDTO;
 import com.pagerealm.entity.*;
 import com.pagerealm.repository.SupportMessageRepository;
 import com.pagerealm.repository.SupportTicketRepository;
 import com.pagerealm.repository.UserRepository;
 import com.pagerealm.service.SupportService;
+import com.pagerealm.utils.KeysetCursor;
+import com.pagerealm.utils.SupportEventBus;
+import com.pagerealm.utils.SupportSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class SupportServiceImpl implements SupportService {
 
+    private static final Logger logger = LoggerFactory.getLogger(SupportServiceImpl.class);
+    private static final int BACKFILL_CHUNK_SIZE = 1000;
+
     private final SupportTicketRepository ticketRepo;
     private final SupportMessageRepository msgRepo;
     private final UserRepository userRepo;
+    private final SupportEventBus eventBus;
+    private final SupportSearchIndex searchIndex;
 
-    public SupportServiceImpl(SupportTicketRepository ticketRepo, SupportMessageRepository msgRepo, UserRepository userRepo) {
+    public SupportServiceImpl(SupportTicketRepository ticketRepo, SupportMessageRepository msgRepo, UserRepository userRepo,
+                              SupportEventBus eventBus, SupportSearchIndex searchIndex) {
         this.ticketRepo = ticketRepo;
         this.msgRepo = msgRepo;
         this.userRepo = userRepo;
+        this.eventBus = eventBus;
+        this.searchIndex = searchIndex;
+    }
+
+    // 舊工單的 message_count 為 NULL：啟動後分段回填(只需執行一次，之後由新增訊息時遞增維護)
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillMessageCounts() {
+        long total = 0;
+        int updated;
+        do {
+            updated = ticketRepo.backfillMessageCounts(BACKFILL_CHUNK_SIZE);
+            total += updated;
+        } while (updated >= BACKFILL_CHUNK_SIZE);
+        if (total > 0) logger.info("Backfilled message_count for {} support tickets", total);
     }
 
     @Override
@@ -43,6 +79,7 @@ public class SupportServiceImpl implements SupportService {
         t.setCreatedAt(now);
         t.setUpdatedAt(now);
         t.setLastMessageAt(now);
+        t.setMessageCount(1);
         t = ticketRepo.save(t);
 
         SupportMessage m = new SupportMessage();
@@ -53,11 +90,12 @@ public class SupportServiceImpl implements SupportService {
         m.setCreatedAt(LocalDateTime.now());
         msgRepo.save(m);
 
-        // 加入至工單訊息串，讓本交易回傳詳情時可見
-        t.getMessages().add(m);
         t.setLastMessageAt(m.getCreatedAt());
         t.setUpdatedAt(LocalDateTime.now());
-        return ticketRepo.save(t);
+        t = ticketRepo.save(t);
+        searchIndex.indexAfterCommit(t, m);
+        eventBus.publishAfterCommit(SupportEventBus.MESSAGE, t, m);
+        return t;
     }
 
     @Override
@@ -84,6 +122,7 @@ public class SupportServiceImpl implements SupportService {
         m.setSenderUserId(userId);
         m.setCreatedAt(LocalDateTime.now());
         msgRepo.save(m);
+        ticketRepo.incrementMessageCount(ticketId);
 
         // 若工單是 RESOLVED，再次留言轉回 IN_PROGRESS
         if (t.getStatus() == AppTicketStatus.RESOLVED) {
@@ -92,14 +131,56 @@ public class SupportServiceImpl implements SupportService {
         t.setLastMessageAt(m.getCreatedAt());
         t.setUpdatedAt(LocalDateTime.now());
         ticketRepo.save(t);
+        searchIndex.indexAfterCommit(t, m);
+        eventBus.publishAfterCommit(SupportEventBus.MESSAGE, t, m);
         return m;
     }
 
+    private static final int THREAD_PAGE_DEFAULT_SIZE = 30;
+    private static final int THREAD_PAGE_MAX_SIZE = 100;
+
+    /**
+     * @description : 訊息串 keyset 分頁：before 為 null 時取最新一頁，否則取比游標更早的一頁；回傳依時間由舊到新
+     * @param before : 上一頁回傳的 olderCursor(<ISO-8601 createdAt>_<id>)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public SupportMessagePageResponse listMessages(Long ticketId, String before, Integer size) {
+        int limit = size == null ? THREAD_PAGE_DEFAULT_SIZE : Math.max(1, Math.min(size, THREAD_PAGE_MAX_SIZE));
+        PageRequest window = PageRequest.of(0, limit + 1);
+        KeysetCursor c = KeysetCursor.parse(before);
+        List<SupportMessageDTO> rows = c == null
+                ? msgRepo.findLatestPage(ticketId, window)
+                : msgRepo.findPageBefore(ticketId, c.requireAt(), c.id(), window);
+        boolean hasOlder = rows.size() > limit;
+        List<SupportMessageDTO> page = new ArrayList<>(hasOlder ? rows.subList(0, limit) : rows);
+        SupportMessageDTO oldest = hasOlder ? page.get(page.size() - 1) : null;
+        Collections.reverse(page);
+        return new SupportMessagePageResponse(page, hasOlder, oldest == null ? null : KeysetCursor.format(oldest.getCreatedAt(), oldest.getId()));
+    }
+
     // Admin
+    private static final int ADMIN_INBOX_DEFAULT_SIZE = 50;
+    private static final int ADMIN_INBOX_MAX_SIZE = 200;
+
+    /**
+     * @description : 後台收件匣 keyset 分頁(updatedAt、id 新到舊)，只讀摘要欄位，深頁不變慢也不做 COUNT
+     * @param unassigned : true 時只列出尚未指派的工單(待領取佇列)
+     * @param cursor : 上一頁回傳的 nextCursor，第一頁傳 null
+     */
     @Override
-    public List<SupportTicket> adminListTickets(AppTicketStatus status) {
-        if (status != null) return ticketRepo.findByStatusOrderByUpdatedAtDesc(status);
-        return ticketRepo.findAllByOrderByUpdatedAtDesc();
+    @Transactional(readOnly = true)
+    public SupportTicketPageResponse adminSearchTickets(AppTicketStatus status, AppTicketCategory category, boolean unassigned,
+                                                        String cursor, Integer size) {
+        int limit = size == null ? ADMIN_INBOX_DEFAULT_SIZE : Math.max(1, Math.min(size, ADMIN_INBOX_MAX_SIZE));
+        KeysetCursor c = KeysetCursor.parse(cursor);
+        List<SupportTicketSummaryDTO> rows = ticketRepo.searchSummaries(status, category, unassigned,
+                c == null ? null : c.requireAt(), c == null ? null : c.id(), PageRequest.of(0, limit + 1));
+        boolean hasNext = rows.size() > limit;
+        List<SupportTicketSummaryDTO> items = hasNext ? rows.subList(0, limit) : rows;
+        SupportTicketSummaryDTO last = hasNext ? items.get(items.size() - 1) : null;
+        // 游標格式：<ISO-8601 updatedAt>_<id>
+        return new SupportTicketPageResponse(items, hasNext, last == null ? null : KeysetCursor.format(last.getUpdatedAt(), last.getId()));
     }
 
     @Override
@@ -118,7 +199,12 @@ public class SupportServiceImpl implements SupportService {
         m.setSenderUserId(adminUserId);
         m.setCreatedAt(LocalDateTime.now());
         msgRepo.save(m);
+        ticketRepo.incrementMessageCount(ticketId);
 
+        // 尚未指派時由首位回覆的客服接手
+        if (t.getAssigneeUserId() == null) {
+            t.setAssigneeUserId(adminUserId);
+        }
         // 預設：首次回覆或狀態為 OPEN -> IN_PROGRESS
         if (nextStatus != null) {
             t.setStatus(nextStatus);
@@ -128,6 +214,8 @@ public class SupportServiceImpl implements SupportService {
         t.setLastMessageAt(m.getCreatedAt());
         t.setUpdatedAt(LocalDateTime.now());
         ticketRepo.save(t);
+        searchIndex.indexAfterCommit(t, m);
+        eventBus.publishAfterCommit(SupportEventBus.MESSAGE, t, m);
         return m;
     }
 
@@ -137,11 +225,53 @@ public class SupportServiceImpl implements SupportService {
         SupportTicket t = ticketRepo.findById(ticketId).orElseThrow(() -> new RuntimeException("Ticket not found"));
         t.setStatus(status);
         t.setUpdatedAt(LocalDateTime.now());
-        return ticketRepo.save(t);
+        t = ticketRepo.save(t);
+        searchIndex.indexAfterCommit(t, null);
+        eventBus.publishAfterCommit(SupportEventBus.STATUS, t, null);
+        return t;
     }
 
     @Override
-    public List<SupportTicket> listTicketsWithMessagesByUser(Long userId) {
-        return ticketRepo.findAllWithMessagesByUserId(userId);
+    @Transactional
+    public SupportTicket assignTicket(Long ticketId, Long adminUserId) {
+        SupportTicket t = ticketRepo.findById(ticketId).orElseThrow(() -> new RuntimeException("Ticket not found"));
+        t.setAssigneeUserId(adminUserId);
+        t.setUpdatedAt(LocalDateTime.now());
+        t = ticketRepo.save(t);
+        searchIndex.indexAfterCommit(t, null);
+        eventBus.publishAfterCommit(SupportEventBus.STATUS, t, null);
+        return t;
+    }
+
+    private static final int OVERVIEW_DEFAULT_SIZE = 20;
+    private static final int OVERVIEW_MAX_SIZE = 100;
+
+    /**
+     * @description : 會員工單總覽 keyset 分頁(updatedAt、id 新到舊)，每筆含訊息數與最後一則訊息預覽
+     * @param cursor : 上一頁回傳的 nextCursor，第一頁傳 null
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public SupportTicketOverviewPageResponse ticketOverview(Long userId, String cursor, Integer size) {
+        int limit = size == null ? OVERVIEW_DEFAULT_SIZE : Math.max(1, Math.min(size, OVERVIEW_MAX_SIZE));
+        KeysetCursor c = KeysetCursor.parse(cursor);
+        List<SupportTicketRepository.OverviewRow> rows = ticketRepo.findOverviewPage(userId,
+                c == null ? null : c.requireAt(), c == null ? null : c.id(), limit + 1);
+        boolean hasNext = rows.size() > limit;
+        List<SupportTicketOverviewDTO> items = (hasNext ? rows.subList(0, limit) : rows).stream()
+                .map(r -> new SupportTicketOverviewDTO(
+                        r.getId(),
+                        r.getSubject(),
+                        AppTicketCategory.valueOf(r.getCategory()),
+                        AppTicketStatus.valueOf(r.getStatus()),
+                        r.getCreatedAt(),
+                        r.getUpdatedAt(),
+                        r.getLastMessageAt(),
+                        r.getMessageCount() == null ? 0L : r.getMessageCount(),
+                        r.getLastSender() == null ? null : AppSenderType.valueOf(r.getLastSender()),
+                        r.getLastPreview()))
+                .toList();
+        SupportTicketOverviewDTO last = hasNext ? items.get(items.size() - 1) : null;
+        return new SupportTicketOverviewPageResponse(items, hasNext, last == null ? null : KeysetCursor.format(last.getUpdatedAt(), last.getId()));
     }
 }
@@ -1,7 +1,11 @@
 package com.pagerealm.service.impl;
 
 import com.pagerealm.dto.UserDTO;
+import com.pagerealm.dto.request.AdminUserSearchRequest;
 import com.pagerealm.dto.request.EmailVerifyRequest;
+import com.pagerealm.dto.response.AdminUserPageResponse;
+import com.pagerealm.dto.response.AdminUserSummaryDTO;
+import com.pagerealm.entity.AppRole;
 import com.pagerealm.entity.PasswordResetToken;
 import com.pagerealm.entity.Role;
 import com.pagerealm.entity.User;
@@ -9,20 +13,24 @@ import com.pagerealm.repository.PasswordResetTokenRepository;
 import com.pagerealm.repository.RoleRepository;
 import com.pagerealm.repository.UserRepository;
 import com.pagerealm.s3.S3Buckets;
+import com.pagerealm.s3.ImageDerivativeService;
 import com.pagerealm.s3.S3Service;
+import com.pagerealm.security.jwt.JwtPrincipalCache;
 import com.pagerealm.service.TotpService;
 import com.pagerealm.service.UserService;
+import com.pagerealm.utils.CsvUtils;
 import com.pagerealm.utils.EmailService;
 import com.warrenstrange.googleauth.GoogleAuthenticatorKey;
-import jakarta.mail.MessagingException;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -53,8 +61,11 @@ public class UserServiceImpl implements UserService {
     // S3
     private final S3Service s3Service;
     private final S3Buckets s3Buckets;
+    private final ImageDerivativeService imageDerivativeService;
+    // JWT filter 的使用者快取：UserDetails 相關欄位異動時需失效
+    private final JwtPrincipalCache principalCache;
 
-    public UserServiceImpl(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder, PasswordResetTokenRepository passwordResetTokenRepository, EmailService emailService, TotpService totpService, S3Service s3Service, S3Buckets s3Buckets) {
+    public UserServiceImpl(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder, PasswordResetTokenRepository passwordResetTokenRepository, EmailService emailService, TotpService totpService, S3Service s3Service, S3Buckets s3Buckets, ImageDerivativeService imageDerivativeService, JwtPrincipalCache principalCache) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.passwordEncoder = passwordEncoder;
@@ -63,14 +74,54 @@ public class UserServiceImpl implements UserService {
         this.totpService = totpService;
         this.s3Service = s3Service;
         this.s3Buckets = s3Buckets;
+        this.imageDerivativeService = imageDerivativeService;
+        this.principalCache = principalCache;
     }
 
     //----------------------------------------
 
+    private static final int ADMIN_SEARCH_DEFAULT_SIZE = 50;
+    private static final int ADMIN_SEARCH_MAX_SIZE = 200;
+    private static final int CSV_EXPORT_BATCH_SIZE = 1000;
+
+    @Override
+    @Transactional(readOnly = true)
+    public AdminUserPageResponse searchUsers(AdminUserSearchRequest request) {
+        int size = request.getSize() == null ? ADMIN_SEARCH_DEFAULT_SIZE
+                : Math.max(1, Math.min(request.getSize(), ADMIN_SEARCH_MAX_SIZE));
+        List<AdminUserSummaryDTO> rows = fetchSummaries(request, request.getAfter(), size + 1);
+        boolean hasNext = rows.size() > size;
+        List<AdminUserSummaryDTO> items = hasNext ? rows.subList(0, size) : rows;
+        Long nextCursor = hasNext ? items.get(items.size() - 1).getUserId() : null;
+        return new AdminUserPageResponse(items, hasNext, nextCursor);
+    }
+
+    // 以 keyset 分批讀取並逐批寫出，記憶體只保留一批資料；每批各自查詢，不佔用長交易
     @Override
-    public List<User> getAllUsers() {
+    public void exportUsersCsv(AdminUserSearchRequest request, Writer writer) throws IOException {
+        writer.write("userId,userName,email,enabled,membershipTier,role,signedMethod,totpEnabled,createdDate\n");
+        Long after = request.getAfter();
+        while (true) {
+            List<AdminUserSummaryDTO> batch = fetchSummaries(request, after, CSV_EXPORT_BATCH_SIZE);
+            for (AdminUserSummaryDTO u : batch) {
+                writer.write(u.getUserId() + "," + CsvUtils.field(u.getUserName()) + "," + CsvUtils.field(u.getEmail()) + ","
+                        + u.isEnabled() + "," + (u.getMembershipTier() == null ? "" : u.getMembershipTier().name()) + ","
+                        + (u.getRoleName() == null ? "" : u.getRoleName().name()) + "," + CsvUtils.field(u.getSignedMethod()) + ","
+                        + u.isTotpEnabled() + "," + (u.getCreatedDate() == null ? "" : u.getCreatedDate()) + "\n");
+            }
+            writer.flush();
+            if (batch.size() < CSV_EXPORT_BATCH_SIZE) break;
+            after = batch.get(batch.size() - 1).getUserId();
+        }
+    }
 
-        return userRepository.findAll();
+    private List<AdminUserSummaryDTO> fetchSummaries(AdminUserSearchRequest request, Long after, int limit) {
+        String email = request.getEmail();
+        String emailPrefix = (email == null || email.isBlank()) ? null
+                : email.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        String signedMethod = (request.getSignedMethod() == null || request.getSignedMethod().isBlank()) ? null : request.getSignedMethod();
+        return userRepository.searchSummaries(after == null ? 0L : after, emailPrefix, request.getTier(),
+                request.getEnabled(), request.getRole(), signedMethod, PageRequest.of(0, limit));
     }
 
     @Override
@@ -94,6 +145,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public void deleteByEmail(String email) {
         userRepository.deleteByEmail(email);
+        principalCache.evictUser(email);
     }
 
     // Mapping User to UserDTO
@@ -130,6 +182,17 @@ public class UserServiceImpl implements UserService {
         User user = userRepository.findById(userId).orElseThrow(() -> new RuntimeException("User not found"));
         user.setEnabled(enabled);
         userRepository.save(user);
+        principalCache.evictUser(user.getEmail());
+    }
+
+    @Override
+    public void updateRole(Long userId, AppRole appRole) {
+        User user = userRepository.findById(userId).orElseThrow(() -> new RuntimeException("User not found"));
+        Role role = roleRepository.findByRoleName(appRole)
+                .orElseThrow(() -> new RuntimeException("Error: Role not found"));
+        user.setRole(role);
+        userRepository.save(user);
+        principalCache.evictUser(user.getEmail());
     }
 
     @Override
@@ -151,7 +214,7 @@ public class UserServiceImpl implements UserService {
         // https://www.example.com/reset-password?token=123e4567-e89b-12d3-a456-4283
         String resetUrl = frontendUrl + "/reset-password?token=" + token;
 
-        emailService.sendPasswordResetEmail(user.getEmail(), resetUrl);
+        emailService.sendPasswordResetEmail(user.getEmail(), resetUrl, EmailService.requestLocale());
     }
 
     @Override
@@ -171,6 +234,7 @@ public class UserServiceImpl implements UserService {
 
             user.setPassword(passwordEncoder.encode(newPassword));
             userRepository.save(user);
+            principalCache.evictUser(user.getEmail());
 
             resetToken.setUsed(true);
             passwordResetTokenRepository.save(resetToken);
@@ -183,26 +247,8 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public void buildAndSendVerificationEmail(String rawCode, String email) {
-        String subject = "Page Realm 註冊驗證碼";
-        String verificationCode = rawCode;
-        String htmlMessage = "<html>"
-                + "<body style=\"font-family: Arial, sans-serif;\">"
-                + "<div style=\"background-color: #f5f5f5; padding: 20px;\">"
-                + "<h2 style=\"color: #333;\">Welcome to Page Realm!</h2>"
-                + "<p style=\"font-size: 16px;\">請輸入下方驗證碼以完成註冊:</p>"
-                + "<div style=\"background-color: #fff; padding: 20px; border-radius: 5px; box-shadow: 0 0 10px rgba(0,0,0,0.1);\">"
-                + "<h3 style=\"color: #333;\">Verification Code:</h3>"
-                + "<p style=\"font-size: 18px; font-weight: bold; color: #007bff;\">" + verificationCode + "</p>"
-                + "</div>"
-                + "</div>"
-                + "</body>"
-                + "</html>";
-        try {
-            emailService.sendVerificationEmail(email, subject, htmlMessage);
-        } catch (MessagingException e) {
-            //for debug
-            e.printStackTrace();
-        }
+        // 內容由預編譯範本 mail-templates/verification(.html / _en.html) 產生；寫入 outbox 後立即返回
+        emailService.sendVerificationEmail(email, rawCode, EmailService.requestLocale());
     }
 
     @Override
@@ -301,6 +347,7 @@ public class UserServiceImpl implements UserService {
         User user = userRepository.findById(userId).orElseThrow(() -> new RuntimeException("User not found"));
         user.setTotpEnabled(true);
         userRepository.save(user);
+        principalCache.evictUser(user.getEmail());
     }
 
     @Override
@@ -308,6 +355,7 @@ public class UserServiceImpl implements UserService {
         User user = userRepository.findById(userId).orElseThrow(() -> new RuntimeException("User not found"));
         user.setTotpEnabled(false);
         userRepository.save(user);
+        principalCache.evictUser(user.getEmail());
     }
 
     //User Controller
@@ -324,6 +372,7 @@ public class UserServiceImpl implements UserService {
         }
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
+        principalCache.evictUser(user.getEmail());
     }
 
     @Override
@@ -348,6 +397,7 @@ public class UserServiceImpl implements UserService {
 
         user.setUserName(username);
         userRepository.save(user);
+        principalCache.evictUser(user.getEmail());
     }
 
     public String uploadAvatar(Long userId, MultipartFile file){
@@ -370,13 +420,11 @@ public class UserServiceImpl implements UserService {
 
         // 以 email 產生安全檔名
         String safeEmail = user.getEmail().toLowerCase().replaceAll("[^a-z0-9]", "_");
-        String key = "avatars/" + safeEmail + "_avatar." + ext;
+        String key = ImageDerivativeService.originalKey("avatars/" + safeEmail, ext);
 
         try {
-            byte[] bytes = file.getBytes();
-
-            // 上傳到 S3 並設為公開讀取
-            s3Service.putObjectWithContentType(s3Buckets.getUser(), key, bytes, contentType);
+            // 串流上傳原檔到 S3，並產生 thumb/list/detail 衍生檔
+            imageDerivativeService.storeWithVariants(s3Buckets.getUser(), key, file, contentType, ImageDerivativeService.Kind.AVATAR);
 
             // 建立公開 URL
             String url = s3Service.buildPublicUrl(s3Buckets.getUser(), key);
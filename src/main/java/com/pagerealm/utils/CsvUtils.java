@@ -0,0 +1,21 @@
+package com.pagerealm.utils;
+
+/**
+ * CSV 匯出共用工具(會員清單、管理員操作紀錄)
+ */
+public final class CsvUtils {
+
+    private CsvUtils() {
+    }
+
+    // CSV 欄位跳脫：含逗號、引號或換行時以雙引號包住；開頭為公式字元時加上單引號避免試算表執行
+    public static String field(String value) {
+        if (value == null) return "";
+        String v = value;
+        if (!v.isEmpty() && "=+-@".indexOf(v.charAt(0)) >= 0) v = "'" + v;
+        if (v.contains(",") || v.contains("\"") || v.contains("\n") || v.contains("\r")) {
+            v = "\"" + v.replace("\"", "\"\"") + "\"";
+        }
+        return v;
+    }
+}
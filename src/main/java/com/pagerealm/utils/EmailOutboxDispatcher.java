@@ -0,0 +1,219 @@
+package com.pagerealm.utils;
+
+import com.pagerealm.entity.EmailOutbox;
+import com.pagerealm.repository.EmailOutboxRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * email_outbox 的背景寄送器：
+ * - 每輪領取最多 batch-size 封到期信件，以一次 JavaMailSender.send(MimeMessage...) 寄出，整批共用同一條 SMTP 連線
+ * - 單封失敗只影響該封：依 backoff-base-ms * 2^(attempts-1) 延後重試(上限 backoff-max-ms)，超過 max-attempts 標記 FAILED
+ * - 以 rate-per-second 限制寄送速率，避免觸發 SMTP 服務商的流量限制
+ * - 有新信件入列時由 wakeUp() 喚醒，否則每 poll-ms 檢查一次(含其他節點入列與重試到期的信件)
+ * - 寄出或標記 FAILED 時清空內文；超過 retention-days 的 SENT/FAILED 列定期刪除
+ */
+@Component
+public class EmailOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+    private static final int PURGE_BATCH_SIZE = 500;
+
+    private final EmailOutboxRepository outboxRepository;
+    private final JavaMailSender mailSender;
+
+    @Value("${email.outbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${email.outbox.poll-ms:5000}")
+    private long pollMs;
+
+    @Value("${email.outbox.rate-per-second:5}")
+    private double ratePerSecond;
+
+    @Value("${email.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${email.outbox.backoff-base-ms:30000}")
+    private long backoffBaseMs;
+
+    @Value("${email.outbox.backoff-max-ms:3600000}")
+    private long backoffMaxMs;
+
+    // 領取後的租約：寄送中當機的信件在租約到期後由任一節點重新領取
+    @Value("${email.outbox.lease-ms:300000}")
+    private long leaseMs;
+
+    @Value("${email.outbox.retention-days:30}")
+    private int retentionDays;
+
+    private final Semaphore signal = new Semaphore(0);
+    private Thread worker;
+    private volatile boolean stopping;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository outboxRepository, JavaMailSender mailSender) {
+        this.outboxRepository = outboxRepository;
+        this.mailSender = mailSender;
+    }
+
+    // 等資料表建立(ddl-auto)與應用程式就緒後才開始寄送
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        worker = new Thread(this::dispatchLoop, "email-outbox-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        stopping = true;
+        signal.release();
+        if (worker != null) worker.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    // 有新信件入列：提早喚醒，不必等到下一次輪詢
+    public void wakeUp() {
+        if (signal.availablePermits() == 0) signal.release();
+    }
+
+    private void dispatchLoop() {
+        while (!stopping) {
+            int handled = 0;
+            try {
+                handled = dispatchOnce();
+            } catch (Exception e) {
+                logger.warn("Email outbox dispatch failed: {}", e.toString());
+            }
+            if (handled < batchSize) {
+                try {
+                    signal.tryAcquire(pollMs, TimeUnit.MILLISECONDS);
+                    signal.drainPermits();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // 領取一批到期信件並寄出，回傳處理筆數
+    int dispatchOnce() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> dueIds = outboxRepository.findDueIds(now, PageRequest.of(0, batchSize));
+        if (dueIds.isEmpty()) return 0;
+
+        String token = UUID.randomUUID().toString();
+        if (outboxRepository.claim(dueIds, token, now, now.plusNanos(leaseMs * 1_000_000L)) == 0) return 0;
+        List<EmailOutbox> batch = outboxRepository.findAllByClaimTokenOrderByIdAsc(token);
+
+        long started = System.nanoTime();
+        Map<MimeMessage, EmailOutbox> messages = new IdentityHashMap<>();
+        for (EmailOutbox mail : batch) {
+            try {
+                messages.put(toMimeMessage(mail), mail);
+            } catch (MessagingException | RuntimeException e) {
+                recordFailure(mail, e);
+            }
+        }
+
+        List<Long> sentIds = new ArrayList<>(messages.size());
+        if (!messages.isEmpty()) {
+            try {
+                mailSender.send(messages.keySet().toArray(MimeMessage[]::new));
+                messages.values().forEach(m -> sentIds.add(m.getId()));
+            } catch (MailSendException e) {
+                // 部分失敗：getFailedMessages 的 key 為寄送失敗的 MimeMessage
+                Map<Object, Exception> failed = e.getFailedMessages();
+                messages.forEach((message, mail) -> {
+                    Exception cause = failed.get(message);
+                    if (cause == null && !failed.isEmpty()) sentIds.add(mail.getId());
+                    else recordFailure(mail, cause != null ? cause : e);
+                });
+            } catch (MailException e) {
+                // 連線/認證失敗：整批重試
+                messages.values().forEach(mail -> recordFailure(mail, e));
+            }
+        }
+        if (!sentIds.isEmpty()) outboxRepository.markSent(sentIds, LocalDateTime.now());
+
+        throttle(batch.size(), started);
+        return batch.size();
+    }
+
+    /**
+     * @description : 刪除超過保留期限的 SENT/FAILED 信件(每批 500 筆)
+     * @return : 刪除筆數
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.purge-interval-ms:3600000}", initialDelayString = "${email.outbox.purge-interval-ms:3600000}")
+    public int purge() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        int deleted = 0;
+        while (true) {
+            List<Long> ids = outboxRepository.findPurgeableIds(cutoff, PageRequest.of(0, PURGE_BATCH_SIZE));
+            if (ids.isEmpty()) break;
+            deleted += outboxRepository.deleteAllByIdIn(ids);
+            if (ids.size() < PURGE_BATCH_SIZE) break;
+        }
+        if (deleted > 0) logger.info("Email outbox purged {} rows older than {} days", deleted, retentionDays);
+        return deleted;
+    }
+
+    private MimeMessage toMimeMessage(EmailOutbox mail) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, mail.isHtml(), "UTF-8");
+        helper.setTo(mail.getRecipient());
+        helper.setSubject(mail.getSubject());
+        helper.setText(mail.getBody(), mail.isHtml());
+        return message;
+    }
+
+    private void recordFailure(EmailOutbox mail, Exception e) {
+        int attempt = mail.getAttempts() + 1;
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (error.length() > 500) error = error.substring(0, 500);
+        if (attempt >= maxAttempts) {
+            logger.warn("Email {} to {} failed permanently after {} attempts: {}", mail.getId(), mail.getRecipient(), attempt, error);
+            outboxRepository.markFailedAttempt(mail.getId(), EmailOutbox.Status.FAILED, LocalDateTime.now(), error);
+            return;
+        }
+        long delay = Math.min(backoffMaxMs, backoffBaseMs << Math.min(attempt - 1, 20));
+        outboxRepository.markFailedAttempt(mail.getId(), EmailOutbox.Status.PENDING,
+                LocalDateTime.now().plusNanos(delay * 1_000_000L), error);
+    }
+
+    // 寄出 n 封至少要花 n / rate 秒
+    private void throttle(int sent, long startedNanos) {
+        if (ratePerSecond <= 0) return;
+        long minNanos = (long) (sent / ratePerSecond * 1_000_000_000L);
+        long remaining = minNanos - (System.nanoTime() - startedNanos);
+        if (remaining > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,31 +1,39 @@
 package com.pagerealm.utils;
 
-import com.pagerealm.entity.User;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import com.pagerealm.entity.EmailOutbox;
+import com.pagerealm.repository.EmailOutboxRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
-import java.time.LocalDateTime;
-import java.util.Optional;
-import java.util.Random;
+import java.util.Locale;
+import java.util.Map;
 
 /**
- * SimpleMailMessage：
- *  - 用於發送「純文字」郵件，不能帶附件、不能發送 HTML 格式內容。適合簡單通知信。
- *
- * MimeMessageHelper：
- *  - 用於建立 MimeMessage，可發送「HTML 格式」郵件、帶附件、多媒體內容等。功能較強大，適合需要格式化內容或附檔的郵件。
+ * 寄信入口：只把信件寫入 email_outbox 即返回，不在 request thread 上連線 SMTP
+ * 實際寄送、重試與限速由 EmailOutboxDispatcher 負責
+ * 信件內容由 EmailTemplateEngine 的預編譯範本產生(resources/mail-templates)，語系由呼叫端明確傳入
+ * (不使用 JVM 預設語系；無偏好時為繁體中文)
  */
 @Service
 public class EmailService {
 
-    private JavaMailSender mailSender;
+    public static final Locale DEFAULT_LOCALE = Locale.TRADITIONAL_CHINESE;
 
-    public EmailService(JavaMailSender mailSender) {
-        this.mailSender = mailSender;
+    private final EmailOutboxRepository outboxRepository;
+    private final EmailOutboxDispatcher dispatcher;
+    private final EmailTemplateEngine templateEngine;
+
+    public EmailService(EmailOutboxRepository outboxRepository, EmailOutboxDispatcher dispatcher,
+                        EmailTemplateEngine templateEngine) {
+        this.outboxRepository = outboxRepository;
+        this.dispatcher = dispatcher;
+        this.templateEngine = templateEngine;
     }
     //-------------------------------------
 
@@ -33,34 +41,64 @@ public class EmailService {
      * @description : 寄出含有Password Reset Url的信件
      * @param to : 收件者email
      * @param resetUrl : 重置密碼的網址
+     * @param locale : 信件語系
      */
-    public void sendPasswordResetEmail(String to, String resetUrl){
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(to);
-        message.setSubject("Page Realm 密碼重置信件");
-        message.setText("請點擊連結完成密碼重置： " + resetUrl);
-        mailSender.send(message);
+    public void sendPasswordResetEmail(String to, String resetUrl, Locale locale){
+        sendTemplate(to, "password-reset", locale, Map.of("resetUrl", resetUrl));
     }
 
     /**
      * @descriptiotn : 寄出含有Verification code的註冊驗證信
-     * @param to
-     * @param subject
-     * @param text
-     * @throws MessagingException
+     * @param to : 收件者email
+     * @param code : 驗證碼(明碼)
+     * @param locale : 信件語系
      */
-    public void sendVerificationEmail(String to, String subject, String text) throws MessagingException {
-        MimeMessage message = mailSender.createMimeMessage();
-        //multipart:true 開啟透過email attachment功能
-        MimeMessageHelper helper = new MimeMessageHelper(message,true);
-
-        helper.setTo(to);
-        helper.setSubject(subject);
-        helper.setText(text,true);
-
-        mailSender.send(message);
+    public void sendVerificationEmail(String to, String code, Locale locale) {
+        sendTemplate(to, "verification", locale, Map.of("code", code));
     }
 
+    /**
+     * @description : 目前請求帶有 Accept-Language 時使用請求語系，否則(含非請求執行緒)使用 DEFAULT_LOCALE
+     */
+    public static Locale requestLocale() {
+        RequestAttributes attrs = RequestContextHolder.getRequestAttributes();
+        if (attrs instanceof ServletRequestAttributes servletAttrs) {
+            HttpServletRequest request = servletAttrs.getRequest();
+            String header = request.getHeader(HttpHeaders.ACCEPT_LANGUAGE);
+            if (header != null && !header.isBlank()) return request.getLocale();
+        }
+        return DEFAULT_LOCALE;
+    }
 
+    /**
+     * @description : 以範本寄信
+     * @param template : 範本名稱，對應 resources/mail-templates/<template>[_<lang>].(html|txt)
+     * @param locale : 信件語系，null 視為 DEFAULT_LOCALE
+     */
+    public void sendTemplate(String to, String template, Locale locale, Map<String, String> vars) {
+        EmailTemplateEngine.RenderedEmail mail = templateEngine.render(template, locale != null ? locale : DEFAULT_LOCALE, vars);
+        enqueue(to, mail.subject(), mail.body(), mail.html());
+    }
 
-}
\ No newline at end of file
+    /**
+     * @description : 信件寫入 outbox；若在交易中，提交後才喚醒寄送器
+     */
+    public void enqueue(String to, String subject, String body, boolean isHtml) {
+        outboxRepository.save(EmailOutbox.builder()
+                .recipient(to)
+                .subject(subject)
+                .body(body)
+                .html(isHtml)
+                .build());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatcher.wakeUp();
+                }
+            });
+        } else {
+            dispatcher.wakeUp();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.pagerealm.utils;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 信件範本：啟動時把 mail-templates 下的檔案解析成「文字片段 + 佔位欄位」的 render plan，寄信時只做填值
+ * - 檔名：<name>[_<language>[_<COUNTRY>]].(html|txt)，例如 verification.html、verification_en.html
+ * - 檔案第一行為 "subject: 主旨"，其後空一行為內文；主旨與內文皆可使用 {{變數}}
+ * - .html 範本的變數會做 HTML 跳脫，.txt 不跳脫
+ * - 語系解析順序：name_language_COUNTRY → name_language → name(預設為繁體中文)
+ */
+@Component
+public class EmailTemplateEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailTemplateEngine.class);
+    private static final String SUBJECT_PREFIX = "subject:";
+
+    @Value("${email.templates.location:classpath*:mail-templates/*.*}")
+    private String location;
+
+    private final Map<String, Template> templates = new HashMap<>();
+
+    public record RenderedEmail(String subject, String body, boolean html) {
+    }
+
+    // 已編譯範本：literals 與 slots 交錯，literals 比 slots 多一個
+    private record Plan(String[] literals, String[] slots, int literalLength) {
+
+        String render(Map<String, String> vars, boolean escapeHtml) {
+            int size = literalLength;
+            for (String slot : slots) {
+                String v = vars.get(slot);
+                if (v == null) throw new IllegalArgumentException("缺少範本變數: " + slot);
+                size += v.length();
+            }
+            // 一次配置足夠的緩衝；HTML 跳脫預留少量空間
+            StringBuilder sb = new StringBuilder(escapeHtml ? size + (size >> 4) : size);
+            for (int i = 0; i < slots.length; i++) {
+                sb.append(literals[i]);
+                String v = vars.get(slots[i]);
+                if (escapeHtml) appendEscaped(sb, v);
+                else sb.append(v);
+            }
+            sb.append(literals[slots.length]);
+            return sb.toString();
+        }
+    }
+
+    private record Template(Plan subject, Plan body, boolean html) {
+    }
+
+    @PostConstruct
+    void load() throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(location);
+        for (Resource resource : resources) {
+            String filename = resource.getFilename();
+            if (filename == null) continue;
+            int dot = filename.lastIndexOf('.');
+            if (dot <= 0) continue;
+            String ext = filename.substring(dot + 1);
+            if (!ext.equals("html") && !ext.equals("txt")) continue;
+            try (InputStream in = resource.getInputStream()) {
+                String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                templates.put(filename.substring(0, dot), parse(filename, content, ext.equals("html")));
+            }
+        }
+        logger.info("Loaded {} email templates", templates.size());
+    }
+
+    /**
+     * @description : 以語系套用範本
+     * @param name : 範本名稱(不含語系與副檔名)
+     * @param locale : 語系，可為 null(使用預設範本)
+     * @param vars : 範本變數，範本中出現的變數皆須提供
+     */
+    public RenderedEmail render(String name, Locale locale, Map<String, String> vars) {
+        Template template = resolve(name, locale);
+        return new RenderedEmail(template.subject().render(vars, false),
+                template.body().render(vars, template.html()), template.html());
+    }
+
+    private Template resolve(String name, Locale locale) {
+        Template t = null;
+        if (locale != null && !locale.getLanguage().isEmpty()) {
+            if (!locale.getCountry().isEmpty()) t = templates.get(name + "_" + locale.getLanguage() + "_" + locale.getCountry());
+            if (t == null) t = templates.get(name + "_" + locale.getLanguage());
+        }
+        if (t == null) t = templates.get(name);
+        if (t == null) throw new IllegalStateException("找不到信件範本: " + name);
+        return t;
+    }
+
+    private static Template parse(String filename, String content, boolean html) {
+        if (content.startsWith("\uFEFF")) content = content.substring(1);
+        int eol = content.indexOf('\n');
+        String first = eol < 0 ? content : content.substring(0, eol);
+        if (!first.regionMatches(true, 0, SUBJECT_PREFIX, 0, SUBJECT_PREFIX.length())) {
+            throw new IllegalStateException("信件範本 " + filename + " 第一行須為 subject:");
+        }
+        String subject = first.substring(SUBJECT_PREFIX.length()).trim();
+        String body = eol < 0 ? "" : content.substring(eol + 1).replaceFirst("^\\r?\\n", "");
+        return new Template(compile(filename, subject), compile(filename, body), html);
+    }
+
+    // 解析 {{name}}，未閉合的 {{ 視為錯誤
+    private static Plan compile(String filename, String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int literalLength = 0;
+        int pos = 0;
+        while (true) {
+            int open = text.indexOf("{{", pos);
+            if (open < 0) break;
+            int close = text.indexOf("}}", open + 2);
+            if (close < 0) throw new IllegalStateException("信件範本 " + filename + " 有未閉合的 {{");
+            String literal = text.substring(pos, open);
+            literals.add(literal);
+            literalLength += literal.length();
+            slots.add(text.substring(open + 2, close).trim());
+            pos = close + 2;
+        }
+        String tail = text.substring(pos);
+        literals.add(tail);
+        literalLength += tail.length();
+        return new Plan(literals.toArray(String[]::new), slots.toArray(String[]::new), literalLength);
+    }
+
+    private static void appendEscaped(StringBuilder sb, String v) {
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            switch (c) {
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '&' -> sb.append("&amp;");
+                case '"' -> sb.append("&quot;");
+                case '\'' -> sb.append("&#39;");
+                default -> sb.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.pagerealm.utils;
+
+import java.time.LocalDateTime;
+
+/**
+ * keyset 分頁游標：<ISO-8601 時間>_<id>，例如 2025-01-31T12:00:00.123_42
+ * 排序欄位為 NULL(例如永不到期的點數批次)時時間部分留空，例如 _42
+ */
+public record KeysetCursor(LocalDateTime at, Long id) {
+
+    /**
+     * @description : 游標格式錯誤；各 controller 轉為 400
+     */
+    public static class InvalidCursorException extends IllegalArgumentException {
+        public InvalidCursorException() {
+            super("cursor 格式錯誤");
+        }
+    }
+
+    /**
+     * @description : 解析游標
+     * @param raw : 上一頁回傳的游標，null 或空白代表第一頁
+     * @return : 第一頁時為 null
+     */
+    public static KeysetCursor parse(String raw) {
+        if (raw == null || raw.isBlank()) return null;
+        int idx = raw.lastIndexOf('_');
+        try {
+            LocalDateTime at = idx == 0 ? null : LocalDateTime.parse(raw.substring(0, idx));
+            return new KeysetCursor(at, Long.parseLong(raw.substring(idx + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    public static String format(LocalDateTime at, Long id) {
+        return (at == null ? "" : at.toString()) + "_" + id;
+    }
+
+    public String format() {
+        return format(at, id);
+    }
+
+    // 排序欄位不可為 NULL 的分頁用：拒絕 _<id> 形式
+    public LocalDateTime requireAt() {
+        if (at == null) throw new InvalidCursorException();
+        return at;
+    }
+}
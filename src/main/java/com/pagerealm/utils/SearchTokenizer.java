@@ -0,0 +1,75 @@
+package com.pagerealm.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 記憶體搜尋索引共用的切詞(書籍目錄、客服工單)：
+ * - 先做 NFKC 正規化並轉小寫(全形英數字與半形視為相同)
+ * - 連續英數字為一詞；中日韓文字切成 bigram
+ * - 建索引時另外加入單字 token，查詢時只有單一中文字才用單字 token
+ */
+public final class SearchTokenizer {
+
+    private SearchTokenizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null) return "";
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    // text 須先經過 normalize
+    public static Set<String> tokenize(String text, boolean forIndex) {
+        Set<String> out = new LinkedHashSet<>();
+        StringBuilder word = new StringBuilder();
+        List<Integer> cjk = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) {
+                flushWord(word, out);
+                cjk.add(cp);
+            } else if (Character.isLetterOrDigit(cp)) {
+                flushCjk(cjk, out, forIndex);
+                word.appendCodePoint(cp);
+            } else {
+                flushWord(word, out);
+                flushCjk(cjk, out, forIndex);
+            }
+        }
+        flushWord(word, out);
+        flushCjk(cjk, out, forIndex);
+        return out;
+    }
+
+    private static void flushWord(StringBuilder word, Set<String> out) {
+        if (word.isEmpty()) return;
+        out.add(word.toString());
+        word.setLength(0);
+    }
+
+    private static void flushCjk(List<Integer> run, Set<String> out, boolean forIndex) {
+        if (run.isEmpty()) return;
+        if (run.size() == 1 || forIndex) {
+            for (int cp : run) out.add(Character.toString(cp));
+        }
+        for (int k = 0; k + 1 < run.size(); k++) {
+            out.add(Character.toString(run.get(k)) + Character.toString(run.get(k + 1)));
+        }
+        run.clear();
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
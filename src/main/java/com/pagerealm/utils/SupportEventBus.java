@@ -0,0 +1,268 @@
+package com.pagerealm.utils;
+
+import com.pagerealm.dto.response.SupportEventDTO;
+import com.pagerealm.dto.response.SupportMessageDTO;
+import com.pagerealm.entity.SupportMessage;
+import com.pagerealm.entity.SupportTicket;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工單即時事件(SSE)的行程內事件匯流排：
+ * - 訂閱者分兩種：單一工單(會員或客服檢視中的工單)與客服收件匣(所有工單)
+ * - 連線以 SseEmitter 走 Servlet async，閒置連線不佔用請求執行緒
+ * - 每個訂閱者有自己的有界緩衝；發佈端只做 offer，不會被慢速連線拖住
+ *   寫出由 virtual thread 負責，每個訂閱者同一時間最多一個寫出工作，保持事件順序
+ * - 緩衝滿時丟棄積壓事件並送出 resync，前端收到後以 REST 重新讀取最新一頁
+ * - 事件於交易提交後才發佈(publishAfterCommit)，未提交或回滾的資料不會推送
+ * - 訂閱數上限(max-subscribers)須低於 server.tomcat.max-connections，保留連線給一般 API；達上限時 controller 回 503
+ */
+@Component
+public class SupportEventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(SupportEventBus.class);
+
+    public static final String MESSAGE = "message";
+    public static final String STATUS = "status";
+    private static final String READY = "ready";
+    private static final String RESYNC = "resync";
+
+    @Value("${support.events.buffer-size:64}")
+    private int bufferSize;
+
+    @Value("${support.events.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${support.events.max-subscribers:8000}")
+    private int maxSubscribers;
+
+    private final ConcurrentHashMap<Long, Set<Subscriber>> ticketSubscribers = new ConcurrentHashMap<>();
+    private final Set<Subscriber> inboxSubscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService writers;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "support-sse-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @description : 即時連線數已達 max-subscribers
+     */
+    public static class SubscriberLimitException extends IllegalStateException {
+        public SubscriberLimitException() {
+            super("即時連線數已達上限，請稍後再試");
+        }
+    }
+
+    @Autowired
+    public SupportEventBus(@Value("${support.events.heartbeat-ms:25000}") long heartbeatMs) {
+        this(heartbeatMs, Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("support-sse-", 0).factory()));
+    }
+
+    // 測試用：可替換寫出執行緒，以控制寫出時機
+    SupportEventBus(long heartbeatMs, ExecutorService writers) {
+        this.writers = writers;
+        // 定期送出註解行：避免代理伺服器切斷閒置連線，同時偵測已斷線的用戶端
+        heartbeat.scheduleWithFixedDelay(this::heartbeatAll, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeat.shutdownNow();
+        ticketSubscribers.values().forEach(set -> set.forEach(Subscriber::close));
+        inboxSubscribers.forEach(Subscriber::close);
+        writers.shutdown();
+    }
+
+    // 單一訊息或狀態事件在佇列中的項目；heartbeat 與 resync 不帶 data
+    private record Frame(String name, SupportEventDTO data) {
+    }
+
+    private static final Frame HEARTBEAT = new Frame(null, null);
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final Long ticketId; // null 代表收件匣
+        final ArrayBlockingQueue<Frame> queue = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean writing = new AtomicBoolean();
+        final AtomicBoolean overflowed = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, Long ticketId) {
+            this.emitter = emitter;
+            this.ticketId = ticketId;
+        }
+
+        void offer(Frame frame) {
+            if (closed.get()) return;
+            if (!queue.offer(frame)) {
+                if (frame == HEARTBEAT) return; // 佇列有積壓時本來就會寫出資料，不需心跳
+                queue.clear();
+                overflowed.set(true);
+            }
+            schedule();
+        }
+
+        void schedule() {
+            if (!closed.get() && writing.compareAndSet(false, true)) {
+                try {
+                    writers.execute(this::drain);
+                } catch (RuntimeException e) {
+                    writing.set(false);
+                }
+            }
+        }
+
+        void drain() {
+            try {
+                while (!closed.get()) {
+                    if (overflowed.getAndSet(false)) {
+                        emitter.send(SseEmitter.event().name(RESYNC).data("", MediaType.TEXT_PLAIN));
+                    }
+                    Frame frame = queue.poll();
+                    if (frame == null) break;
+                    if (frame == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("ping"));
+                    } else if (frame.data() == null) {
+                        emitter.send(SseEmitter.event().name(frame.name()).data("", MediaType.TEXT_PLAIN));
+                    } else {
+                        emitter.send(SseEmitter.event().name(frame.name()).data(frame.data(), MediaType.APPLICATION_JSON));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // 用戶端已斷線或 emitter 已結束
+                close();
+                return;
+            } finally {
+                writing.set(false);
+            }
+            // 寫出期間若有新事件入列且無人接手，再排一次
+            if (!queue.isEmpty() || overflowed.get()) schedule();
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            remove(this);
+            queue.clear();
+            try {
+                emitter.complete();
+            } catch (RuntimeException ignored) {
+                // 連線已關閉
+            }
+        }
+    }
+
+    /**
+     * @description : 訂閱單一工單的事件(呼叫端須先確認權限)
+     */
+    public SseEmitter subscribeTicket(Long ticketId) {
+        return subscribe(ticketId);
+    }
+
+    /**
+     * @description : 訂閱所有工單的事件(客服收件匣)
+     */
+    public SseEmitter subscribeInbox() {
+        return subscribe(null);
+    }
+
+    private SseEmitter subscribe(Long ticketId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new SubscriberLimitException();
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber sub = new Subscriber(emitter, ticketId);
+        emitter.onCompletion(sub::close);
+        emitter.onTimeout(sub::close);
+        emitter.onError(e -> sub.close());
+        if (ticketId == null) inboxSubscribers.add(sub);
+        else ticketSubscribers.computeIfAbsent(ticketId, k -> ConcurrentHashMap.newKeySet()).add(sub);
+        // 先送出 ready，讓回應標頭立即送達；用戶端收到後再以 REST 讀取目前資料，避免漏接
+        sub.offer(new Frame(READY, null));
+        return emitter;
+    }
+
+    private void remove(Subscriber sub) {
+        subscriberCount.decrementAndGet();
+        if (sub.ticketId == null) {
+            inboxSubscribers.remove(sub);
+            return;
+        }
+        ticketSubscribers.computeIfPresent(sub.ticketId, (k, set) -> {
+            set.remove(sub);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * @description : 交易提交後發佈工單事件；不在交易中時立即發佈
+     * @param type : MESSAGE 或 STATUS
+     * @param message : MESSAGE 事件的新訊息，STATUS 事件為 null
+     */
+    public void publishAfterCommit(String type, SupportTicket ticket, SupportMessage message) {
+        SupportEventDTO event = new SupportEventDTO(
+                type,
+                ticket.getId(),
+                ticket.getStatus(),
+                ticket.getAssigneeUserId(),
+                message == null ? null : new SupportMessageDTO(message.getId(), message.getSender(), message.getContent(), message.getCreatedAt()),
+                LocalDateTime.now());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(event);
+                }
+            });
+        } else {
+            publish(event);
+        }
+    }
+
+    private void publish(SupportEventDTO event) {
+        Frame frame = new Frame(event.getType(), event);
+        Set<Subscriber> subs = ticketSubscribers.get(event.getTicketId());
+        if (subs != null) subs.forEach(s -> s.offer(frame));
+        inboxSubscribers.forEach(s -> s.offer(frame));
+    }
+
+    int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    int ticketSubscriberCount(Long ticketId) {
+        Set<Subscriber> subs = ticketSubscribers.get(ticketId);
+        return subs == null ? 0 : subs.size();
+    }
+
+    private void heartbeatAll() {
+        try {
+            ticketSubscribers.values().forEach(set -> set.forEach(s -> s.offer(HEARTBEAT)));
+            inboxSubscribers.forEach(s -> s.offer(HEARTBEAT));
+        } catch (RuntimeException e) {
+            logger.warn("Support SSE heartbeat failed: {}", e.toString());
+        }
+    }
+}
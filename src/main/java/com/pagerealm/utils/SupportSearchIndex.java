@@ -0,0 +1,485 @@
+package com.pagerealm.utils;
+
+import com.pagerealm.dto.response.SupportTicketSearchResponse;
+import com.pagerealm.entity.AppTicketCategory;
+import com.pagerealm.entity.AppTicketStatus;
+import com.pagerealm.entity.SupportMessage;
+import com.pagerealm.entity.SupportTicket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 客服工單的記憶體全文索引(主旨 + 訊息內容)：
+ * - 倒排索引(token -> ticketId -> 權重)，主旨每個詞權重 3，每則含該詞的訊息加 1
+ * - 切詞同書籍搜尋(SearchTokenizer：中日韓 bigram + 英數字詞)
+ * - 多個查詢詞取交集，分數 = Σ (1 + ln 權重) × idf，主旨包含完整查詢字串再加分；可依 status/category 篩選
+ * - 於 SupportServiceImpl 寫入交易提交後增量更新：新訊息只合併該則訊息的詞，不重新切整串
+ * - 啟動後以背景執行緒 keyset 分批讀取既有資料全量重建；重建期間的增量更新會在切換時重放
+ * - 無查詢詞時改走預先排序的 (updatedAt, id) 新到舊集合與 status×category 計數，不複製也不排序全部工單
+ */
+@Component
+public class SupportSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SupportSearchIndex.class);
+    private static final int SUBJECT_WEIGHT = 3;
+    private static final int MESSAGE_WEIGHT = 1;
+    private static final double PHRASE_BONUS = 5.0;
+    private static final int LOAD_PAGE_SIZE = 2000;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String TICKET_PAGE_SQL = "SELECT id, subject, category, status, updated_at, assignee_user_id " +
+            "FROM support_ticket WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String MESSAGE_PAGE_SQL = "SELECT id, ticket_id, content FROM support_message WHERE id > ? ORDER BY id LIMIT ?";
+    private static final AppTicketStatus[] STATUSES = AppTicketStatus.values();
+    private static final AppTicketCategory[] CATEGORIES = AppTicketCategory.values();
+    // 無查詢詞時的排序：updatedAt 新到舊(NULL 在後)，再依 id 新到舊
+    private static final Comparator<Doc> RECENT_ORDER = Comparator
+            .comparing((Doc d) -> d.updatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(d -> d.id, Comparator.reverseOrder());
+
+    private final JdbcTemplate jdbc;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    // 以下欄位只在 write lock 下修改
+    private Map<Long, Doc> docs = new HashMap<>();
+    private Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    // 所有工單依 RECENT_ORDER 排列；修改 updatedAt 前須先移出、改完再放回
+    private NavigableSet<Doc> recent = new TreeSet<>(RECENT_ORDER);
+    // [status.ordinal()][category.ordinal()] 的工單數，供無查詢詞時計算 total 與 facets
+    private int[][] counts = new int[STATUSES.length][CATEGORIES.length];
+    // 非 null 表示全量重建進行中，記錄期間的增量更新
+    private List<Update> pending;
+
+    public SupportSearchIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // 工單摘要與詞頻；增量更新時就地修改(write lock 下)
+    private static final class Doc {
+        final Long id;
+        String subject;
+        String subjectNorm;
+        AppTicketCategory category;
+        AppTicketStatus status;
+        Long assigneeUserId;
+        LocalDateTime updatedAt;
+        final Map<String, Integer> terms = new HashMap<>();
+
+        Doc(Long id) {
+            this.id = id;
+        }
+    }
+
+    // 一次增量更新：工單欄位 + 可選的一則新訊息(messageTerms 已在交易內切好詞)
+    private record Update(Long ticketId, String subject, AppTicketCategory category, AppTicketStatus status,
+                          Long assigneeUserId, LocalDateTime updatedAt, Long messageId, Set<String> messageTerms) {
+    }
+
+    private record MessageRow(Long id, Long ticketId, Set<String> terms) {
+    }
+
+    // 重建快照已載入的訊息 id：依 id 遞增讀取，以 BitSet(相對第一個 id)記錄，重放時據以略過
+    private static final class LoadedMessages {
+        private long base = -1;
+        private final BitSet bits = new BitSet();
+        private long count;
+
+        void add(long id) {
+            if (base < 0) base = id;
+            bits.set(Math.toIntExact(id - base));
+            count++;
+        }
+
+        boolean contains(long id) {
+            return base >= 0 && id >= base && id - base <= Integer.MAX_VALUE && bits.get((int) (id - base));
+        }
+    }
+
+    // 不阻塞啟動：資料量大時重建可能需要數秒
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        startRebuild();
+    }
+
+    /**
+     * @description : 以背景執行緒全量重建
+     * @return : 是否已啟動；已有重建進行中時回傳 false
+     */
+    public boolean startRebuild() {
+        // 先取得重建旗標再啟動執行緒：同時呼叫時只有一個會回傳 true
+        if (!rebuilding.compareAndSet(false, true)) return false;
+        Thread t = new Thread(() -> {
+            try {
+                doRebuild();
+            } catch (RuntimeException ignored) {
+                // doRebuild 已記錄錯誤
+            }
+        }, "support-search-rebuild");
+        t.setDaemon(true);
+        try {
+            t.start();
+        } catch (RuntimeException | Error e) {
+            rebuilding.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * @description : 全量重建(同時只會有一個重建在執行)
+     * @return : 是否實際執行；已有重建進行中時回傳 false
+     */
+    public boolean rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) return false;
+        doRebuild();
+        return true;
+    }
+
+    // 呼叫端已取得 rebuilding 旗標；結束時釋放
+    private void doRebuild() {
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            long started = System.currentTimeMillis();
+            Map<Long, Doc> newDocs = new HashMap<>();
+            Map<String, Map<Long, Integer>> newPostings = new HashMap<>();
+            long ticketCount = loadTickets(newDocs);
+            LoadedMessages loaded = loadMessages(newDocs);
+            NavigableSet<Doc> newRecent = new TreeSet<>(RECENT_ORDER);
+            int[][] newCounts = new int[STATUSES.length][CATEGORIES.length];
+            for (Doc d : newDocs.values()) {
+                d.terms.forEach((t, w) -> newPostings.computeIfAbsent(t, k -> new HashMap<>()).put(d.id, w));
+                newRecent.add(d);
+                newCounts[d.status.ordinal()][d.category.ordinal()]++;
+            }
+
+            lock.writeLock().lock();
+            try {
+                docs = newDocs;
+                postings = newPostings;
+                recent = newRecent;
+                counts = newCounts;
+                for (Update u : pending) applyLocked(u, loaded);
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Support search index rebuilt: {} tickets, {} messages, {} terms in {} ms",
+                    ticketCount, loaded.count, newPostings.size(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.error("Support search index rebuild failed", e);
+            throw e;
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private long loadTickets(Map<Long, Doc> into) {
+        long afterId = 0;
+        long count = 0;
+        while (true) {
+            List<Doc> page = jdbc.query(TICKET_PAGE_SQL, (rs, i) -> {
+                Doc d = new Doc(rs.getLong("id"));
+                d.subject = rs.getString("subject");
+                d.category = AppTicketCategory.valueOf(rs.getString("category"));
+                d.status = AppTicketStatus.valueOf(rs.getString("status"));
+                Timestamp updated = rs.getTimestamp("updated_at");
+                d.updatedAt = updated == null ? null : updated.toLocalDateTime();
+                long assignee = rs.getLong("assignee_user_id");
+                d.assigneeUserId = rs.wasNull() ? null : assignee;
+                return d;
+            }, afterId, LOAD_PAGE_SIZE);
+            if (page.isEmpty()) return count;
+            // 切詞是主要成本，平行處理
+            page.parallelStream().forEach(d -> {
+                d.subjectNorm = SearchTokenizer.normalize(d.subject);
+                for (String t : SearchTokenizer.tokenize(d.subjectNorm, true)) d.terms.merge(t, SUBJECT_WEIGHT, Integer::sum);
+            });
+            for (Doc d : page) into.put(d.id, d);
+            count += page.size();
+            afterId = page.get(page.size() - 1).id;
+        }
+    }
+
+    private LoadedMessages loadMessages(Map<Long, Doc> into) {
+        long afterId = 0;
+        LoadedMessages loaded = new LoadedMessages();
+        while (true) {
+            List<Object[]> raw = jdbc.query(MESSAGE_PAGE_SQL,
+                    (rs, i) -> new Object[]{rs.getLong("id"), rs.getLong("ticket_id"), rs.getString("content")},
+                    afterId, LOAD_PAGE_SIZE);
+            if (raw.isEmpty()) return loaded;
+            List<MessageRow> rows = raw.parallelStream()
+                    .map(r -> new MessageRow((Long) r[0], (Long) r[1], messageTerms((String) r[2])))
+                    .toList();
+            for (MessageRow m : rows) {
+                // 重建開始後才建立的工單不在快照內，由 pending 重放補上
+                Doc d = into.get(m.ticketId());
+                if (d == null) continue;
+                for (String t : m.terms()) d.terms.merge(t, MESSAGE_WEIGHT, Integer::sum);
+                loaded.add(m.id());
+            }
+            afterId = rows.get(rows.size() - 1).id();
+        }
+    }
+
+    /**
+     * @description : 交易提交後更新工單欄位並加入新訊息的詞
+     * @param message : 新訊息；只更新狀態等欄位時傳 null
+     */
+    public void indexAfterCommit(SupportTicket ticket, SupportMessage message) {
+        Update update = new Update(ticket.getId(), ticket.getSubject(), ticket.getCategory(), ticket.getStatus(),
+                ticket.getAssigneeUserId(), ticket.getUpdatedAt(),
+                message == null ? null : message.getId(),
+                message == null ? null : messageTerms(message.getContent()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(update);
+                }
+            });
+        } else {
+            apply(update);
+        }
+    }
+
+    private void apply(Update update) {
+        lock.writeLock().lock();
+        try {
+            applyLocked(update, null);
+            if (pending != null) pending.add(update);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // loaded：重放時為重建快照已載入的訊息；即時更新傳 null，一律套用
+    private void applyLocked(Update u, LoadedMessages loaded) {
+        Doc d = docs.get(u.ticketId());
+        if (d == null) {
+            d = new Doc(u.ticketId());
+            docs.put(d.id, d);
+        } else {
+            recent.remove(d);
+            counts[d.status.ordinal()][d.category.ordinal()]--;
+        }
+        if (d.subjectNorm == null || !d.subject.equals(u.subject())) {
+            if (d.subjectNorm != null) {
+                for (String t : SearchTokenizer.tokenize(d.subjectNorm, true)) addTerm(d, t, -SUBJECT_WEIGHT);
+            }
+            d.subject = u.subject();
+            d.subjectNorm = SearchTokenizer.normalize(u.subject());
+            for (String t : SearchTokenizer.tokenize(d.subjectNorm, true)) addTerm(d, t, SUBJECT_WEIGHT);
+        }
+        d.category = u.category();
+        d.status = u.status();
+        d.assigneeUserId = u.assigneeUserId();
+        d.updatedAt = u.updatedAt();
+        recent.add(d);
+        counts[d.status.ordinal()][d.category.ordinal()]++;
+        // 重放時只略過已在快照內的訊息；id 較小但較晚提交的訊息照樣加入
+        if (u.messageId() != null && (loaded == null || !loaded.contains(u.messageId()))) {
+            for (String t : u.messageTerms()) addTerm(d, t, MESSAGE_WEIGHT);
+        }
+    }
+
+    private void addTerm(Doc d, String term, int delta) {
+        int w = d.terms.getOrDefault(term, 0) + delta;
+        if (w > 0) {
+            d.terms.put(term, w);
+            postings.computeIfAbsent(term, k -> new HashMap<>()).put(d.id, w);
+            return;
+        }
+        d.terms.remove(term);
+        Map<Long, Integer> posting = postings.get(term);
+        if (posting == null) return;
+        posting.remove(d.id);
+        if (posting.isEmpty()) postings.remove(term);
+    }
+
+    /**
+     * @description : 關鍵字搜尋工單(主旨與訊息內容)
+     * @param q : 關鍵字，空白表示不限(依更新時間新到舊)
+     * @param status : 篩選狀態(可為 null)
+     * @param category : 篩選分類(可為 null)
+     * @param page : 頁碼(從 0 開始)
+     * @param size : 每頁筆數(1~100)
+     */
+    public SupportTicketSearchResponse search(String q, AppTicketStatus status, AppTicketCategory category, int page, int size) {
+        long started = System.nanoTime();
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNo = Math.max(0, page);
+        String phrase = SearchTokenizer.normalize(q).trim();
+        List<String> tokens = new ArrayList<>(SearchTokenizer.tokenize(phrase, false));
+
+        if (tokens.isEmpty()) return browse(status, category, pageNo, pageSize, started);
+
+        List<SupportTicketSearchResponse.Hit> matches = new ArrayList<>();
+        Map<AppTicketStatus, Integer> statusFacet = new EnumMap<>(AppTicketStatus.class);
+        Map<AppTicketCategory, Integer> categoryFacet = new EnumMap<>(AppTicketCategory.class);
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = score(tokens);
+            for (Long id : scores.keySet()) {
+                Doc d = docs.get(id);
+                if (d == null || d.subjectNorm == null) continue;
+                boolean sOk = status == null || status == d.status;
+                boolean cOk = category == null || category == d.category;
+                if (cOk) statusFacet.merge(d.status, 1, Integer::sum);
+                if (sOk) categoryFacet.merge(d.category, 1, Integer::sum);
+                if (!(sOk && cOk)) continue;
+
+                double score = scores.get(id);
+                if (d.subjectNorm.contains(phrase)) score += PHRASE_BONUS;
+                matches.add(hit(d, score));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(Comparator.comparingDouble(SupportTicketSearchResponse.Hit::getScore).reversed()
+                .thenComparing(SupportTicketSearchResponse.Hit::getUpdatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(SupportTicketSearchResponse.Hit::getId, Comparator.reverseOrder()));
+        int from = Math.min(pageNo * pageSize, matches.size());
+        int to = Math.min(from + pageSize, matches.size());
+        return response(new ArrayList<>(matches.subList(from, to)), matches.size(), statusFacet, categoryFacet,
+                pageNo, pageSize, started);
+    }
+
+    // 無查詢詞：沿預先排序的集合走到目標頁即停止；total 與 facets 由計數表取得
+    private SupportTicketSearchResponse browse(AppTicketStatus status, AppTicketCategory category,
+                                               int pageNo, int pageSize, long started) {
+        List<SupportTicketSearchResponse.Hit> items = new ArrayList<>(pageSize);
+        Map<AppTicketStatus, Integer> statusFacet = new EnumMap<>(AppTicketStatus.class);
+        Map<AppTicketCategory, Integer> categoryFacet = new EnumMap<>(AppTicketCategory.class);
+        int total = 0;
+        long from = (long) pageNo * pageSize;
+
+        lock.readLock().lock();
+        try {
+            for (AppTicketStatus s : STATUSES) {
+                for (AppTicketCategory c : CATEGORIES) {
+                    int n = counts[s.ordinal()][c.ordinal()];
+                    if (n == 0) continue;
+                    boolean sOk = status == null || status == s;
+                    boolean cOk = category == null || category == c;
+                    if (cOk) statusFacet.merge(s, n, Integer::sum);
+                    if (sOk) categoryFacet.merge(c, n, Integer::sum);
+                    if (sOk && cOk) total += n;
+                }
+            }
+            if (from < total) {
+                long skipped = 0;
+                for (Doc d : recent) {
+                    if ((status != null && status != d.status) || (category != null && category != d.category)) continue;
+                    if (skipped++ < from) continue;
+                    items.add(hit(d, 0));
+                    if (items.size() == pageSize) break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return response(items, total, statusFacet, categoryFacet, pageNo, pageSize, started);
+    }
+
+    private static SupportTicketSearchResponse.Hit hit(Doc d, double score) {
+        return SupportTicketSearchResponse.Hit.builder()
+                .id(d.id)
+                .subject(d.subject)
+                .category(d.category)
+                .status(d.status)
+                .assigneeUserId(d.assigneeUserId)
+                .updatedAt(d.updatedAt)
+                .score(score)
+                .build();
+    }
+
+    private SupportTicketSearchResponse response(List<SupportTicketSearchResponse.Hit> items, int total,
+                                                 Map<AppTicketStatus, Integer> statusFacet,
+                                                 Map<AppTicketCategory, Integer> categoryFacet,
+                                                 int pageNo, int pageSize, long started) {
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+        facets.put("status", new LinkedHashMap<>());
+        facets.put("category", new LinkedHashMap<>());
+        statusFacet.forEach((k, v) -> facets.get("status").put(k.name(), v));
+        categoryFacet.forEach((k, v) -> facets.get("category").put(k.name(), v));
+        return SupportTicketSearchResponse.builder()
+                .items(items)
+                .total(total)
+                .page(pageNo)
+                .size(pageSize)
+                .facets(facets)
+                .rebuilding(rebuilding.get())
+                .tookMicros((System.nanoTime() - started) / 1000)
+                .build();
+    }
+
+    // 所有查詢詞都要命中(交集)
+    private Map<Long, Double> score(List<String> tokens) {
+        int n = Math.max(1, docs.size());
+        tokens.sort(Comparator.comparingInt(t -> postings.getOrDefault(t, Map.of()).size()));
+        Map<Long, Double> scores = null;
+        for (String t : tokens) {
+            Map<Long, Integer> posting = postings.get(t);
+            if (posting == null) return Map.of();
+            double idf = Math.log(1.0 + (double) n / posting.size());
+            if (scores == null) {
+                scores = new HashMap<>(posting.size() * 2);
+                for (Map.Entry<Long, Integer> e : posting.entrySet()) scores.put(e.getKey(), tf(e.getValue()) * idf);
+            } else {
+                Map<Long, Double> next = new HashMap<>(scores.size() * 2);
+                for (Map.Entry<Long, Double> e : scores.entrySet()) {
+                    Integer w = posting.get(e.getKey());
+                    if (w != null) next.put(e.getKey(), e.getValue() + tf(w) * idf);
+                }
+                scores = next;
+            }
+            if (scores.isEmpty()) return scores;
+        }
+        return scores;
+    }
+
+    // 長對話串中反覆出現的詞不應壓過主旨命中：權重取對數
+    private static double tf(int weight) {
+        return 1.0 + Math.log(weight);
+    }
+
+    private static Set<String> messageTerms(String content) {
+        return SearchTokenizer.tokenize(SearchTokenizer.normalize(content), true);
+    }
+}
@@ -2,7 +2,9 @@
 API = {
     authSignin: '/api/auth/public/signin',
     verifyTotpLogin: '/api/auth/public/verify-totp-login',
-    users: '/api/admin/getusers',
+    users: '/api/admin/users',
+    usersCount: '/api/admin/users/count',
+    usersExport: '/api/admin/users/export',
     roles: '/api/admin/roles',
     addUser: '/api/admin/add-user',
     enableUser: '/api/admin/update-enabled-status',
@@ -166,11 +168,11 @@ async function renderHome() {
   </div>`;
     try {
         const [users, books, couponsPage] = await Promise.all([
-            apiGet(API.users),
+            apiGet(API.usersCount),
             apiGet(API.books + '?size=1'),
             apiGet(API.couponsAdmin + '?size=1')
         ]);
-        document.getElementById('stat-users').innerHTML = `<div class="muted">使用者數</div><div style="font-size:24px;font-weight:700">${users.length}</div>`;
+        document.getElementById('stat-users').innerHTML = `<div class="muted">使用者數</div><div style="font-size:24px;font-weight:700">${users || 0}</div>`;
         document.getElementById('stat-books').innerHTML = `<div class="muted">書籍數</div><div style="font-size:24px;font-weight:700">${books.totalElements || 0}</div>`;
         document.getElementById('stat-coupons').innerHTML = `<div class="muted">優惠券</div><div style="font-size:24px;font-weight:700">${couponsPage.totalElements || 0}</div>`;
 
@@ -257,6 +259,9 @@ async function renderUsers() {
     if (!root) return;
     root.innerHTML = `<div class="actions">  
       <button class="btn" onclick="openUserModal()">新增使用者</button>  
+      <input id="u_filter_email" type="text" placeholder="Email 前綴">  
+      <button class="btn secondary" onclick="reloadUsers()">搜尋</button>  
+      <button class="btn secondary" onclick="exportUsers()">匯出 CSV</button>  
     </div>  
     <div class="card" style="margin-top:12px">  
       <table>  
@@ -265,6 +270,7 @@ async function renderUsers() {
         </tr></thead>  
         <tbody id="usersTbody"></tbody>  
       </table>  
+      <div class="actions" style="margin-top:8px"><button id="usersMore" class="btn small secondary" style="display:none" onclick="loadUsers()">載入更多</button></div>  
     </div>  
     <div id="userModal" class="card" style="display:none; margin-top:12px">  
       <h3 style="margin-top:0">新增使用者</h3>  
@@ -297,25 +303,65 @@ async function renderUsers() {
         birth.required = true;
     }
     ['u_email','u_username','u_password','u_gender'].forEach(id => { const el = document.getElementById(id); if (el) el.required = true; });
+    await reloadUsers();
+}
+
+// 使用者列表：keyset 分頁，「載入更多」以 nextCursor 取下一頁
+let usersCursor = null;
+
+function usersQuery() {
+    const email = (document.getElementById('u_filter_email')?.value || '').trim();
+    const params = new URLSearchParams({size: '100'});
+    if (email) params.set('email', email);
+    return params;
+}
+
+async function reloadUsers() {
+    usersCursor = null;
+    const tbody = document.getElementById('usersTbody');
+    if (tbody) tbody.innerHTML = '';
+    await loadUsers();
+}
+
+async function loadUsers() {
+    const tbody = document.getElementById('usersTbody');
+    const more = document.getElementById('usersMore');
+    if (!tbody) return;
     try {
-        const list = await apiGet(API.users);
-        const tbody = document.getElementById('usersTbody');
-        tbody.innerHTML = list.map(u => `<tr>  
+        const params = usersQuery();
+        if (usersCursor != null) params.set('after', usersCursor);
+        const page = await apiGet(`${API.users}?${params}`);
+        tbody.innerHTML += page.items.map(u => `<tr>  
       <td>${u.userId}</td>  
       <td>${u.email}</td>  
       <td>${u.userName || ''}</td>  
-      <td>${(u.role && (u.role.roleName || u.roleName)) || ''}</td>  
+      <td>${u.roleName || ''}</td>  
       <td>${u.enabled ? '是' : '否'}</td>  
       <td>${u.membershipTier || ''}</td>  
       <td class="inline">  
         <button class="btn small" onclick="toggleEnable(${u.userId}, ${!u.enabled})">${u.enabled ? '停用' : '啟用'}</button>  
       </td>  
     </tr>`).join('');
+        usersCursor = page.nextCursor;
+        if (more) more.style.display = page.hasNext ? '' : 'none';
     } catch (e) {
-        root.innerHTML += `<div class="muted">載入使用者失敗：${e.message}</div>`;
+        document.getElementById('users').innerHTML += `<div class="muted">載入使用者失敗：${e.message}</div>`;
     }
 }
 
+async function exportUsers() {
+    const params = usersQuery();
+    params.delete('size');
+    const res = await fetch(withBase(`${API.usersExport}?${params}`), {headers: authHeader()});
+    if (!res.ok) { alert('匯出失敗：' + res.status); return; }
+    const url = URL.createObjectURL(await res.blob());
+    const a = document.createElement('a');
+    a.href = url;
+    a.download = 'users.csv';
+    a.click();
+    URL.revokeObjectURL(url);
+}
+
 function openUserModal() {
     document.getElementById('userModal').style.display = 'block';
 }
@@ -437,7 +483,7 @@ async function renderBooks() {
         const tbody = document.getElementById('booksTbody');
         tbody.innerHTML = page.content.map(b => `<tr>  
       <td>${b.id}</td>  
-      <td>${b.coverImageUrl ? `<img src="${b.coverImageUrl}" alt="cover" style="width:70px;height:100px;object-fit:cover;border-radius:4px;border:1px solid #30363d"/>` : ''}</td>  
+      <td>${b.coverImageUrl ? `<img src="${(b.coverVariants && b.coverVariants.thumb) || b.coverImageUrl}" alt="cover" style="width:70px;height:100px;object-fit:cover;border-radius:4px;border:1px solid #30363d"/>` : ''}</td>  
       <td>${b.title}</td>  
       <td>${b.author}</td>  
       <td>${b.listPrice}</td>  
@@ -847,28 +893,140 @@ async function renderSupport() {
     <h3 style="margin-top:0">工單列表</h3>  
     <div class="inline" style="margin-bottom:8px">  
       <select id="s_status"><option value="">全部</option><option>OPEN</option><option>IN_PROGRESS</option><option>RESOLVED</option><option>CLOSED</option></select>  
-      <button class="btn" onclick="loadTickets()">載入</button>  
+      <select id="s_category"><option value="">全部分類</option><option>ACCOUNT</option><option>BILLING</option><option>TECHNICAL</option><option>GENERAL</option></select>  
+      <label class="inline"><input id="s_unassigned" type="checkbox"> 僅未指派</label>  
+      <button class="btn" onclick="reloadTickets()">載入</button>  
+      <input id="s_q" placeholder="搜尋主旨或訊息內容">  
+      <button class="btn secondary" onclick="searchTickets()">搜尋</button>  
     </div>  
-    <table><thead><tr><th>ID</th><th>主旨</th><th>狀態</th><th>建立</th><th>操作</th></tr></thead><tbody id="s_tbody"></tbody></table>  
+    <table><thead><tr><th>ID</th><th>主旨</th><th>分類</th><th>狀態</th><th>負責人</th><th>更新</th><th>操作</th></tr></thead><tbody id="s_tbody"></tbody></table>  
+    <div id="ticketsNotice" class="muted" style="display:none;margin-bottom:8px">有新的工單動態，<a href="#" onclick="reloadTickets();return false">重新載入</a></div>  
+    <div class="actions" style="margin-top:8px"><button id="ticketsMore" class="btn small secondary" style="display:none" onclick="loadTickets()">載入更多</button></div>  
   </div>  
   <div id="s_detail" class="card" style="margin-top:12px;display:none"></div>`;
+    if (inboxStream) inboxStream.abort();
+    inboxStream = openEventStream(`${API.supportAdmin}/stream`, onInboxEvent);
+}
+
+// 即時更新：EventSource 無法帶 Authorization 標頭，改以 fetch 讀取 text/event-stream；連線結束時自動重連
+function openEventStream(url, onEvent) {
+    const ctrl = new AbortController();
+    (async () => {
+        while (!ctrl.signal.aborted) {
+            try {
+                const res = await fetch(withBase(url), {headers: {'Accept': 'text/event-stream', ...authHeader()}, signal: ctrl.signal});
+                if (!res.ok || !res.body) return; // 權限不足或工單不存在時不重連
+                const reader = res.body.pipeThrough(new TextDecoderStream()).getReader();
+                let buf = '';
+                while (true) {
+                    const {value, done} = await reader.read();
+                    if (done) break;
+                    buf += value.replace(/\r\n/g, '\n');
+                    let sep;
+                    while ((sep = buf.indexOf('\n\n')) >= 0) {
+                        const frame = buf.slice(0, sep);
+                        buf = buf.slice(sep + 2);
+                        let name = null;
+                        const data = [];
+                        for (const line of frame.split('\n')) {
+                            if (line.startsWith('event:')) name = line.slice(6).trim();
+                            else if (line.startsWith('data:')) data.push(line.slice(5));
+                        }
+                        if (!name) continue; // 心跳註解行
+                        let payload = null;
+                        try { payload = data.length ? JSON.parse(data.join('\n')) : null; } catch { payload = null; }
+                        onEvent(name, payload);
+                    }
+                }
+            } catch (e) {
+                if (ctrl.signal.aborted) return;
+            }
+            await new Promise(r => setTimeout(r, 3000));
+        }
+    })();
+    return ctrl;
+}
+
+let inboxStream = null;
+
+// 收件匣事件：已列出的工單直接更新狀態與負責人，其餘提示重新載入
+function onInboxEvent(name, ev) {
+    if (!ev) return;
+    const row = document.getElementById(`ticket-row-${ev.ticketId}`);
+    if (row) {
+        row.children[3].textContent = ev.status;
+        row.children[4].textContent = ev.assigneeUserId ?? '未指派';
+        row.children[5].textContent = ev.at || '';
+    } else {
+        const notice = document.getElementById('ticketsNotice');
+        if (notice) notice.style.display = '';
+    }
+}
+
+// 工單收件匣：keyset 分頁，「載入更多」以 nextCursor 取下一頁
+let ticketsCursor = null;
+
+async function reloadTickets() {
+    ticketsCursor = null;
+    const tbody = document.getElementById('s_tbody');
+    if (tbody) tbody.innerHTML = '';
+    const notice = document.getElementById('ticketsNotice');
+    if (notice) notice.style.display = 'none';
+    await loadTickets();
 }
 
 async function loadTickets() {
+    const params = new URLSearchParams({size: '50'});
     const status = document.getElementById('s_status').value;
-    const url = status ? `${API.supportAdmin}/tickets?status=${status}` : `${API.supportAdmin}/tickets`;
+    const category = document.getElementById('s_category').value;
+    if (status) params.set('status', status);
+    if (category) params.set('category', category);
+    if (document.getElementById('s_unassigned').checked) params.set('unassigned', 'true');
+    if (ticketsCursor != null) params.set('cursor', ticketsCursor);
     try {
-        const list = await apiGet(url);
+        const page = await apiGet(`${API.supportAdmin}/tickets?${params}`);
         const tbody = document.getElementById('s_tbody');
-        tbody.innerHTML = list.map(t => `<tr>  
-      <td>${t.id}</td><td>${t.subject}</td><td>${t.status}</td><td>${t.createdAt || ''}</td>  
-      <td><button class="btn small" onclick="openTicket(${t.id})">檢視</button></td>  
+        tbody.innerHTML += page.items.map(t => `<tr id="ticket-row-${t.id}">  
+      <td>${t.id}</td><td>${t.subject}</td><td>${t.category}</td><td>${t.status}</td><td>${t.assigneeUserId ?? '未指派'}</td><td>${t.updatedAt || ''}</td>  
+      <td class="inline"><button class="btn small" onclick="openTicket(${t.id})">檢視</button>${t.assigneeUserId == null ? ` <button class="btn small secondary" onclick="assignTicket(${t.id})">領取</button>` : ''}</td>  
     </tr>`).join('');
+        ticketsCursor = page.nextCursor;
+        document.getElementById('ticketsMore').style.display = page.hasNext ? '' : 'none';
     } catch (e) {
         alert('載入工單失敗：' + e.message);
     }
 }
 
+// 全文搜尋：依相關度排序，套用目前的狀態/分類篩選
+async function searchTickets() {
+    const q = document.getElementById('s_q').value.trim();
+    if (!q) { await reloadTickets(); return; }
+    const params = new URLSearchParams({q, size: '100'});
+    const status = document.getElementById('s_status').value;
+    const category = document.getElementById('s_category').value;
+    if (status) params.set('status', status);
+    if (category) params.set('category', category);
+    try {
+        const res = await apiGet(`${API.supportAdmin}/tickets/search?${params}`);
+        document.getElementById('s_tbody').innerHTML = res.items.map(t => `<tr id="ticket-row-${t.id}">  
+      <td>${t.id}</td><td>${t.subject}</td><td>${t.category}</td><td>${t.status}</td><td>${t.assigneeUserId ?? '未指派'}</td><td>${t.updatedAt || ''}</td>  
+      <td class="inline"><button class="btn small" onclick="openTicket(${t.id})">檢視</button></td>  
+    </tr>`).join('') || `<tr><td colspan="7" class="muted">查無符合的工單${res.rebuilding ? '（索引重建中）' : ''}</td></tr>`;
+        document.getElementById('ticketsMore').style.display = 'none';
+    } catch (e) {
+        alert('搜尋失敗：' + e.message);
+    }
+}
+
+async function assignTicket(id) {
+    try {
+        await apiJSON('POST', `${API.supportAdmin}/tickets/${id}/assign`);
+        await reloadTickets();
+    } catch (e) {
+        alert('領取失敗：' + e.message);
+    }
+}
+
 async function openTicket(id) {
     try {
         const d = await apiGet(`${API.supportAdmin}/tickets/${id}`);
@@ -876,28 +1034,66 @@ async function openTicket(id) {
         box.style.display = 'block';
         box.innerHTML = `  
       <h3 style="margin-top:0">工單 #${d.id} - ${d.subject}</h3>  
-      <div class="muted">${d.contactName} (${d.contactEmail}) · 狀態：${d.status}</div>  
-      <div style="margin-top:8px">  
-        ${(d.messages || []).map(m => `<div style="padding:8px;border-bottom:1px solid #30363d"><b>${m.sender}</b> <span class="muted">${m.createdAt || ''}</span><div>${m.content}</div></div>`).join('')}  
-      </div>  
+      <div class="muted">${d.contactName} (${d.contactEmail}) · 狀態：<span id="s_status_text">${d.status}</span></div>  
+      <button id="s_older" class="btn small secondary" style="margin-top:8px;${d.hasOlderMessages ? '' : 'display:none'}" onclick="loadOlderMessages(${d.id})">載入更早訊息</button>  
+      <div id="s_thread" style="margin-top:8px">${(d.messages || []).map(ticketMessageHtml).join('')}</div>  
       <div class="inline" style="margin-top:8px">  
         <input id="s_reply" placeholder="回覆內容">  
         <select id="s_next"><option value="">不變更</option><option>OPEN</option><option>IN_PROGRESS</option><option>RESOLVED</option><option>CLOSED</option></select>  
         <button class="btn" onclick="replyTicket(${d.id})">送出回覆</button>  
       </div>  
     `;
+        ticketOlderCursor = d.olderCursor;
+        if (ticketStream) ticketStream.abort();
+        ticketStream = openEventStream(`${API.supportAdmin}/tickets/${d.id}/stream`, (name, ev) => onTicketEvent(d.id, name, ev));
     } catch (e) {
         alert('讀取工單失敗：' + e.message);
     }
 }
 
+// 訊息串分頁：詳情只帶最新一頁，更早的訊息以 olderCursor 往前取並插在最上方
+let ticketOlderCursor = null;
+let ticketStream = null;
+
+// 工單事件：新訊息附加在最下方(以 id 去重)，狀態即時更新；resync 表示事件積壓被丟棄，重新讀取
+function onTicketEvent(id, name, ev) {
+    if (name === 'resync') { openTicket(id); return; }
+    if (!ev) return;
+    const status = document.getElementById('s_status_text');
+    if (status) status.textContent = ev.status;
+    if (ev.message) appendTicketMessage(ev.message);
+}
+
+function appendTicketMessage(m) {
+    const thread = document.getElementById('s_thread');
+    if (!thread || document.getElementById(`msg-${m.id}`)) return;
+    thread.insertAdjacentHTML('beforeend', ticketMessageHtml(m));
+}
+
+function ticketMessageHtml(m) {
+    return `<div id="msg-${m.id}" style="padding:8px;border-bottom:1px solid #30363d"><b>${m.sender}</b> <span class="muted">${m.createdAt || ''}</span><div>${m.content}</div></div>`;
+}
+
+async function loadOlderMessages(id) {
+    if (!ticketOlderCursor) return;
+    try {
+        const page = await apiGet(`${API.supportAdmin}/tickets/${id}/messages?before=${encodeURIComponent(ticketOlderCursor)}`);
+        document.getElementById('s_thread').insertAdjacentHTML('afterbegin', page.items.map(ticketMessageHtml).join(''));
+        ticketOlderCursor = page.olderCursor;
+        document.getElementById('s_older').style.display = page.hasOlder ? '' : 'none';
+    } catch (e) {
+        alert('載入訊息失敗：' + e.message);
+    }
+}
+
 async function replyTicket(id) {
     const content = document.getElementById('s_reply').value.trim();
     const next = document.getElementById('s_next').value || null;
     if (!content) return;
     try {
-        await apiJSON('POST', `${API.supportAdmin}/tickets/${id}/reply`, {content, nextStatus: next});
-        await openTicket(id);
+        const m = await apiJSON('POST', `${API.supportAdmin}/tickets/${id}/reply`, {content, nextStatus: next});
+        document.getElementById('s_reply').value = '';
+        appendTicketMessage(m);
     } catch (e) {
         alert('回覆失敗：' + e.message);
     }
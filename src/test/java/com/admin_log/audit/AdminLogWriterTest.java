@@ -0,0 +1,149 @@
+package com.admin_log.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagerealm.PageRealmApplication;
+import com.pagerealm.security.config.TotpEncryptorConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * spill 檔補寫：中途失敗時保留進度，下次啟動續寫且不重複；無法解析的行移到 .rejected
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@ContextConfiguration(classes = PageRealmApplication.class)
+@Import(TotpEncryptorConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AdminLogWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path dir;
+
+    private Path spill;
+
+    @BeforeEach
+    void setUp() {
+        spill = dir.resolve("admin-log-spill.ndjson");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM admin_logs");
+    }
+
+    @Test
+    void replaysAllEventsAndQuarantinesUnparseableLines() throws Exception {
+        appendSpill(events(1, 5));
+        Files.writeString(spill, "{not json\n", StandardOpenOption.APPEND);
+        appendSpill(events(6, 2));
+
+        writer(jdbc).replaySpillFile();
+
+        assertThat(actions()).containsExactly("a1", "a2", "a3", "a4", "a5", "a6", "a7");
+        assertThat(Files.readAllLines(dir.resolve("admin-log-spill.ndjson.rejected"))).containsExactly("{not json");
+        assertThat(dir.resolve("admin-log-spill.ndjson.replaying")).doesNotExist();
+        assertThat(dir.resolve("admin-log-spill.ndjson.replaying.offset")).doesNotExist();
+        assertThat(spill).doesNotExist();
+    }
+
+    @Test
+    void failedReplayResumesWithoutLosingOrDuplicatingEvents() throws Exception {
+        appendSpill(events(1, 5));
+
+        // 第二批寫入時資料庫失敗
+        FailingJdbcTemplate failing = new FailingJdbcTemplate(dataSource, 1);
+        writer(failing).replaySpillFile();
+        assertThat(actions()).containsExactly("a1", "a2");
+        assertThat(dir.resolve("admin-log-spill.ndjson.replaying")).exists();
+        assertThat(dir.resolve("admin-log-spill.ndjson.replaying.offset")).exists();
+
+        // 重啟前又有新的事件落地：接在未完成的檔案後面，不可覆蓋
+        appendSpill(events(6, 3));
+
+        writer(jdbc).replaySpillFile();
+        assertThat(actions()).containsExactly("a1", "a2", "a3", "a4", "a5", "a6", "a7", "a8");
+        assertThat(dir.resolve("admin-log-spill.ndjson.replaying")).doesNotExist();
+        assertThat(dir.resolve("admin-log-spill.ndjson.replaying.offset")).doesNotExist();
+    }
+
+    private AdminLogWriter writer(JdbcTemplate template) {
+        AdminLogWriter writer = new AdminLogWriter(template, objectMapper, transactionManager);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+        ReflectionTestUtils.setField(writer, "spillFile", spill.toString());
+        return writer;
+    }
+
+    private List<AdminAuditEvent> events(int from, int n) {
+        List<AdminAuditEvent> list = new ArrayList<>();
+        for (int i = from; i < from + n; i++) {
+            list.add(new AdminAuditEvent(1L, "a" + i, (long) i, "Test", "中文內容 " + i, LocalDateTime.now()));
+        }
+        return list;
+    }
+
+    private void appendSpill(List<AdminAuditEvent> events) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (AdminAuditEvent e : events) sb.append(objectMapper.writeValueAsString(e)).append('\n');
+        Files.writeString(spill, sb, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private List<String> actions() {
+        return jdbc.queryForList("SELECT action FROM admin_logs ORDER BY target_id", String.class);
+    }
+
+    // 前 succeed 次 batchUpdate 正常，之後一律失敗
+    private static final class FailingJdbcTemplate extends JdbcTemplate {
+        private int remaining;
+
+        FailingJdbcTemplate(DataSource dataSource, int succeed) {
+            super(dataSource);
+            this.remaining = succeed;
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            if (remaining-- <= 0) throw new DataAccessResourceFailureException("database unavailable");
+            return super.batchUpdate(sql, batchArgs, batchSize, pss);
+        }
+    }
+}
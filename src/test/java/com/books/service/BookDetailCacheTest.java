@@ -0,0 +1,50 @@
+package com.books.service;
+
+import com.books.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookDetailCacheTest {
+
+    private BookDetailCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new BookDetailCache();
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+    }
+
+    @Test
+    void staleReaderCannotRePutAfterEviction() {
+        Book stale = book(1L, LocalDateTime.of(2025, 1, 1, 0, 0));
+        long generation = cache.generation(1L);
+        // 讀取期間書籍被更新並 evict
+        cache.evict(1L);
+
+        BookDetailCache.Entry returned = cache.put(stale, generation);
+
+        assertThat(returned.book().getId()).isEqualTo(1L);
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    void readerAfterEvictionIsCached() {
+        cache.evict(1L);
+        Book fresh = book(1L, LocalDateTime.of(2025, 1, 2, 0, 0));
+
+        cache.put(fresh, cache.generation(1L));
+
+        assertThat(cache.get(1L)).isNotNull();
+        assertThat(cache.get(1L).etag()).isEqualTo(BookDetailCache.etagOf(fresh));
+    }
+
+    private static Book book(Long id, LocalDateTime updatedAt) {
+        return Book.builder().id(id).title("t").updatedAt(updatedAt).build();
+    }
+}
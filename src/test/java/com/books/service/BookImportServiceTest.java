@@ -0,0 +1,210 @@
+package com.books.service;
+
+import com.books.dto.BookImportReport;
+import com.books.dto.BookSearchResponse;
+import com.books.entity.Book;
+import com.books.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagerealm.PageRealmApplication;
+import com.pagerealm.s3.ImageDerivativeService;
+import com.pagerealm.s3.S3Buckets;
+import com.pagerealm.s3.S3Service;
+import com.pagerealm.security.config.TotpEncryptorConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 書籍批次匯入：CSV/NDJSON 解析、逐列驗證錯誤、續傳，以及每批提交後的增量索引
+ * 另比較與逐筆 API(BookService.create，每筆一個交易)的吞吐量
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@ContextConfiguration(classes = PageRealmApplication.class)
+@Import(TotpEncryptorConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookImportServiceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookImportServiceTest.class);
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private BookSearchIndex searchIndex;
+    private BookImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        searchIndex = new BookSearchIndex(bookRepository);
+        importService = new BookImportService(jdbc, transactionManager, new ObjectMapper().findAndRegisterModules(),
+                searchIndex);
+        ReflectionTestUtils.setField(importService, "batchSize", 2);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM books");
+    }
+
+    @Test
+    void parsesCsvAndIndexesEachCommittedBatch() throws Exception {
+        String csv = "﻿title,author,listPrice,format,language,publishedAt\n"
+                + "\"資料結構, 第二版\",王小明,450,ebook,zh,2024-01-31\n"
+                + "\n"
+                + "\"他說\"\"你好\"\"\",,300,paper,zh,2024-02-01T10:30:00\n"
+                + "Clean Code,Robert Martin,520,paper,en,\n";
+
+        BookImportReport report = importService.importBooks(stream(csv), "csv", 0);
+
+        assertThat(report.getTotalRows()).isEqualTo(3);
+        assertThat(report.getImported()).isEqualTo(3);
+        assertThat(report.getFailed()).isZero();
+        assertThat(report.getLastCommittedRow()).isEqualTo(3);
+
+        List<Book> books = bookRepository.findAll();
+        assertThat(books).extracting(Book::getTitle)
+                .containsExactlyInAnyOrder("資料結構, 第二版", "他說\"你好\"", "Clean Code");
+        Book quoted = books.stream().filter(b -> b.getTitle().startsWith("他說")).findFirst().orElseThrow();
+        assertThat(quoted.getAuthor()).isEqualTo("作者");
+        assertThat(quoted.getStatus()).isEqualTo("販售中");
+        assertThat(quoted.getPublishedAt()).isEqualTo(LocalDateTime.of(2024, 2, 1, 10, 30));
+
+        // 不經全量重建，已提交的每批都可搜尋到，且 id 與資料庫一致
+        BookSearchResponse hits = searchIndex.search("資料結構", null, null, null, 0, 10);
+        assertThat(hits.getItems()).extracting(BookSearchResponse.Hit::getId).containsExactly(
+                books.stream().filter(b -> b.getTitle().startsWith("資料結構")).findFirst().orElseThrow().getId());
+        assertThat(searchIndex.search("", null, null, null, 0, 10).getTotal()).isEqualTo(3);
+    }
+
+    @Test
+    void parsesNdjson() throws Exception {
+        String ndjson = "{\"title\":\"演算法\",\"author\":\"甲\",\"listPrice\":380,\"format\":\"ebook\",\"publishedAt\":\"2024-03-01T00:00:00\"}\n"
+                + "{\"title\":\"作業系統\",\"listPrice\":0,\"status\":\"預購\"}\n";
+
+        BookImportReport report = importService.importBooks(stream(ndjson), "ndjson", 0);
+
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(bookRepository.findAll()).extracting(Book::getTitle, Book::getStatus)
+                .containsExactlyInAnyOrder(
+                        tuple("演算法", "販售中"),
+                        tuple("作業系統", "預購"));
+        assertThat(searchIndex.search("作業系統", null, null, null, 0, 10).getTotal()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidRowsAreReportedWithoutFailingTheirBatch() throws Exception {
+        String csv = "title,listPrice\n"
+                + "好書,100\n"
+                + ",100\n"
+                + "負價,-1\n"
+                + "非數字,abc\n"
+                + "另一本好書,200\n";
+
+        BookImportReport report = importService.importBooks(stream(csv), "csv", 0);
+
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(report.getFailed()).isEqualTo(3);
+        assertThat(report.getErrors()).extracting(BookImportReport.RowError::getRow).containsExactly(2L, 3L, 4L);
+        assertThat(report.getErrors().get(0).getMessage()).isEqualTo("title 必填");
+        assertThat(report.getErrors().get(1).getMessage()).isEqualTo("listPrice 必填且不可為負");
+        assertThat(report.getErrors().get(2).getMessage()).startsWith("格式錯誤");
+        assertThat(bookRepository.findAll()).extracting(Book::getTitle).containsExactlyInAnyOrder("好書", "另一本好書");
+
+        String ndjson = "{\"title\":\"ok\",\"listPrice\":1}\n{not json\n";
+        BookImportReport json = importService.importBooks(stream(ndjson), "ndjson", 0);
+        assertThat(json.getImported()).isEqualTo(1);
+        assertThat(json.getErrors()).extracting(BookImportReport.RowError::getRow).containsExactly(2L);
+    }
+
+    @Test
+    void resumeWithLastCommittedRowImportsEachRowOnce() throws Exception {
+        StringBuilder full = new StringBuilder("title,listPrice\n");
+        for (int i = 1; i <= 9; i++) full.append("書").append(i).append(",").append(i).append('\n');
+        // 上傳中斷：只收到前 5 列
+        String partial = String.join("\n", full.toString().lines().limit(6).toList()) + "\n";
+
+        BookImportReport first = importService.importBooks(stream(partial), "csv", 0);
+        assertThat(first.getLastCommittedRow()).isEqualTo(5);
+
+        BookImportReport resumed = importService.importBooks(stream(full.toString()), "csv", first.getLastCommittedRow());
+        assertThat(resumed.getSkipped()).isEqualTo(5);
+        assertThat(resumed.getImported()).isEqualTo(4);
+        assertThat(resumed.getLastCommittedRow()).isEqualTo(9);
+
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM books", Long.class)).isEqualTo(9);
+        assertThat(jdbc.queryForObject("SELECT COUNT(DISTINCT title) FROM books", Long.class)).isEqualTo(9);
+        assertThat(searchIndex.search("", null, null, null, 0, 100).getTotal()).isEqualTo(9);
+    }
+
+    @Test
+    void batchImportOutperformsPerRowApi() throws Exception {
+        ReflectionTestUtils.setField(importService, "batchSize", 500);
+        BookService bookService = new BookService(bookRepository, mock(S3Service.class), mock(S3Buckets.class),
+                searchIndex, new BookDetailCache(), mock(ImageDerivativeService.class));
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        // 預熱
+        perRow(bookService, tx, 200);
+        importService.importBooks(stream(csv(200)), "csv", 0);
+
+        int rows = 2000;
+        long perRowRate = perRow(bookService, tx, rows);
+        BookImportReport report = importService.importBooks(stream(csv(rows)), "csv", 0);
+
+        logger.info("Book import: batch {} rows/s vs per-row {} rows/s", report.getRowsPerSecond(), perRowRate);
+        assertThat(report.getImported()).isEqualTo(rows);
+        assertThat(report.getRowsPerSecond()).isGreaterThan(2 * perRowRate);
+        assertThat(searchIndex.search("", null, null, null, 0, 10).getTotal()).isEqualTo(2 * (rows + 200));
+    }
+
+    // 逐筆 API：每筆一個交易，同 POST /api/admin/books
+    private long perRow(BookService bookService, TransactionTemplate tx, int rows) {
+        long started = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            Book b = Book.builder().title("逐筆書" + i).author("作者").listPrice(i).build();
+            tx.executeWithoutResult(status -> bookService.create(b));
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        return rows * 1000L / elapsedMs;
+    }
+
+    private static String csv(int rows) {
+        StringBuilder sb = new StringBuilder("title,author,listPrice\n");
+        for (int i = 0; i < rows; i++) sb.append("匯入書").append(i).append(",作者,").append(i).append('\n');
+        return sb.toString();
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,131 @@
+package com.books.service;
+
+import com.books.dto.BookSearchResponse;
+import com.books.entity.Book;
+import com.books.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 書籍搜尋索引：切詞查詢、分面計數、無查詢詞的預先排序瀏覽、增量更新與重建期間的重放
+ */
+class BookSearchIndexTest {
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final BookSearchIndex index = new BookSearchIndex(bookRepository);
+
+    @Test
+    void tokenizedSearchIntersectsTermsAndRanksTitleMatchesFirst() {
+        index.putAfterCommit(book(1L, "深入理解Java虛擬機", "周志明", "ebook", "zh", "ACTIVE"));
+        index.putAfterCommit(book(2L, "演算法導論", "ＪＡＶＡ Team", "paper", "en", "ACTIVE"));
+        index.putAfterCommit(book(3L, "機器學習", "李宏毅", "ebook", "zh", "ACTIVE"));
+
+        // 書名權重高於作者；全形英文經 NFKC 後與半形相同
+        assertThat(ids(index.search("java", null, null, null, 0, 10))).containsExactly(1L, 2L);
+        // 中文 bigram 取交集
+        assertThat(ids(index.search("虛擬機", null, null, null, 0, 10))).containsExactly(1L);
+        assertThat(ids(index.search("理解 演算", null, null, null, 0, 10))).isEmpty();
+        // 單一中文字走單字 token
+        assertThat(ids(index.search("機", null, null, null, 0, 10))).containsExactlyInAnyOrder(1L, 3L);
+
+        BookSearchResponse phrase = index.search("機器學習", null, null, null, 0, 10);
+        assertThat(ids(phrase)).containsExactly(3L);
+        assertThat(phrase.getItems().get(0).getScore()).isGreaterThan(5.0);
+    }
+
+    @Test
+    void facetsApplyOtherFiltersOnlyForQueriesAndBrowsing() {
+        index.putAfterCommit(book(1L, "小說一", "甲", "ebook", "zh", "ACTIVE"));
+        index.putAfterCommit(book(2L, "小說二", "乙", "paper", "zh", "ACTIVE"));
+        index.putAfterCommit(book(3L, "小說三", "丙", "ebook", "en", "INACTIVE"));
+        index.putAfterCommit(book(4L, "小說四", "丁", "ebook", null, "ACTIVE"));
+
+        for (String q : new String[]{"小說", ""}) {
+            BookSearchResponse r = index.search(q, "ebook", null, null, 0, 10);
+            assertThat(r.getTotal()).isEqualTo(3);
+            // format facet 不受 format 篩選影響，其他 facet 受影響
+            assertThat(r.getFacets().get("format")).containsEntry("ebook", 3).containsEntry("paper", 1);
+            assertThat(r.getFacets().get("language")).containsEntry("zh", 1).containsEntry("en", 1)
+                    .containsEntry("(未設定)", 1);
+            assertThat(r.getFacets().get("status")).containsEntry("ACTIVE", 2).containsEntry("INACTIVE", 1);
+        }
+    }
+
+    @Test
+    void emptyQueryPagesByIdDescending() {
+        for (long id = 1; id <= 5; id++) {
+            index.putAfterCommit(book(id, "書" + id, "作者", id % 2 == 0 ? "paper" : "ebook", "zh", "ACTIVE"));
+        }
+
+        assertThat(ids(index.search("", null, null, null, 0, 2))).containsExactly(5L, 4L);
+        assertThat(ids(index.search(null, null, null, null, 1, 2))).containsExactly(3L, 2L);
+        assertThat(ids(index.search(" ", null, null, null, 2, 2))).containsExactly(1L);
+        assertThat(index.search("", null, null, null, 3, 2).getItems()).isEmpty();
+
+        BookSearchResponse ebook = index.search("", "ebook", null, null, 0, 10);
+        assertThat(ids(ebook)).containsExactly(5L, 3L, 1L);
+        assertThat(ebook.getTotal()).isEqualTo(3);
+    }
+
+    @Test
+    void incrementalUpdatesReplaceTermsAndCounts() {
+        index.putAfterCommit(book(1L, "資料結構", "甲", "ebook", "zh", "ACTIVE"));
+        index.putAfterCommit(book(2L, "作業系統", "乙", "ebook", "zh", "ACTIVE"));
+
+        index.putAfterCommit(book(1L, "計算機網路", "甲", "paper", "zh", "ACTIVE"));
+        assertThat(ids(index.search("資料", null, null, null, 0, 10))).isEmpty();
+        assertThat(ids(index.search("網路", null, null, null, 0, 10))).containsExactly(1L);
+        assertThat(index.search("", null, null, null, 0, 10).getFacets().get("format"))
+                .containsEntry("ebook", 1).containsEntry("paper", 1);
+
+        index.removeAfterCommit(2L);
+        BookSearchResponse all = index.search("", null, null, null, 0, 10);
+        assertThat(ids(all)).containsExactly(1L);
+        assertThat(all.getTotal()).isEqualTo(1);
+        assertThat(all.getFacets().get("format")).containsOnlyKeys("paper");
+        assertThat(ids(index.search("作業", null, null, null, 0, 10))).isEmpty();
+    }
+
+    @Test
+    void updatesCommittedDuringRebuildAreReplayed() {
+        when(bookRepository.findAll(any(Pageable.class))).thenAnswer(inv -> {
+            // 快照讀取期間：書 1 被修改、書 2 被刪除、新增書 3
+            index.putAfterCommit(book(1L, "新書名", "甲", "ebook", "zh", "ACTIVE"));
+            index.removeAfterCommit(2L);
+            index.putAfterCommit(book(3L, "新上架", "丙", "ebook", "zh", "ACTIVE"));
+            return new PageImpl<>(List.of(
+                    book(1L, "舊書名", "甲", "ebook", "zh", "ACTIVE"),
+                    book(2L, "已刪除", "乙", "ebook", "zh", "ACTIVE")), inv.getArgument(0), 2);
+        });
+
+        index.rebuild();
+
+        BookSearchResponse all = index.search("", null, null, null, 0, 10);
+        assertThat(ids(all)).containsExactly(3L, 1L);
+        assertThat(all.getTotal()).isEqualTo(2);
+        assertThat(ids(index.search("新書", null, null, null, 0, 10))).containsExactly(1L);
+        assertThat(ids(index.search("舊書", null, null, null, 0, 10))).isEmpty();
+        assertThat(ids(index.search("刪除", null, null, null, 0, 10))).isEmpty();
+
+        // 重建結束後不再記錄
+        index.putAfterCommit(book(4L, "之後", "丁", "ebook", "zh", "ACTIVE"));
+        assertThat(index.search("", null, null, null, 0, 10).getTotal()).isEqualTo(3);
+    }
+
+    private static List<Long> ids(BookSearchResponse r) {
+        return r.getItems().stream().map(BookSearchResponse.Hit::getId).toList();
+    }
+
+    private static Book book(Long id, String title, String author, String format, String language, String status) {
+        return Book.builder().id(id).title(title).author(author).listPrice(100)
+                .format(format).language(language).status(status).build();
+    }
+}
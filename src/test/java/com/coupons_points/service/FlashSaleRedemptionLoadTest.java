@@ -0,0 +1,229 @@
+package com.coupons_points.service;
+
+import com.coupons_points.dto.coupon.CouponDtos;
+import com.coupons_points.entity.Coupon;
+import com.coupons_points.repository.CouponRepository;
+import com.pagerealm.PageRealmApplication;
+import com.pagerealm.security.config.TotpEncryptorConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 搶券壓力測試：兩個 FlashSaleRedemptionService 實例模擬兩個節點共用同一個資料庫
+ * - 每個節點的記憶體名額都以為有 LIMIT 張，合計請求遠超過上限
+ * - 回應成功的核銷必須已寫入資料庫，且總數不可超過 total_usage_limit
+ * - 設定個人上限時，同一使用者跨節點的核銷數也不可超過 per_user_limit
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@ContextConfiguration(classes = PageRealmApplication.class)
+@Import(TotpEncryptorConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FlashSaleRedemptionLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlashSaleRedemptionLoadTest.class);
+
+    private static final int LIMIT = 150;
+    private static final int THREADS = 32;
+    private static final int REDEEMS_PER_THREAD = 20;
+    private static final int PER_USER_LIMIT = 3;
+    private static final int USERS = 5;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CouponRepository couponRepository;
+
+    private final List<FlashSaleRedemptionService> nodes = new ArrayList<>();
+
+    @BeforeEach
+    void startNodes() {
+        for (int i = 0; i < 2; i++) {
+            FlashSaleRedemptionService node = new FlashSaleRedemptionService(jdbc, transactionManager);
+            ReflectionTestUtils.setField(node, "queueCapacity", 10000);
+            ReflectionTestUtils.setField(node, "batchSize", 200);
+            ReflectionTestUtils.setField(node, "pollMs", 50L);
+            node.start();
+            nodes.add(node);
+        }
+    }
+
+    @AfterEach
+    void stopNodes() throws InterruptedException {
+        for (FlashSaleRedemptionService node : nodes) node.stop();
+        jdbc.update("DELETE FROM coupon_redemptions");
+        jdbc.update("DELETE FROM coupon_user_usage");
+        jdbc.update("DELETE FROM coupon_usage");
+        couponRepository.deleteAll();
+    }
+
+    @Test
+    void twoNodesNeverOversellAndAcknowledgedRedemptionsArePersisted() throws Exception {
+        Coupon coupon = flashSaleCoupon("FLASH-LOAD");
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger soldOut = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            FlashSaleRedemptionService node = nodes.get(t % nodes.size());
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < REDEEMS_PER_THREAD; i++) {
+                    long orderId = (long) thread * 1000 + i;
+                    try {
+                        node.redeem(coupon, request(orderId % 97, orderId), 50);
+                        succeeded.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        soldOut.incrementAndGet();
+                    } catch (Throwable e) {
+                        unexpected.add(e);
+                    }
+                }
+                return null;
+            }));
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) f.get(2, TimeUnit.MINUTES);
+        pool.shutdown();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began);
+        logger.info("Flash sale load: {} requests on {} nodes in {} ms, {} applied, {} sold out",
+                THREADS * REDEEMS_PER_THREAD, nodes.size(), elapsedMs, succeeded.get(), soldOut.get());
+
+        assertThat(unexpected).isEmpty();
+        assertThat(succeeded.get()).isEqualTo(LIMIT);
+        assertThat(soldOut.get()).isEqualTo(THREADS * REDEEMS_PER_THREAD - LIMIT);
+        // 回應成功的筆數、實際寫入筆數與計數三方一致
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM coupon_redemptions WHERE coupon_id = ? AND status = 'APPLIED'",
+                Integer.class, coupon.getId())).isEqualTo(LIMIT);
+        assertThat(jdbc.queryForObject("SELECT used_count FROM coupon_usage WHERE coupon_id = ?",
+                Integer.class, coupon.getId())).isEqualTo(LIMIT);
+        assertThat(jdbc.queryForObject("SELECT SUM(used_count) FROM coupon_user_usage WHERE coupon_id = ?",
+                Integer.class, coupon.getId())).isEqualTo(LIMIT);
+    }
+
+    @Test
+    void twoNodesNeverExceedPerUserLimit() throws Exception {
+        // 總上限足夠，只有個人上限會擋；每個節點的記憶體計數各自以為還有 PER_USER_LIMIT 次
+        Coupon coupon = flashSaleCoupon("FLASH-PER-USER", PER_USER_LIMIT);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            FlashSaleRedemptionService node = nodes.get(t % nodes.size());
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < REDEEMS_PER_THREAD; i++) {
+                    long orderId = (long) thread * 1000 + i;
+                    try {
+                        node.redeem(coupon, request(orderId % USERS, orderId), 50);
+                        succeeded.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        rejected.incrementAndGet();
+                    } catch (Throwable e) {
+                        unexpected.add(e);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(2, TimeUnit.MINUTES);
+        pool.shutdown();
+
+        assertThat(unexpected).isEmpty();
+        assertThat(succeeded.get()).isEqualTo(USERS * PER_USER_LIMIT);
+        assertThat(rejected.get()).isEqualTo(THREADS * REDEEMS_PER_THREAD - USERS * PER_USER_LIMIT);
+        List<Integer> perUser = jdbc.queryForList("SELECT COUNT(*) FROM coupon_redemptions WHERE coupon_id = ? " +
+                "AND status = 'APPLIED' GROUP BY user_id", Integer.class, coupon.getId());
+        assertThat(perUser).hasSize(USERS).allMatch(n -> n == PER_USER_LIMIT);
+        assertThat(jdbc.queryForList("SELECT used_count FROM coupon_user_usage WHERE coupon_id = ?",
+                Integer.class, coupon.getId())).hasSize(USERS).allMatch(n -> n == PER_USER_LIMIT);
+        assertThat(jdbc.queryForObject("SELECT used_count FROM coupon_usage WHERE coupon_id = ?",
+                Integer.class, coupon.getId())).isEqualTo(USERS * PER_USER_LIMIT);
+    }
+
+    @Test
+    void duplicateOrderIsRejectedAndPermitReturned() {
+        Coupon coupon = flashSaleCoupon("FLASH-DUP");
+        FlashSaleRedemptionService node = nodes.get(0);
+        CouponDtos.RedemptionResponse first = node.redeem(coupon, request(1L, 500L), 50);
+        assertThat(first.getStatus()).isEqualTo("APPLIED");
+        int before = node.availablePermits(coupon);
+
+        assertThatThrownBy(() -> node.redeem(coupon, request(1L, 500L), 50))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("該訂單已使用此券");
+        assertThat(node.availablePermits(coupon)).isEqualTo(before);
+        assertThat(node.userUsed(coupon, 1L)).isEqualTo(1);
+    }
+
+    private Coupon flashSaleCoupon(String code) {
+        return flashSaleCoupon(code, null);
+    }
+
+    private Coupon flashSaleCoupon(String code, Integer perUserLimit) {
+        return couponRepository.save(Coupon.builder()
+                .name(code)
+                .codeType(Coupon.CouponCodeType.GENERIC)
+                .genericCode(code)
+                .discountType(Coupon.DiscountType.FIXED)
+                .discountValue(50)
+                .startsAt(LocalDateTime.now().minusDays(1))
+                .endsAt(LocalDateTime.now().plusDays(1))
+                .status(Coupon.CouponStatus.ACTIVE)
+                .totalUsageLimit(LIMIT)
+                .perUserLimit(perUserLimit)
+                .flashSale(true)
+                .build());
+    }
+
+    private static CouponDtos.RedeemRequest request(long userId, long orderId) {
+        CouponDtos.RedeemRequest req = new CouponDtos.RedeemRequest();
+        req.setUserId(userId);
+        req.setOrderId(orderId);
+        req.setOrderAmount(1000);
+        return req;
+    }
+}
@@ -0,0 +1,168 @@
+package com.coupons_points.service;
+
+import com.coupons_points.dto.points.PointsDtos;
+import com.coupons_points.entity.PointLot;
+import com.coupons_points.entity.PointsLedger;
+import com.coupons_points.repository.PointLotRepository;
+import com.coupons_points.repository.PointsAccountRepository;
+import com.coupons_points.repository.PointsLedgerRepository;
+import com.pagerealm.PageRealmApplication;
+import com.pagerealm.security.config.TotpEncryptorConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 同一帳戶併發扣點：帳戶列 FOR UPDATE 鎖確保不會重複扣點
+ * 每個 redeem 在自己的執行緒與交易中執行(測試本身不包交易)，全部由同一個 latch 同時放行；
+ * 放行前測試先鎖住帳戶列，等全部扣點都已開始後才釋放，確保數百筆扣點同時在資料庫端等待帳戶鎖
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@ContextConfiguration(classes = PageRealmApplication.class)
+@Import({PointsService.class, PointsExpiryService.class, TotpEncryptorConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "spring.datasource.hikari.maximum-pool-size=" + (PointsServiceConcurrencyTest.ATTEMPTS + 1))
+class PointsServiceConcurrencyTest {
+
+    private static final long USER_ID = 42L;
+    static final int ATTEMPTS = 300;
+    private static final int POINTS_PER_REDEEM = 10;
+
+    @Autowired
+    private PointsService pointsService;
+
+    @Autowired
+    private PointsAccountRepository accountRepo;
+
+    @Autowired
+    private PointsLedgerRepository ledgerRepo;
+
+    @Autowired
+    private PointLotRepository lotRepo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentRedeemsNeverDoubleSpend() throws Exception {
+        // 1000 點分成三個批次，扣點需跨批次 FIFO
+        for (int amount : new int[]{300, 300, 400}) {
+            PointsDtos.AdjustRequest req = new PointsDtos.AdjustRequest();
+            req.setUserId(USER_ID);
+            req.setAmount(amount);
+            pointsService.adjust(req);
+        }
+        int initial = 1000;
+        assertThat(ATTEMPTS * POINTS_PER_REDEEM).isGreaterThan(initial);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger insufficient = new AtomicInteger();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch ready = new CountDownLatch(ATTEMPTS);
+        CountDownLatch start = new CountDownLatch(1);
+        // 每筆扣點一條執行緒，全部就緒後同時放行
+        ExecutorService pool = Executors.newFixedThreadPool(ATTEMPTS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < ATTEMPTS; i++) {
+            long orderId = i + 1;
+            futures.add(pool.submit(() -> {
+                PointsDtos.RedeemRequest req = new PointsDtos.RedeemRequest();
+                req.setUserId(USER_ID);
+                req.setOrderId(orderId);
+                req.setRedeemPoints(POINTS_PER_REDEEM);
+                ready.countDown();
+                start.await();
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    pointsService.redeem(req);
+                    succeeded.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    insufficient.incrementAndGet();
+                } catch (Throwable e) {
+                    unexpected.add(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                return null;
+            }));
+        }
+        assertThat(ready.await(1, TimeUnit.MINUTES)).isTrue();
+
+        // 持有帳戶列鎖，直到全部扣點都已進入 redeem
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService lockHolder = Executors.newSingleThreadExecutor();
+        Future<?> holder = lockHolder.submit(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    jdbc.queryForList("SELECT user_id FROM points_accounts WHERE user_id = ? FOR UPDATE", USER_ID);
+                    locked.countDown();
+                    try {
+                        release.await(1, TimeUnit.MINUTES);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        assertThat(locked.await(1, TimeUnit.MINUTES)).isTrue();
+        start.countDown();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (inFlight.get() < ATTEMPTS && System.nanoTime() < deadline) Thread.sleep(10);
+        // 讓最後進入的扣點也走到帳戶鎖
+        Thread.sleep(200);
+        release.countDown();
+        holder.get(1, TimeUnit.MINUTES);
+        lockHolder.shutdown();
+        for (Future<?> f : futures) f.get(2, TimeUnit.MINUTES);
+        pool.shutdown();
+
+        assertThat(unexpected).isEmpty();
+        // 全部扣點同時進行
+        assertThat(maxInFlight.get()).isEqualTo(ATTEMPTS);
+        assertThat(succeeded.get()).isEqualTo(initial / POINTS_PER_REDEEM);
+        assertThat(insufficient.get()).isEqualTo(ATTEMPTS - succeeded.get());
+
+        // 帳戶餘額、批次剩餘與明細加總三方一致
+        assertThat(accountRepo.findById(USER_ID).orElseThrow().getBalance()).isZero();
+        List<PointLot> lots = lotRepo.findByUserIdOrderByExpiresAtAscIdAsc(USER_ID);
+        assertThat(lots).allSatisfy(l -> assertThat(l.remaining()).isZero());
+        assertThat(lots.stream().mapToInt(PointLot::getUsedPoints).sum()).isEqualTo(initial);
+
+        List<PointsLedger> ledger = ledgerRepo.findAll();
+        assertThat(ledger.stream().mapToInt(PointsLedger::getChangeAmount).sum()).isZero();
+        List<PointsLedger> redeems = ledger.stream().filter(l -> l.getReason() == PointsLedger.Reason.REDEEM).toList();
+        assertThat(redeems).hasSize(succeeded.get());
+        // 扣點依序執行：每筆的 balanceAfter 都不同，恰為 990, 980, ..., 0
+        assertThat(redeems.stream().map(PointsLedger::getBalanceAfter).distinct().count()).isEqualTo(redeems.size());
+        assertThat(redeems.stream().mapToInt(PointsLedger::getBalanceAfter).min().orElseThrow()).isZero();
+        assertThat(redeems.stream().mapToInt(PointsLedger::getBalanceAfter).max().orElseThrow()).isEqualTo(initial - POINTS_PER_REDEEM);
+    }
+}
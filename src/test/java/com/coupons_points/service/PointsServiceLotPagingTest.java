@@ -0,0 +1,97 @@
+package com.coupons_points.service;
+
+import com.coupons_points.dto.points.PointsDtos;
+import com.coupons_points.entity.PointLot;
+import com.coupons_points.repository.PointLotRepository;
+import com.pagerealm.PageRealmApplication;
+import com.pagerealm.security.config.TotpEncryptorConfig;
+import com.pagerealm.utils.KeysetCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 點數批次 keyset 分頁：永不到期(expiresAt 為 NULL)的批次排在最後，游標跨段時不遺漏也不重複
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@ContextConfiguration(classes = PageRealmApplication.class)
+@Import({PointsService.class, PointsExpiryService.class, TotpEncryptorConfig.class})
+class PointsServiceLotPagingTest {
+
+    private static final long USER_ID = 7L;
+
+    @Autowired
+    private PointsService pointsService;
+
+    @Autowired
+    private PointLotRepository lotRepo;
+
+    @Test
+    void pagesThroughDatedThenNeverExpiringLots() {
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 0, 0);
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) expected.add(lot(base.plusDays(i)).getId());
+        for (int i = 0; i < 4; i++) expected.add(lot(null).getId());
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            PointsDtos.CursorPage<PointsDtos.LotItem> page = pointsService.getLotsAfter(USER_ID, cursor, 2);
+            page.getItems().forEach(item -> seen.add(item.getId()));
+            cursor = page.getNextCursor();
+            assertThat(page.isHasNext()).isEqualTo(cursor != null);
+            pages++;
+        } while (cursor != null);
+
+        assertThat(seen).containsExactlyElementsOf(expected);
+        assertThat(pages).isEqualTo(5);
+    }
+
+    @Test
+    void onlyNeverExpiringLots() {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 3; i++) expected.add(lot(null).getId());
+
+        PointsDtos.CursorPage<PointsDtos.LotItem> first = pointsService.getLotsAfter(USER_ID, null, 2);
+        assertThat(first.getNextCursor()).isEqualTo("_" + expected.get(1));
+        PointsDtos.CursorPage<PointsDtos.LotItem> second = pointsService.getLotsAfter(USER_ID, first.getNextCursor(), 2);
+
+        assertThat(first.getItems()).extracting(PointsDtos.LotItem::getId).containsExactlyElementsOf(expected.subList(0, 2));
+        assertThat(second.getItems()).extracting(PointsDtos.LotItem::getId).containsExactly(expected.get(2));
+        assertThat(second.isHasNext()).isFalse();
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatThrownBy(() -> pointsService.getLotsAfter(USER_ID, "not-a-cursor", 2))
+                .isInstanceOf(KeysetCursor.InvalidCursorException.class);
+        // 明細依 createdAt 排序，不接受時間留空的游標
+        assertThatThrownBy(() -> pointsService.getLedgerBefore(USER_ID, "_42", 2))
+                .isInstanceOf(KeysetCursor.InvalidCursorException.class);
+    }
+
+    private PointLot lot(LocalDateTime expiresAt) {
+        return lotRepo.save(PointLot.builder()
+                .userId(USER_ID)
+                .source(PointLot.Source.OTHER)
+                .earnedPoints(100)
+                .usedPoints(0)
+                .expiresAt(expiresAt)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+}
@@ -0,0 +1,93 @@
+package com.pagerealm.s3;
+
+import com.adobe.testing.s3mock.junit5.S3MockExtension;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * S3Service 對行程內 S3 相容伺服器(S3Mock)的串流上傳
+ */
+class S3ServiceTest {
+
+    private static final String BUCKET = "pagerealm-test";
+
+    // S3Mock 以內嵌 Spring Boot 啟動，會讀到本專案的 application.properties 與自動設定；
+    // 補回被遮蔽的 S3Mock 設定，並關閉資料庫與安全性自動設定
+    @RegisterExtension
+    static final S3MockExtension S3_MOCK = S3MockExtension.builder()
+            .silent()
+            .withInitialBuckets(BUCKET)
+            .withProperty("com.adobe.testing.s3mock.region", "us-east-1")
+            .withProperty("spring.main.lazy-initialization", "true")
+            .withProperty("spring.autoconfigure.exclude", String.join(",",
+                    "org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration",
+                    "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration",
+                    "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration",
+                    "org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration",
+                    "org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration",
+                    "org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAutoConfiguration",
+                    "org.springframework.boot.autoconfigure.security.oauth2.client.servlet.OAuth2ClientAutoConfiguration"))
+            .build();
+
+    private static S3Client client;
+
+    @BeforeAll
+    static void createClient(final S3Client s3Client) {
+        client = s3Client;
+    }
+
+    @SuppressWarnings("unchecked")
+    private S3Service service() {
+        S3Service service = new S3Service(client, mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(service, "awsRegion", "ap-northeast-1");
+        return service;
+    }
+
+    @Test
+    void streamsInputStreamWithKnownLength() {
+        byte[] data = randomBytes(3 * 1024 * 1024 + 17);
+        InputStream in = new ByteArrayInputStream(data);
+
+        service().putObject(BUCKET, "books/1/original.bin", in, data.length, "application/octet-stream");
+
+        assertThat(service().getObject(BUCKET, "books/1/original.bin")).isEqualTo(data);
+        assertThat(client.headObject(b -> b.bucket(BUCKET).key("books/1/original.bin")).contentType())
+                .isEqualTo("application/octet-stream");
+    }
+
+    @Test
+    void uploadsMultipartFileAtTheUploadLimit() {
+        byte[] data = randomBytes(5 * 1024 * 1024);
+        MockMultipartFile file = new MockMultipartFile("file", "cover.png", "image/png", data);
+
+        service().putObject(BUCKET, "books/2/original.png", file, "image/png");
+
+        assertThat(service().getObject(BUCKET, "books/2/original.png")).isEqualTo(data);
+        assertThat(service().exists(BUCKET, "books/2/original.png")).isTrue();
+        assertThat(service().exists(BUCKET, "books/2/missing.png")).isFalse();
+    }
+
+    @Test
+    void asyncUploadIsUnavailableWithoutAsyncClient() {
+        assertThat(service().isAsyncEnabled()).isFalse();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
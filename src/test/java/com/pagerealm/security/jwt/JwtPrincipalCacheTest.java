@@ -0,0 +1,96 @@
+package com.pagerealm.security.jwt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtPrincipalCacheTest {
+
+    private static final Date EXP = new Date(System.currentTimeMillis() + 3_600_000L);
+
+    private JwtPrincipalCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new JwtPrincipalCache();
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+    }
+
+    @Test
+    void staleLoadCannotBePutBackAfterEvictUser() {
+        long generation = cache.generation("a@example.com");
+        // 載入期間帳號被停用並 evict
+        cache.evictUser("a@example.com");
+
+        cache.put("token-a", EXP, user("a@example.com"), generation);
+
+        assertThat(cache.get("token-a")).isNull();
+    }
+
+    @Test
+    void loadAfterEvictUserIsCached() {
+        cache.evictUser("a@example.com");
+
+        cache.put("token-a", EXP, user("a@example.com"), cache.generation("a@example.com"));
+
+        assertThat(cache.get("token-a")).isNotNull();
+    }
+
+    @Test
+    void evictUserRemovesAllTokensOfThatUserOnly() {
+        put("a1", "a@example.com");
+        put("a2", "a@example.com");
+        put("b1", "b@example.com");
+
+        cache.evictUser("a@example.com");
+
+        assertThat(cache.get("a1")).isNull();
+        assertThat(cache.get("a2")).isNull();
+        assertThat(cache.get("b1")).isNotNull();
+        assertThat(keysByUser()).containsOnlyKeys("b@example.com");
+    }
+
+    @Test
+    void lruAndExpiryRemovalsKeepTheEmailIndexInSync() {
+        ReflectionTestUtils.setField(cache, "maxSize", 2);
+        put("a1", "a@example.com");
+        put("b1", "b@example.com");
+        put("c1", "c@example.com");
+
+        assertThat(cache.get("a1")).isNull();
+        assertThat(keysByUser()).containsOnlyKeys("b@example.com", "c@example.com");
+
+        // 同一 Token 改放另一個使用者：舊的索引要移除
+        put("c1", "b@example.com");
+        assertThat(keysByUser()).containsOnlyKeys("b@example.com");
+        assertThat(keysByUser().get("b@example.com")).hasSize(2);
+
+        ReflectionTestUtils.setField(cache, "ttlMs", 0L);
+        cache.put("d1", EXP, user("d@example.com"), cache.generation("d@example.com"));
+        assertThat(cache.get("d1")).isNull();
+        assertThat(keysByUser()).doesNotContainKey("d@example.com");
+    }
+
+    private void put(String token, String email) {
+        cache.put(token, EXP, user(email), cache.generation(email));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Set<String>> keysByUser() {
+        return (Map<String, Set<String>>) ReflectionTestUtils.getField(cache, "keysByUser");
+    }
+
+    private static UserDetails user(String email) {
+        return new User(email, "", List.of());
+    }
+}
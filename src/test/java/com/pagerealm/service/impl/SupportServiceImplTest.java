@@ -0,0 +1,175 @@
+package com.pagerealm.service.impl;
+
+import com.pagerealm.PageRealmApplication;
+import com.pagerealm.dto.response.SupportTicketOverviewDTO;
+import com.pagerealm.dto.response.SupportTicketSummaryDTO;
+import com.pagerealm.entity.AppTicketCategory;
+import com.pagerealm.entity.SupportTicket;
+import com.pagerealm.entity.User;
+import com.pagerealm.repository.SupportMessageRepository;
+import com.pagerealm.repository.SupportTicketRepository;
+import com.pagerealm.repository.UserRepository;
+import com.pagerealm.security.config.TotpEncryptorConfig;
+import com.pagerealm.utils.SupportEventBus;
+import com.pagerealm.utils.SupportSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 工單 message_count：建立、會員留言、客服回覆時於同一交易遞增，總覽直接讀取；舊資料由回填補上
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@ContextConfiguration(classes = PageRealmApplication.class)
+@Import(TotpEncryptorConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SupportServiceImplTest {
+
+    @Autowired
+    private SupportTicketRepository ticketRepo;
+
+    @Autowired
+    private SupportMessageRepository msgRepo;
+
+    @Autowired
+    private UserRepository userRepo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SupportServiceImpl service;
+    private TransactionTemplate tx;
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        service = new SupportServiceImpl(ticketRepo, msgRepo, userRepo, mock(SupportEventBus.class),
+                mock(SupportSearchIndex.class));
+        tx = new TransactionTemplate(transactionManager);
+        User user = new User();
+        user.setUserName("member");
+        user.setEmail("member@example.com");
+        user.setEnabled(true);
+        userId = userRepo.save(user).getUserId();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM support_message");
+        jdbc.update("DELETE FROM support_ticket");
+        jdbc.update("DELETE FROM users");
+    }
+
+    @Test
+    void overviewReadsMessageCountMaintainedOnEveryMessage() {
+        Long ticketId = createTicket();
+        tx.executeWithoutResult(s -> service.addUserMessage(userId, ticketId, "補充說明"));
+        tx.executeWithoutResult(s -> service.adminReply(99L, ticketId, "已收到", null));
+        tx.executeWithoutResult(s -> service.addUserMessage(userId, ticketId, "謝謝"));
+
+        assertThat(messageCountColumn(ticketId)).isEqualTo(4);
+        SupportTicketOverviewDTO row = service.ticketOverview(userId, null, 10).getItems().get(0);
+        assertThat(row.getMessageCount()).isEqualTo(4L);
+        assertThat(row.getLastMessagePreview()).isEqualTo("謝謝");
+    }
+
+    @Test
+    void concurrentMessagesAreAllCounted() throws Exception {
+        Long ticketId = createTicket();
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int n = i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                if (n % 2 == 0) tx.executeWithoutResult(s -> service.addUserMessage(userId, ticketId, "留言 " + n));
+                else tx.executeWithoutResult(s -> service.adminReply(99L, ticketId, "回覆 " + n, null));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(1, TimeUnit.MINUTES);
+        pool.shutdown();
+
+        assertThat(messageCountColumn(ticketId)).isEqualTo(threads + 1);
+        assertThat(service.ticketOverview(userId, null, 10).getItems().get(0).getMessageCount())
+                .isEqualTo(threads + 1L);
+    }
+
+    @Test
+    void legacyTicketsFallBackToCountUntilBackfilled() {
+        Long ticketId = createTicket();
+        tx.executeWithoutResult(s -> service.addUserMessage(userId, ticketId, "補充說明"));
+        // 模擬欄位加入前的舊資料
+        jdbc.update("UPDATE support_ticket SET message_count = NULL WHERE id = ?", ticketId);
+
+        assertThat(service.ticketOverview(userId, null, 10).getItems().get(0).getMessageCount()).isEqualTo(2L);
+        // 回填前的新訊息不會把 NULL 變成錯誤的數字
+        tx.executeWithoutResult(s -> service.adminReply(99L, ticketId, "已收到", null));
+        assertThat(messageCountColumn(ticketId)).isNull();
+
+        service.backfillMessageCounts();
+
+        assertThat(messageCountColumn(ticketId)).isEqualTo(3);
+        assertThat(service.ticketOverview(userId, null, 10).getItems().get(0).getMessageCount()).isEqualTo(3L);
+    }
+
+    @Test
+    void adminInboxFiltersUnassignedAndCategoryWithTheirIndexes() {
+        Long account = createTicket();
+        Long billing = tx.execute(s -> service.createTicket(userId, "會員", "member@example.com", "重複扣款",
+                "BILLING", "信用卡被扣兩次")).getId();
+        Long claimed = tx.execute(s -> service.createTicket(userId, "會員", "member@example.com", "退款",
+                "BILLING", "申請退款")).getId();
+        tx.executeWithoutResult(s -> service.assignTicket(claimed, 99L));
+
+        assertThat(service.adminSearchTickets(null, null, true, null, 10).getItems())
+                .extracting(SupportTicketSummaryDTO::getId).containsExactly(billing, account);
+        assertThat(service.adminSearchTickets(null, AppTicketCategory.BILLING, false, null, 10).getItems())
+                .extracting(SupportTicketSummaryDTO::getId).containsExactly(claimed, billing);
+
+        List<String> indexes = jdbc.queryForList(
+                "SELECT LOWER(index_name) FROM information_schema.indexes WHERE LOWER(table_name) = 'support_ticket'",
+                String.class);
+        assertThat(indexes).contains("idx_support_ticket_assignee_updated", "idx_support_ticket_category_updated");
+    }
+
+    private Long createTicket() {
+        SupportTicket t = tx.execute(s -> service.createTicket(userId, "會員", "member@example.com", "無法登入",
+                "ACCOUNT", "登入時出現錯誤"));
+        return t.getId();
+    }
+
+    private Integer messageCountColumn(Long ticketId) {
+        return jdbc.queryForObject("SELECT message_count FROM support_ticket WHERE id = ?", Integer.class, ticketId);
+    }
+}
@@ -0,0 +1,188 @@
+package com.pagerealm.utils;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.pagerealm.PageRealmApplication;
+import com.pagerealm.entity.EmailOutbox;
+import com.pagerealm.repository.EmailOutboxRepository;
+import com.pagerealm.security.config.TotpEncryptorConfig;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 信件寄送器對 GreenMail(行程內 SMTP)的整合測試：
+ * - 成功寄出後標記 SENT 並清空內文
+ * - 同批中單封失敗只影響該封
+ * - SMTP 無法連線時依指數退避延後重試，達 max-attempts 標記 FAILED
+ * - 超過保留期限的 SENT/FAILED 列被刪除，PENDING 保留
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@ContextConfiguration(classes = PageRealmApplication.class)
+@Import(TotpEncryptorConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EmailOutboxDispatcherTest {
+
+    @RegisterExtension
+    static final GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private static final long BACKOFF_BASE_MS = 60_000L;
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void sendsBatchAndClearsBody() throws Exception {
+        EmailOutbox a = enqueue("a@example.com", "您的驗證碼：123456");
+        EmailOutbox b = enqueue("b@example.com", "重設密碼：https://example.com/reset?token=secret");
+
+        assertThat(dispatcher(ServerSetupTest.SMTP.getPort(), 3).dispatchOnce()).isEqualTo(2);
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(2);
+        List<String> bodies = new ArrayList<>();
+        for (MimeMessage m : received) bodies.add((String) m.getContent());
+        assertThat(bodies).anySatisfy(body -> assertThat(body).contains("123456"));
+        for (EmailOutbox mail : outboxRepository.findAllById(List.of(a.getId(), b.getId()))) {
+            assertThat(mail.getStatus()).isEqualTo(EmailOutbox.Status.SENT);
+            assertThat(mail.getSentAt()).isNotNull();
+            assertThat(mail.getAttempts()).isEqualTo(1);
+            assertThat(mail.getClaimToken()).isNull();
+            assertThat(mail.getBody()).isEmpty();
+        }
+    }
+
+    @Test
+    void partialFailureOnlyRetriesFailedMessage() {
+        EmailOutbox ok = enqueue("ok@example.com", "hello");
+        // 空群組地址：SMTP 交談時沒有任何收件者，只有這一封失敗
+        EmailOutbox bad = enqueue("undisclosed-recipients:;", "secret");
+        LocalDateTime before = LocalDateTime.now();
+
+        assertThat(dispatcher(ServerSetupTest.SMTP.getPort(), 3).dispatchOnce()).isEqualTo(2);
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+        EmailOutbox sent = outboxRepository.findById(ok.getId()).orElseThrow();
+        assertThat(sent.getStatus()).isEqualTo(EmailOutbox.Status.SENT);
+        EmailOutbox retry = outboxRepository.findById(bad.getId()).orElseThrow();
+        assertThat(retry.getStatus()).isEqualTo(EmailOutbox.Status.PENDING);
+        assertThat(retry.getAttempts()).isEqualTo(1);
+        assertThat(retry.getLastError()).isNotBlank();
+        assertThat(retry.getBody()).isEqualTo("secret");
+        assertThat(retry.getNextAttemptAt()).isAfterOrEqualTo(before.plus(Duration.ofMillis(BACKOFF_BASE_MS)));
+    }
+
+    @Test
+    void unreachableServerBacksOffThenFails() {
+        EmailOutbox mail = enqueue("c@example.com", "您的驗證碼：654321");
+        // 沒有伺服器監聽的埠：整批連線失敗
+        EmailOutboxDispatcher dispatcher = dispatcher(ServerSetupTest.SMTP.getPort() + 17, 3);
+
+        LocalDateTime before = LocalDateTime.now();
+        assertThat(dispatcher.dispatchOnce()).isEqualTo(1);
+        EmailOutbox first = outboxRepository.findById(mail.getId()).orElseThrow();
+        assertThat(first.getStatus()).isEqualTo(EmailOutbox.Status.PENDING);
+        assertThat(first.getNextAttemptAt()).isAfterOrEqualTo(before.plus(Duration.ofMillis(BACKOFF_BASE_MS)));
+        // 尚未到期，不會被領取
+        assertThat(dispatcher.dispatchOnce()).isZero();
+
+        makeDue(mail.getId());
+        before = LocalDateTime.now();
+        dispatcher.dispatchOnce();
+        EmailOutbox second = outboxRepository.findById(mail.getId()).orElseThrow();
+        assertThat(second.getAttempts()).isEqualTo(2);
+        // 第二次失敗延後 base * 2
+        assertThat(second.getNextAttemptAt()).isAfterOrEqualTo(before.plus(Duration.ofMillis(BACKOFF_BASE_MS * 2)));
+
+        makeDue(mail.getId());
+        dispatcher.dispatchOnce();
+        EmailOutbox failed = outboxRepository.findById(mail.getId()).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(EmailOutbox.Status.FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(3);
+        assertThat(failed.getBody()).isEmpty();
+        assertThat(dispatcher.dispatchOnce()).isZero();
+    }
+
+    @Test
+    void purgesExpiredSentAndFailedRows() {
+        LocalDateTime old = LocalDateTime.now().minusDays(31);
+        EmailOutbox oldSent = save(old, EmailOutbox.Status.SENT);
+        EmailOutbox oldFailed = save(old, EmailOutbox.Status.FAILED);
+        EmailOutbox oldPending = save(old, EmailOutbox.Status.PENDING);
+        EmailOutbox recentSent = save(LocalDateTime.now().minusDays(1), EmailOutbox.Status.SENT);
+
+        assertThat(dispatcher(ServerSetupTest.SMTP.getPort(), 3).purge()).isEqualTo(2);
+
+        assertThat(outboxRepository.existsById(oldSent.getId())).isFalse();
+        assertThat(outboxRepository.existsById(oldFailed.getId())).isFalse();
+        assertThat(outboxRepository.existsById(oldPending.getId())).isTrue();
+        assertThat(outboxRepository.existsById(recentSent.getId())).isTrue();
+    }
+
+    private EmailOutboxDispatcher dispatcher(int port, int maxAttempts) {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("localhost");
+        sender.setPort(port);
+        sender.getJavaMailProperties().put("mail.smtp.connectiontimeout", "2000");
+        sender.getJavaMailProperties().put("mail.smtp.timeout", "2000");
+        EmailOutboxDispatcher dispatcher = new EmailOutboxDispatcher(outboxRepository, sender);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 20);
+        ReflectionTestUtils.setField(dispatcher, "ratePerSecond", 0d);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(dispatcher, "backoffBaseMs", BACKOFF_BASE_MS);
+        ReflectionTestUtils.setField(dispatcher, "backoffMaxMs", 3_600_000L);
+        ReflectionTestUtils.setField(dispatcher, "leaseMs", 300_000L);
+        ReflectionTestUtils.setField(dispatcher, "retentionDays", 30);
+        return dispatcher;
+    }
+
+    private EmailOutbox enqueue(String to, String body) {
+        return outboxRepository.save(EmailOutbox.builder()
+                .recipient(to)
+                .subject("PageRealm")
+                .body(body)
+                .html(false)
+                .build());
+    }
+
+    private EmailOutbox save(LocalDateTime createdAt, EmailOutbox.Status status) {
+        return outboxRepository.save(EmailOutbox.builder()
+                .recipient("old@example.com")
+                .subject("PageRealm")
+                .body("")
+                .status(status)
+                .createdAt(createdAt)
+                .build());
+    }
+
+    private void makeDue(Long id) {
+        EmailOutbox mail = outboxRepository.findById(id).orElseThrow();
+        mail.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        outboxRepository.save(mail);
+    }
+}
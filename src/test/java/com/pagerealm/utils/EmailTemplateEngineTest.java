@@ -0,0 +1,132 @@
+package com.pagerealm.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 信件範本：{{變數}} 編譯、subject: 標題列、HTML 跳脫、語系後備與填值吞吐量
+ */
+class EmailTemplateEngineTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailTemplateEngineTest.class);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compilesPlaceholdersAndParsesSubjectHeader() throws Exception {
+        write("welcome.txt", "﻿Subject:  歡迎 {{ name }}\r\n\r\n嗨 {{name}}，驗證碼 {{code}}。{{code}}\n");
+
+        EmailTemplateEngine.RenderedEmail mail = engine().render("welcome", null, Map.of("name", "Amy", "code", "123"));
+
+        assertThat(mail.subject()).isEqualTo("歡迎 Amy");
+        assertThat(mail.body()).isEqualTo("嗨 Amy，驗證碼 123。123\n");
+        assertThat(mail.html()).isFalse();
+    }
+
+    @Test
+    void unclosedPlaceholderOrMissingSubjectFailsAtLoad() throws Exception {
+        write("broken.txt", "subject: 你好\n\n嗨 {{name\n");
+        assertThatThrownBy(this::engine).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("broken.txt").hasMessageContaining("未閉合");
+
+        Files.delete(dir.resolve("broken.txt"));
+        write("nosubject.txt", "嗨 {{name}}\n");
+        assertThatThrownBy(this::engine).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("第一行須為 subject:");
+    }
+
+    @Test
+    void missingVariableIsReported() throws Exception {
+        write("reset.txt", "subject: 重設密碼\n\n{{name}} 請點 {{link}}\n");
+        EmailTemplateEngine engine = engine();
+
+        assertThatThrownBy(() -> engine.render("reset", null, Map.of("name", "Amy")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("缺少範本變數: link");
+        assertThatThrownBy(() -> engine.render("unknown", null, Map.of()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("unknown");
+    }
+
+    @Test
+    void escapesVariablesInHtmlBodiesOnly() throws Exception {
+        String template = "subject: {{name}} 的通知\n\n<p>{{name}}</p>\n";
+        write("notice.html", template);
+        write("notice_en.txt", template);
+        EmailTemplateEngine engine = engine();
+        Map<String, String> data = Map.of("name", "<b>Tom & \"Jerry\"'s</b>");
+
+        EmailTemplateEngine.RenderedEmail html = engine.render("notice", null, data);
+        assertThat(html.html()).isTrue();
+        assertThat(html.body()).isEqualTo("<p>&lt;b&gt;Tom &amp; &quot;Jerry&quot;&#39;s&lt;/b&gt;</p>\n");
+        // 主旨為純文字，不跳脫
+        assertThat(html.subject()).isEqualTo("<b>Tom & \"Jerry\"'s</b> 的通知");
+
+        EmailTemplateEngine.RenderedEmail txt = engine.render("notice", Locale.ENGLISH, data);
+        assertThat(txt.html()).isFalse();
+        assertThat(txt.body()).isEqualTo("<p><b>Tom & \"Jerry\"'s</b></p>\n");
+    }
+
+    @Test
+    void fallsBackFromLanguageCountryToLanguageToDefault() throws Exception {
+        write("greet.txt", "subject: 預設\n\nzh\n");
+        write("greet_en.txt", "subject: en\n\nen\n");
+        write("greet_en_GB.txt", "subject: en_GB\n\nen_GB\n");
+        EmailTemplateEngine engine = engine();
+
+        assertThat(engine.render("greet", Locale.UK, Map.of()).subject()).isEqualTo("en_GB");
+        assertThat(engine.render("greet", Locale.US, Map.of()).subject()).isEqualTo("en");
+        assertThat(engine.render("greet", Locale.ENGLISH, Map.of()).subject()).isEqualTo("en");
+        assertThat(engine.render("greet", Locale.FRANCE, Map.of()).subject()).isEqualTo("預設");
+        assertThat(engine.render("greet", Locale.TRADITIONAL_CHINESE, Map.of()).subject()).isEqualTo("預設");
+        assertThat(engine.render("greet", null, Map.of()).subject()).isEqualTo("預設");
+    }
+
+    @Test
+    void rendersPrecompiledTemplatesQuickly() throws Exception {
+        write("verification.html", "subject: {{appName}} 驗證信\n\n"
+                + "<html><body><h1>哈囉 {{name}}</h1><p>請點選 <a href=\"{{link}}\">這裡</a> 完成驗證，"
+                + "連結 {{minutes}} 分鐘內有效。</p><p>{{appName}} 團隊</p></body></html>\n");
+        EmailTemplateEngine engine = engine();
+        Map<String, String> vars = Map.of("appName", "PageRealm", "name", "王小明 <wang@example.com>",
+                "link", "https://example.com/verify?token=abc&user=1", "minutes", "30");
+
+        int warmup = 20_000;
+        for (int i = 0; i < warmup; i++) engine.render("verification", null, vars);
+        int renders = 200_000;
+        long totalLength = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < renders; i++) totalLength += engine.render("verification", null, vars).body().length();
+        long elapsedNs = Math.max(1, System.nanoTime() - started);
+        long perSecond = renders * 1_000_000_000L / elapsedNs;
+
+        logger.info("Email template render: {} renders in {} ms, {} renders/s", renders, elapsedNs / 1_000_000, perSecond);
+        assertThat(totalLength).isPositive();
+        // 只做填值與跳脫，不重新解析範本：單執行緒也遠高於寄信速率
+        assertThat(perSecond).isGreaterThan(100_000);
+    }
+
+    private EmailTemplateEngine engine() throws Exception {
+        EmailTemplateEngine engine = new EmailTemplateEngine();
+        ReflectionTestUtils.setField(engine, "location", dir.toUri() + "*.*");
+        engine.load();
+        return engine;
+    }
+
+    private void write(String name, String content) throws Exception {
+        Files.writeString(dir.resolve(name), content, StandardCharsets.UTF_8);
+    }
+}
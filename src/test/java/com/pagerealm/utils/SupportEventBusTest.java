@@ -0,0 +1,214 @@
+package com.pagerealm.utils;
+
+import com.pagerealm.controller.AdminSupportController;
+import com.pagerealm.entity.AppTicketStatus;
+import com.pagerealm.entity.SupportTicket;
+import com.pagerealm.service.SupportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * SSE 事件匯流排：經由 AdminSupportController 的串流端點訂閱
+ * 寫出工作先排入 ManualExecutor，由測試決定何時執行，以模擬慢速連線
+ */
+class SupportEventBusTest {
+
+    private static final long TICKET_ID = 1L;
+
+    private final ManualExecutor writers = new ManualExecutor();
+    private SupportEventBus bus;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        bus = new SupportEventBus(TimeUnit.HOURS.toMillis(1), writers);
+        ReflectionTestUtils.setField(bus, "bufferSize", 4);
+        ReflectionTestUtils.setField(bus, "timeoutMs", 60_000L);
+        ReflectionTestUtils.setField(bus, "maxSubscribers", 3);
+        SupportService supportService = mock(SupportService.class);
+        when(supportService.adminFindTicket(anyLong())).thenReturn(Optional.of(new SupportTicket()));
+        mvc = MockMvcBuilders.standaloneSetup(
+                new AdminSupportController(supportService, mock(AuthUtil.class), bus, mock(SupportSearchIndex.class))).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.shutdown();
+    }
+
+    @Test
+    void overflowDropsBacklogAndSendsResync() throws Exception {
+        MvcResult stream = subscribeTicket();
+
+        // 寫出尚未執行：ready + 3 筆填滿緩衝，之後溢位兩次，最後只留下最後一筆
+        for (int i = 0; i < 10; i++) publish(AppTicketStatus.IN_PROGRESS);
+        writers.runAll();
+
+        String body = stream.getResponse().getContentAsString();
+        assertThat(count(body, "event:resync")).isEqualTo(1);
+        assertThat(count(body, "event:status")).isEqualTo(1);
+        assertThat(body).doesNotContain("event:ready");
+        assertThat(body.indexOf("event:resync")).isLessThan(body.indexOf("event:status"));
+
+        // resync 之後恢復正常推送
+        publish(AppTicketStatus.RESOLVED);
+        writers.runAll();
+        body = stream.getResponse().getContentAsString();
+        assertThat(count(body, "event:resync")).isEqualTo(1);
+        assertThat(count(body, "event:status")).isEqualTo(2);
+        assertThat(body).contains("RESOLVED");
+    }
+
+    @Test
+    void deliversInOrderWithoutResyncWhenWriterKeepsUp() throws Exception {
+        MvcResult stream = subscribeTicket();
+        writers.runAll();
+        publish(AppTicketStatus.IN_PROGRESS);
+        publish(AppTicketStatus.RESOLVED);
+        writers.runAll();
+
+        String body = stream.getResponse().getContentAsString();
+        assertThat(body).doesNotContain("event:resync");
+        assertThat(body.indexOf("event:ready")).isLessThan(body.indexOf("IN_PROGRESS"));
+        assertThat(body.indexOf("IN_PROGRESS")).isLessThan(body.indexOf("RESOLVED"));
+    }
+
+    @Test
+    void closedConnectionsAreUnsubscribed() throws Exception {
+        MvcResult first = subscribeTicket();
+        MvcResult second = subscribeTicket();
+        MvcResult inbox = mvc.perform(get("/api/admin/support/stream")).andExpect(request().asyncStarted()).andReturn();
+        writers.runAll();
+        assertThat(bus.subscriberCount()).isEqualTo(3);
+        assertThat(bus.ticketSubscriberCount(TICKET_ID)).isEqualTo(2);
+
+        // 用戶端斷線：容器結束 async 請求
+        asyncContext(first).complete();
+        assertThat(bus.subscriberCount()).isEqualTo(2);
+        assertThat(bus.ticketSubscriberCount(TICKET_ID)).isEqualTo(1);
+
+        // 逾時
+        for (AsyncListener listener : asyncContext(second).getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext(second)));
+        }
+        assertThat(bus.ticketSubscriberCount(TICKET_ID)).isZero();
+
+        asyncContext(inbox).complete();
+        assertThat(bus.subscriberCount()).isZero();
+
+        // 已關閉的訂閱者不再收到事件
+        String before = first.getResponse().getContentAsString();
+        publish(AppTicketStatus.CLOSED);
+        writers.runAll();
+        assertThat(first.getResponse().getContentAsString()).isEqualTo(before);
+    }
+
+    @Test
+    void subscriberCapAnswers503UntilAConnectionCloses() throws Exception {
+        List<MvcResult> streams = new ArrayList<>();
+        for (int i = 0; i < 3; i++) streams.add(subscribeTicket());
+
+        mvc.perform(get("/api/admin/support/tickets/{id}/stream", TICKET_ID))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(content().string("即時連線數已達上限，請稍後再試"));
+        assertThat(bus.subscriberCount()).isEqualTo(3);
+
+        asyncContext(streams.get(0)).complete();
+        subscribeTicket();
+        assertThat(bus.subscriberCount()).isEqualTo(3);
+    }
+
+    private MvcResult subscribeTicket() throws Exception {
+        return mvc.perform(get("/api/admin/support/tickets/{id}/stream", TICKET_ID))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private void publish(AppTicketStatus status) {
+        SupportTicket t = new SupportTicket();
+        t.setId(TICKET_ID);
+        t.setStatus(status);
+        bus.publishAfterCommit(SupportEventBus.STATUS, t, null);
+    }
+
+    private static MockAsyncContext asyncContext(MvcResult result) {
+        return (MockAsyncContext) result.getRequest().getAsyncContext();
+    }
+
+    private static int count(String text, String token) {
+        int n = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) n++;
+        return n;
+    }
+
+    // 寫出工作只排隊，由 runAll() 在測試執行緒上執行
+    private static final class ManualExecutor extends AbstractExecutorService {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean shutdown;
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) task.run();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            return pending;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && tasks.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return isTerminated();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.pagerealm.utils;
+
+import com.pagerealm.dto.response.SupportTicketSearchResponse;
+import com.pagerealm.entity.AppTicketCategory;
+import com.pagerealm.entity.AppTicketStatus;
+import com.pagerealm.entity.SupportMessage;
+import com.pagerealm.entity.SupportTicket;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 工單搜尋索引：無查詢詞時走預先排序的集合與計數表；同時觸發重建只會啟動一個
+ */
+class SupportSearchIndexTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+    @Test
+    void emptyQueryPagesByUpdatedAtThenIdDescending() {
+        SupportSearchIndex index = new SupportSearchIndex(mock(JdbcTemplate.class));
+        index.indexAfterCommit(ticket(1L, "登入失敗", AppTicketStatus.OPEN, AppTicketCategory.ACCOUNT, BASE.plusHours(1)), null);
+        index.indexAfterCommit(ticket(2L, "退款進度", AppTicketStatus.OPEN, AppTicketCategory.BILLING, BASE.plusHours(3)), null);
+        index.indexAfterCommit(ticket(3L, "無法付款", AppTicketStatus.RESOLVED, AppTicketCategory.BILLING, BASE.plusHours(3)), null);
+        index.indexAfterCommit(ticket(4L, "其他問題", AppTicketStatus.OPEN, AppTicketCategory.GENERAL, BASE.plusHours(2)), null);
+
+        SupportTicketSearchResponse first = index.search("", null, null, 0, 2);
+        assertThat(first.getItems()).extracting(SupportTicketSearchResponse.Hit::getId).containsExactly(3L, 2L);
+        assertThat(first.getTotal()).isEqualTo(4);
+        SupportTicketSearchResponse second = index.search(null, null, null, 1, 2);
+        assertThat(second.getItems()).extracting(SupportTicketSearchResponse.Hit::getId).containsExactly(4L, 1L);
+        assertThat(index.search(" ", null, null, 2, 2).getItems()).isEmpty();
+
+        SupportTicketSearchResponse open = index.search("", AppTicketStatus.OPEN, null, 0, 10);
+        assertThat(open.getItems()).extracting(SupportTicketSearchResponse.Hit::getId).containsExactly(2L, 4L, 1L);
+        assertThat(open.getTotal()).isEqualTo(3);
+        // status facet 不受 status 篩選影響，category facet 受影響
+        assertThat(open.getFacets().get("status")).containsEntry("OPEN", 3).containsEntry("RESOLVED", 1);
+        assertThat(open.getFacets().get("category")).containsEntry("BILLING", 1).containsEntry("ACCOUNT", 1)
+                .containsEntry("GENERAL", 1);
+
+        // 新訊息使工單移到最前，狀態變更同步更新計數
+        SupportMessage m = new SupportMessage();
+        m.setId(10L);
+        m.setContent("還是無法登入");
+        index.indexAfterCommit(ticket(1L, "登入失敗", AppTicketStatus.IN_PROGRESS, AppTicketCategory.ACCOUNT, BASE.plusHours(5)), m);
+        SupportTicketSearchResponse after = index.search("", null, null, 0, 10);
+        assertThat(after.getItems()).extracting(SupportTicketSearchResponse.Hit::getId).containsExactly(1L, 3L, 2L, 4L);
+        assertThat(after.getFacets().get("status")).containsEntry("OPEN", 2).containsEntry("IN_PROGRESS", 1);
+        assertThat(index.search("", AppTicketStatus.OPEN, null, 0, 10).getTotal()).isEqualTo(2);
+
+        // 有查詢詞時仍依分數排序
+        assertThat(index.search("登入", null, null, 0, 10).getItems())
+                .extracting(SupportTicketSearchResponse.Hit::getId).containsExactly(1L);
+    }
+
+    @Test
+    void liveMessagesCommittedOutOfIdOrderAreAllIndexed() {
+        SupportSearchIndex index = new SupportSearchIndex(mock(JdbcTemplate.class));
+        SupportTicket t = ticket(1L, "帳號問題", AppTicketStatus.OPEN, AppTicketCategory.ACCOUNT, BASE);
+        index.indexAfterCommit(t, message(20L, "客服回覆重設密碼"));
+        index.indexAfterCommit(t, message(15L, "會員補充發票號碼"));
+
+        assertThat(index.search("發票", null, null, 0, 10).getItems())
+                .extracting(SupportTicketSearchResponse.Hit::getId).containsExactly(1L);
+        assertThat(index.search("重設密碼", null, null, 0, 10).getItems())
+                .extracting(SupportTicketSearchResponse.Hit::getId).containsExactly(1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuildReplaySkipsOnlyMessagesInTheSnapshot() throws Exception {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        SupportSearchIndex index = new SupportSearchIndex(jdbc);
+        SupportTicket t1 = ticket(1L, "訂單問題", AppTicketStatus.OPEN, AppTicketCategory.BILLING, BASE);
+        when(jdbc.query(anyString(), any(RowMapper.class), any(), any())).thenAnswer(inv -> {
+            String sql = inv.getArgument(0);
+            RowMapper<Object> mapper = inv.getArgument(1);
+            if (!Long.valueOf(0L).equals(inv.getArgument(2))) return List.of();
+            if (sql.contains("FROM support_ticket")) {
+                return List.of(mapper.mapRow(ticketRow(1L), 0), mapper.mapRow(ticketRow(2L), 1));
+            }
+            List<Object> rows = List.of(
+                    mapper.mapRow(messageRow(10L, 1L, "需要補開發票"), 0),
+                    mapper.mapRow(messageRow(11L, 2L, "需要補開發票"), 1));
+            // 快照讀取期間：已載入的訊息 10 的提交後更新到達，另有 id 較小、較晚提交的訊息 5
+            index.indexAfterCommit(t1, message(10L, "需要補開發票"));
+            index.indexAfterCommit(t1, message(5L, "申請退款"));
+            return rows;
+        });
+
+        assertThat(index.rebuild()).isTrue();
+
+        assertThat(index.search("退款", null, null, 0, 10).getItems())
+                .extracting(SupportTicketSearchResponse.Hit::getId).containsExactly(1L);
+        // 訊息 10 不可被重放再計一次：兩張工單的分數相同
+        List<SupportTicketSearchResponse.Hit> hits = index.search("發票", null, null, 0, 10).getItems();
+        assertThat(hits).hasSize(2);
+        assertThat(hits.get(0).getScore()).isEqualTo(hits.get(1).getScore());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void concurrentStartRebuildStartsOnlyOne() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        when(jdbc.query(anyString(), any(RowMapper.class), any(), any())).thenAnswer(inv -> {
+            release.await(10, TimeUnit.SECONDS);
+            return List.of();
+        });
+        SupportSearchIndex index = new SupportSearchIndex(jdbc);
+
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return index.startRebuild();
+            }));
+        }
+        start.countDown();
+        int started = 0;
+        for (Future<Boolean> f : results) if (f.get(10, TimeUnit.SECONDS)) started++;
+        pool.shutdown();
+
+        assertThat(started).isEqualTo(1);
+        assertThat(index.search("", null, null, 0, 10).isRebuilding()).isTrue();
+        assertThat(index.rebuild()).isFalse();
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (index.search("", null, null, 0, 10).isRebuilding() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(index.search("", null, null, 0, 10).isRebuilding()).isFalse();
+        assertThat(index.startRebuild()).isTrue();
+    }
+
+    private static SupportMessage message(Long id, String content) {
+        SupportMessage m = new SupportMessage();
+        m.setId(id);
+        m.setContent(content);
+        return m;
+    }
+
+    private static ResultSet ticketRow(long id) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(id);
+        when(rs.getString("subject")).thenReturn("訂單問題");
+        when(rs.getString("category")).thenReturn(AppTicketCategory.BILLING.name());
+        when(rs.getString("status")).thenReturn(AppTicketStatus.OPEN.name());
+        when(rs.getTimestamp("updated_at")).thenReturn(Timestamp.valueOf(BASE));
+        when(rs.wasNull()).thenReturn(true);
+        return rs;
+    }
+
+    private static ResultSet messageRow(long id, long ticketId, String content) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(id);
+        when(rs.getLong("ticket_id")).thenReturn(ticketId);
+        when(rs.getString("content")).thenReturn(content);
+        return rs;
+    }
+
+    private static SupportTicket ticket(Long id, String subject, AppTicketStatus status, AppTicketCategory category,
+                                        LocalDateTime updatedAt) {
+        SupportTicket t = new SupportTicket();
+        t.setId(id);
+        t.setSubject(subject);
+        t.setStatus(status);
+        t.setCategory(category);
+        t.setUpdatedAt(updatedAt);
+        return t;
+    }
+}